@@ -0,0 +1,109 @@
+package DBUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic product catalogs for the benchmarks.
+ *
+ * Names are built from a few hundred word combinations the way a real menu
+ * repeats them ("Spicy Pepperoni Pizza", "Large Garlic Bread"), so a search
+ * term matches a realistic share of the catalog rather than one product or
+ * all of them. Prices are skewed towards cheap items and end in 9 cents.
+ * The same size always gives the same catalog.
+ */
+public final class BenchmarkCatalog {
+
+    static final String[] CATEGORY_NAMES = {
+        "Pizza", "Pasta", "Sides", "Salads", "Desserts", "Beverages"
+    };
+
+    private static final String[] STYLES = {
+        "Classic", "Spicy", "Large", "Small", "Family", "Double", "Thin Crust", "Stuffed Crust",
+        "Deluxe", "Mini", "Garden", "Smoky", "Crispy", "Homemade", "House", "Extra"
+    };
+
+    private static final String[] MAINS = {
+        "Pepperoni", "Margherita", "Hawaiian", "Veggie", "Supreme", "BBQ Chicken", "Meat Lovers",
+        "Four Cheese", "Mushroom", "Seafood", "Garlic", "Buffalo", "Bacon", "Tuna", "Sausage",
+        "Carbonara", "Bolognese", "Caesar", "Chocolate", "Lemon", "Cola", "Iced Tea", "Tiramisu",
+        "Mozzarella"
+    };
+
+    private static final String[] KINDS = {
+        "Pizza", "Pasta", "Bread", "Wings", "Salad", "Cake", "Drink", "Sticks"
+    };
+
+    /** Index into CATEGORY_NAMES for each of KINDS */
+    private static final int[] KIND_CATEGORIES = {0, 1, 2, 2, 3, 4, 5, 2};
+
+    private static final String[] SUPPLIER_NAMES = {
+        "Exotic Liquids", "New Orleans Cajun Delights", "Grandma Kelly's Homestead",
+        "Tokyo Traders", "Cooperativa de Quesos", "Mayumi's", "Pavlova, Ltd.",
+        "Specialty Biscuits, Ltd.", "PB Knackebrod AB", "Refrescos Americanas LTDA"
+    };
+
+    private static final String[] UNITS = {"1 piece", "2 pieces", "6 pieces", "330 ml can", "1.5 l bottle", "1 box"};
+
+    /** Catalog sizes every size-dependent benchmark runs against */
+    static final String SMALL = "1000";
+    static final String LARGE = "100000";
+    static final String HUGE = "1000000";
+
+    private BenchmarkCatalog() {
+    }
+
+    public static List<Product> products(int count) {
+        Random random = new Random(count);
+        List<Product> products = new ArrayList<>(count);
+        for (int id = 1; id <= count; id++) {
+            int kind = random.nextInt(KINDS.length);
+            int category = KIND_CATEGORIES[kind];
+            int supplier = random.nextInt(SUPPLIER_NAMES.length);
+            Product product = new Product();
+            product.setProductID(id);
+            product.setProductName(STYLES[random.nextInt(STYLES.length)] + " "
+                    + MAINS[random.nextInt(MAINS.length)] + " "
+                    + KINDS[kind]);
+            product.setCategoryID(category + 1);
+            product.setCategoryName(CATEGORY_NAMES[category]);
+            product.setSupplierID(supplier + 1);
+            product.setSupplierName(SUPPLIER_NAMES[supplier]);
+            product.setQuantityPerUnit(UNITS[random.nextInt(UNITS.length)]);
+            product.setUnitPriceCents(priceCents(random));
+            product.setUnitsInStock(random.nextInt(10) == 0 ? 0 : random.nextInt(200));
+            product.setDiscontinued(random.nextInt(40) == 0);
+            product.setProductImage(random.nextBoolean() ? "images/product" + id + ".jpg" : null);
+            products.add(product);
+        }
+        return products;
+    }
+
+    /**
+     * The catalog as the rows the product select returns, in
+     * Queries.PRODUCT_COLUMNS order with the JDBC types the driver reports
+     * (UnitPrice is a money column: scale 4)
+     */
+    static Object[][] rows(int count) {
+        List<Product> products = products(count);
+        Object[][] rows = new Object[products.size()][];
+        for (int i = 0; i < rows.length; i++) {
+            Product p = products.get(i);
+            rows[i] = new Object[]{
+                p.getProductID(), p.getProductName(), p.getSupplierID(), p.getCategoryID(),
+                p.getQuantityPerUnit(), BigDecimal.valueOf(p.getUnitPriceCents(), 2).setScale(4),
+                p.getUnitsInStock(), p.isDiscontinued(), p.getProductImage(),
+                p.getCategoryName(), p.getSupplierName()
+            };
+        }
+        return rows;
+    }
+
+    /** Mostly $1-$15, a long tail up to $60; always ends in 9 cents */
+    private static long priceCents(Random random) {
+        double dollars = Math.min(60.0, 1.0 + Math.abs(random.nextGaussian()) * 7.0);
+        return (long) dollars * 100 + 49 + random.nextInt(5) * 10;
+    }
+}
@@ -0,0 +1,76 @@
+package DBUtils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * A forward-only ResultSet over rows held in memory, so row mapping can be
+ * measured without a driver or a database.
+ *
+ * It is a dynamic proxy and supports only what the mappers call: next(),
+ * the positional getters for int, boolean, String and BigDecimal,
+ * wasNull() and close(). Proxy dispatch costs the same for every column;
+ * ProductMappingBenchmark.readColumns measures it alone so it can be
+ * subtracted from the mapping figures.
+ */
+final class BenchmarkResultSet implements InvocationHandler {
+    private final Object[][] rows;
+    private int row = -1;
+    private boolean lastWasNull;
+
+    private BenchmarkResultSet(Object[][] rows) {
+        this.rows = rows;
+    }
+
+    static ResultSet over(Object[][] rows) {
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, new BenchmarkResultSet(rows));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+        switch (method.getName()) {
+            case "next":
+                return ++row < rows.length;
+            case "getInt": {
+                Object value = column(args);
+                return value == null ? 0 : ((Number) value).intValue();
+            }
+            case "getBoolean": {
+                Object value = column(args);
+                return value != null && (Boolean) value;
+            }
+            case "getString": {
+                Object value = column(args);
+                return value == null ? null : value.toString();
+            }
+            case "getBigDecimal":
+                return (BigDecimal) column(args);
+            case "wasNull":
+                return lastWasNull;
+            case "close":
+                row = rows.length;
+                return null;
+            case "isClosed":
+                return row >= rows.length;
+            default:
+                throw new SQLException("Not supported by BenchmarkResultSet: " + method.getName());
+        }
+    }
+
+    private Object column(Object[] args) throws SQLException {
+        if (row < 0 || row >= rows.length) {
+            throw new SQLException("No current row");
+        }
+        if (!(args[0] instanceof Integer)) {
+            throw new SQLException("Only column positions are supported");
+        }
+        Object value = rows[row][(Integer) args[0] - 1];
+        lastWasNull = value == null;
+        return value;
+    }
+}
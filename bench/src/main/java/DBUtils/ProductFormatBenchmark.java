@@ -0,0 +1,64 @@
+package DBUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Price formatting as the listing pages do it: Product.getFormattedPrice
+ * once the price is cached, the first call on a freshly mapped Product, and
+ * Money.format on its own.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductFormatBenchmark {
+
+    private static final int PRODUCTS = 1024;
+
+    private Product[] products;
+    private long[] prices;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void createProducts() {
+        List<Product> catalog = BenchmarkCatalog.products(PRODUCTS);
+        products = catalog.toArray(new Product[0]);
+        prices = new long[PRODUCTS];
+        for (int i = 0; i < PRODUCTS; i++) {
+            prices[i] = products[i].getUnitPriceCents();
+            products[i].getFormattedPrice();
+        }
+    }
+
+    @Benchmark
+    public String formattedPriceCached() {
+        return products[next++ & (PRODUCTS - 1)].getFormattedPrice();
+    }
+
+    /** A Product just read from the database has no cached price yet */
+    @Benchmark
+    public String formattedPriceFirstCall() {
+        Product product = new Product();
+        product.setUnitPriceCents(prices[next++ & (PRODUCTS - 1)]);
+        return product.getFormattedPrice();
+    }
+
+    @Benchmark
+    public String moneyFormat() {
+        return Money.format(prices[next++ & (PRODUCTS - 1)]);
+    }
+}
@@ -0,0 +1,97 @@
+package DBUtils;
+
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Cost of turning a product listing into Product objects: one operation
+ * maps the whole catalog, as ProductCatalog does on every reload.
+ * mapTimedRows reads it through the ResultSet that QueryTimer hands out
+ * when jdbc.timing is on, as pooled connections do by default.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ProductMappingBenchmark {
+
+    @Param({BenchmarkCatalog.SMALL, BenchmarkCatalog.LARGE, BenchmarkCatalog.HUGE})
+    int catalogSize;
+
+    private static final Object[] PRODUCT_QUERY = {"SELECT * FROM Products"};
+
+    private Object[][] rows;
+    private QueryTimer timer;
+
+    @Setup(Level.Trial)
+    public void createRows() {
+        rows = BenchmarkCatalog.rows(catalogSize);
+        // Mapping a large catalog is no slow query worth logging here
+        System.setProperty("jdbc.slowQueryMillis", "60000");
+        timer = QueryTimer.create(DBConfig.load());
+    }
+
+    /** ProductRowMapper over every row */
+    @Benchmark
+    public void mapRows(Blackhole blackhole) throws SQLException {
+        ResultSet rs = BenchmarkResultSet.over(rows);
+        while (rs.next()) {
+            blackhole.consume(ProductRowMapper.INSTANCE.mapRow(rs));
+        }
+    }
+
+    /** mapRows through a timed statement's ResultSet */
+    @Benchmark
+    public void mapTimedRows(Blackhole blackhole) throws SQLException {
+        PreparedStatement statement = (PreparedStatement) timer.wrap(statementOver(rows), PRODUCT_QUERY, 0);
+        try (ResultSet rs = statement.executeQuery()) {
+            while (rs.next()) {
+                blackhole.consume(ProductRowMapper.INSTANCE.mapRow(rs));
+            }
+        }
+    }
+
+    /** Reads the same columns without building Products: the ResultSet's own cost */
+    @Benchmark
+    public void readColumns(Blackhole blackhole) throws SQLException {
+        ResultSet rs = BenchmarkResultSet.over(rows);
+        while (rs.next()) {
+            blackhole.consume(rs.getInt(ProductRowMapper.PRODUCT_ID));
+            blackhole.consume(rs.getString(ProductRowMapper.PRODUCT_NAME));
+            blackhole.consume(rs.getInt(ProductRowMapper.SUPPLIER_ID));
+            blackhole.consume(rs.getInt(ProductRowMapper.CATEGORY_ID));
+            blackhole.consume(rs.getString(ProductRowMapper.QUANTITY_PER_UNIT));
+            blackhole.consume(rs.getBigDecimal(ProductRowMapper.UNIT_PRICE));
+            blackhole.consume(rs.getInt(ProductRowMapper.UNITS_IN_STOCK));
+            blackhole.consume(rs.getBoolean(ProductRowMapper.DISCONTINUED));
+            blackhole.consume(rs.getString(ProductRowMapper.PRODUCT_IMAGE));
+            blackhole.consume(rs.getString(ProductRowMapper.CATEGORY_NAME));
+            blackhole.consume(rs.getString(ProductRowMapper.SUPPLIER_NAME));
+        }
+    }
+
+    /** A PreparedStatement whose executeQuery() returns the given rows */
+    private static PreparedStatement statementOver(Object[][] rows) {
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                (proxy, method, args) -> "executeQuery".equals(method.getName()) ? BenchmarkResultSet.over(rows) : null);
+    }
+}
@@ -0,0 +1,97 @@
+package DBUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Name and price search through the in-memory repository, which answers
+ * from the same CatalogSnapshot indexes ProductDAO serves searches from.
+ *
+ * "Common" terms match a few percent of the catalog, "rare" ones a handful
+ * of products, "miss" none; the paged variants return the first page the
+ * listing shows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class SearchBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+
+    private static final BigDecimal NARROW_MIN = new BigDecimal("9.00");
+    private static final BigDecimal NARROW_MAX = new BigDecimal("9.99");
+    private static final BigDecimal WIDE_MIN = new BigDecimal("1.00");
+    private static final BigDecimal WIDE_MAX = new BigDecimal("20.00");
+
+    @Param({BenchmarkCatalog.SMALL, BenchmarkCatalog.LARGE, BenchmarkCatalog.HUGE})
+    int catalogSize;
+
+    private ProductRepository repository;
+
+    @Setup(Level.Trial)
+    public void createCatalog() {
+        repository = new InMemoryProductRepository(BenchmarkCatalog.products(catalogSize));
+    }
+
+    @Benchmark
+    public List<Product> searchByNameCommon() {
+        return repository.searchProductsByName("pepperoni");
+    }
+
+    @Benchmark
+    public List<Product> searchByNameRare() {
+        return repository.searchProductsByName("smoky tuna cake");
+    }
+
+    @Benchmark
+    public List<Product> searchByNameMiss() {
+        return repository.searchProductsByName("anchovy");
+    }
+
+    /** Under three characters: no trigram, scans the catalog */
+    @Benchmark
+    public List<Product> searchByNameShort() {
+        return repository.searchProductsByName("bb");
+    }
+
+    @Benchmark
+    public ProductPage searchByNameFirstPage() {
+        return repository.searchProductsByName("pepperoni", null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<Product> searchByPriceNarrow() {
+        return repository.searchProductsByPrice(NARROW_MIN, NARROW_MAX);
+    }
+
+    @Benchmark
+    public List<Product> searchByPriceWide() {
+        return repository.searchProductsByPrice(WIDE_MIN, WIDE_MAX);
+    }
+
+    @Benchmark
+    public ProductPage searchByPriceFirstPage() {
+        return repository.searchProductsByPrice(WIDE_MIN, WIDE_MAX, null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public int countByPrice() {
+        return repository.countProductsByPrice(WIDE_MIN, WIDE_MAX);
+    }
+}
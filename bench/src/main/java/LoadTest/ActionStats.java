@@ -0,0 +1,80 @@
+package LoadTest;
+
+import DBUtils.LatencyHistogram;
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency and error counts per shopper action for one load step.
+ *
+ * Latency runs from when the request was due, not when it was sent: a
+ * shopper held up by a saturated client or server is charged the wait, so
+ * the percentiles do not hide queueing (coordinated omission).
+ */
+final class ActionStats {
+
+    private static final class Action {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder errors = new LongAdder();
+    }
+
+    private final ConcurrentMap<String, Action> actions = new ConcurrentHashMap<>();
+    private final LongAdder sessionsStarted = new LongAdder();
+    private final LongAdder sessionsDropped = new LongAdder();
+
+    void record(String action, long dueNanos, boolean ok) {
+        Action stats = actions.computeIfAbsent(action, a -> new Action());
+        stats.latency.recordNanos(System.nanoTime() - dueNanos);
+        if (!ok) {
+            stats.errors.increment();
+        }
+    }
+
+    void sessionStarted() {
+        sessionsStarted.increment();
+    }
+
+    /**
+     * A shopper arrived while every client thread was busy and never ran
+     */
+    void sessionDropped() {
+        sessionsDropped.increment();
+    }
+
+    void print(PrintStream out, String title, double seconds) {
+        out.println();
+        out.printf("%s: %d sessions started, %d dropped%n", title, sessionsStarted.sum(), sessionsDropped.sum());
+        out.printf("%-16s %10s %10s %8s %10s %10s %10s %10s%n",
+                "action", "requests", "req/s", "errors", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Map.Entry<String, Action> entry : new TreeMap<>(actions).entrySet()) {
+            LatencyHistogram latency = entry.getValue().latency;
+            out.printf("%-16s %10d %10.1f %8d %10.2f %10.2f %10.2f %10.2f%n",
+                    entry.getKey(), latency.getCount(), latency.getCount() / seconds, entry.getValue().errors.sum(),
+                    millis(latency.getValueAtPercentile(50.0)), millis(latency.getValueAtPercentile(99.0)),
+                    millis(latency.getValueAtPercentile(99.9)), millis(latency.getMaxMicros()));
+        }
+    }
+
+    /**
+     * One CSV row per action: step,rate,action,requests,perSecond,errors,p50Ms,p99Ms,p999Ms,maxMs
+     */
+    void printCsv(PrintStream out, String step, double rate, double seconds) {
+        for (Map.Entry<String, Action> entry : new TreeMap<>(actions).entrySet()) {
+            LatencyHistogram latency = entry.getValue().latency;
+            out.printf(Locale.ROOT, "%s,%.2f,%s,%d,%.2f,%d,%.3f,%.3f,%.3f,%.3f%n",
+                    step, rate, entry.getKey(), latency.getCount(), latency.getCount() / seconds,
+                    entry.getValue().errors.sum(),
+                    millis(latency.getValueAtPercentile(50.0)), millis(latency.getValueAtPercentile(99.0)),
+                    millis(latency.getValueAtPercentile(99.9)), millis(latency.getMaxMicros()));
+        }
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,101 @@
+package LoadTest;
+
+import ShoppingServlet.CompressionFilter;
+import ShoppingServlet.DatabaseContextListener;
+import ShoppingServlet.LoginServlet;
+import ShoppingServlet.MetricsServlet;
+import ShoppingServlet.ShoppingServlet;
+import ShoppingServlet.TemplateFilter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import javax.servlet.Filter;
+import javax.servlet.Servlet;
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.util.descriptor.web.FilterDef;
+import org.apache.tomcat.util.descriptor.web.FilterMap;
+
+/**
+ * The shop's servlets in an embedded Tomcat, mapped as the WAR maps them
+ * with @WebServlet, @WebFilter and @WebListener, and serving pages from the web
+ * directory. Nothing is scanned: the servlets, the filters and the
+ * listener are registered directly.
+ */
+final class EmbeddedShop {
+    static final String CONTEXT_PATH = "/PizzaStore";
+
+    private final Tomcat tomcat;
+    private final int port;
+
+    private EmbeddedShop(Tomcat tomcat, int port) {
+        this.tomcat = tomcat;
+        this.port = port;
+    }
+
+    /**
+     * @param port 0 to pick a free port
+     * @param webDir the project's web directory (Shopping.html and friends)
+     */
+    static EmbeddedShop start(int port, File webDir, int maxThreads) throws IOException, LifecycleException {
+        if (!new File(webDir, "Shopping.html").isFile()) {
+            throw new IOException("Not a PizzaStore web directory: " + webDir.getAbsolutePath());
+        }
+
+        Tomcat tomcat = new Tomcat();
+        tomcat.setBaseDir(Files.createTempDirectory("pizzastore-tomcat").toString());
+
+        Connector connector = new Connector("HTTP/1.1");
+        connector.setPort(port);
+        connector.setProperty("maxThreads", Integer.toString(maxThreads));
+        connector.setProperty("maxKeepAliveRequests", "-1");
+        tomcat.setConnector(connector);
+
+        Context context = tomcat.addContext(CONTEXT_PATH, webDir.getAbsolutePath());
+        context.addApplicationListener(DatabaseContextListener.class.getName());
+        addServlet(context, "LoginServlet", new LoginServlet(), "/LoginServlet");
+        addServlet(context, "ShoppingServlet", new ShoppingServlet(), "/ShoppingServlet");
+        addServlet(context, "MetricsServlet", new MetricsServlet(), "/metrics");
+        addFilter(context, "CompressionFilter", new CompressionFilter(), "/*");
+        addFilter(context, "TemplateFilter", new TemplateFilter(), "/Login.html", "/Shopping.html", "/Invalid.html");
+
+        tomcat.start();
+        return new EmbeddedShop(tomcat, connector.getLocalPort());
+    }
+
+    private static void addServlet(Context context, String name, Servlet servlet, String pattern) {
+        Wrapper wrapper = Tomcat.addServlet(context, name, servlet);
+        wrapper.setAsyncSupported(true);
+        wrapper.setLoadOnStartup(1);
+        context.addServletMappingDecoded(pattern, name);
+    }
+
+    private static void addFilter(Context context, String name, Filter filter, String... patterns) {
+        FilterDef def = new FilterDef();
+        def.setFilterName(name);
+        def.setFilter(filter);
+        def.setAsyncSupported("true");
+        context.addFilterDef(def);
+        FilterMap map = new FilterMap();
+        map.setFilterName(name);
+        for (String pattern : patterns) {
+            map.addURLPattern(pattern);
+        }
+        context.addFilterMap(map);
+    }
+
+    /**
+     * Base URL of the application, ending in a slash
+     */
+    String getBaseUrl() {
+        return "http://localhost:" + port + CONTEXT_PATH + "/";
+    }
+
+    void stop() throws LifecycleException {
+        tomcat.stop();
+        tomcat.destroy();
+    }
+}
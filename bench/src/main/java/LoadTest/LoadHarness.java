@@ -0,0 +1,202 @@
+package LoadTest;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * End-to-end load test: the shop in an embedded Tomcat against a stand-in
+ * database, driven by simulated shoppers.
+ *
+ * Load is open-loop. Shopper sessions arrive as a Poisson process at each
+ * configured rate in turn, whether or not earlier shoppers have finished,
+ * the way real traffic does; a server that falls behind shows up as
+ * growing latency rather than as the load quietly easing off. After each
+ * step the harness prints requests per second and p50/p99/p99.9 latency
+ * per action.
+ *
+ * Options (--name=value):
+ *   rates       sessions per second, one step per rate   (5,10,20)
+ *   step        seconds per step                         (30)
+ *   warmup      seconds at the first rate, not reported  (10)
+ *   products    catalog size                             (5000)
+ *   shoppers    accounts to log in as                    (1000)
+ *   think       mean think time between steps in ms      (200)
+ *   checkout    share of sessions that check out         (0.3)
+ *   clients     most sessions in progress at once        (2000)
+ *   threads     Tomcat worker threads                    (200)
+ *   port        HTTP port, 0 for any free one            (0)
+ *   web         the project's web directory              (../web)
+ *   csv         also write results to this CSV file
+ *
+ * Application settings (db.properties keys) can be given as -D system
+ * properties as usual, e.g. -Dpool.maxSize=40 or -Drepository=memory.
+ */
+public final class LoadHarness {
+    private static final Logger LOGGER = Logger.getLogger(LoadHarness.class.getName());
+
+    private final Map<String, String> options;
+
+    private LoadHarness(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                System.err.println("Usage: LoadHarness [--name=value ...]; see the class documentation");
+                System.exit(2);
+            }
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        new LoadHarness(options).run();
+    }
+
+    private void run() throws Exception {
+        int clients = getInt("clients", 2000);
+        // Every session keeps its connection alive between steps
+        System.setProperty("http.maxConnections", Integer.toString(clients));
+        System.setProperty("sun.net.http.retryPost", "false");
+        // Carts stay in the session; a mapped file would outlive the run
+        if (System.getProperty("cart.store") == null) {
+            System.setProperty("cart.store", "none");
+        }
+        quietApplicationLogging();
+
+        StandInDatabase database = StandInDatabase.create(getInt("products", 5000), getInt("shoppers", 1000));
+        EmbeddedShop shop = EmbeddedShop.start(getInt("port", 0),
+                new File(get("web", "../web")), getInt("threads", 200));
+        LOGGER.log(Level.INFO, "Shop running at {0}", shop.getBaseUrl());
+
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(0, clients, 30, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), daemonThreads());
+        String csv = get("csv", null);
+        try (PrintStream csvOut = csv != null ? new PrintStream(new FileOutputStream(csv), true, "UTF-8") : null) {
+            if (csvOut != null) {
+                csvOut.println("step,rate,action,requests,perSecond,errors,p50Ms,p99Ms,p999Ms,maxMs");
+            }
+
+            String[] rates = get("rates", "5,10,20").split(",");
+            int warmup = getInt("warmup", 10);
+            if (warmup > 0) {
+                System.out.printf("Warming up for %d s at %s sessions/s%n", warmup, rates[0].trim());
+                runStep(pool, database, shop, Double.parseDouble(rates[0].trim()), warmup);
+            }
+
+            int stepSeconds = getInt("step", 30);
+            for (int i = 0; i < rates.length; i++) {
+                double rate = Double.parseDouble(rates[i].trim());
+                System.out.printf("Step %d: %.1f sessions/s for %d s%n", i + 1, rate, stepSeconds);
+                ActionStats stats = runStep(pool, database, shop, rate, stepSeconds);
+                stats.print(System.out, String.format("Step %d (%.1f sessions/s)", i + 1, rate), stepSeconds);
+                if (csvOut != null) {
+                    stats.printCsv(csvOut, Integer.toString(i + 1), rate, stepSeconds);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+            shop.stop();
+        }
+    }
+
+    /**
+     * Start sessions at the given mean rate for the given time, then wait
+     * for the last of them to finish
+     */
+    private ActionStats runStep(ThreadPoolExecutor pool, StandInDatabase database, EmbeddedShop shop,
+                                double rate, int seconds) throws InterruptedException {
+        ActionStats stats = new ActionStats();
+        long thinkNanos = TimeUnit.MILLISECONDS.toNanos(getInt("think", 200));
+        double checkout = Double.parseDouble(get("checkout", "0.3"));
+        AtomicInteger running = new AtomicInteger();
+
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        long meanGapNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        long next = start;
+        while (next < end) {
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+                continue;
+            }
+
+            String userID = "shopper" + (1 + ThreadLocalRandom.current().nextInt(database.getShopperCount()));
+            Shopper shopper = new Shopper(shop.getBaseUrl(), userID, database.getAvailableProductIDs(),
+                    stats, next, thinkNanos, checkout);
+            try {
+                running.incrementAndGet();
+                pool.execute(() -> {
+                    try {
+                        shopper.run();
+                    } finally {
+                        running.decrementAndGet();
+                    }
+                });
+                stats.sessionStarted();
+            } catch (RejectedExecutionException e) {
+                running.decrementAndGet();
+                stats.sessionDropped();
+            }
+
+            // Exponential gaps between arrivals: a Poisson process
+            double u = ThreadLocalRandom.current().nextDouble();
+            next += (long) (-Math.log(1.0 - u) * meanGapNanos);
+        }
+
+        while (running.get() > 0) {
+            Thread.sleep(50);
+        }
+        return stats;
+    }
+
+    /**
+     * Keep the application's per-request INFO logging out of the results
+     */
+    private static void quietApplicationLogging() {
+        Logger root = Logger.getLogger("");
+        root.setLevel(Level.WARNING);
+        for (Handler handler : root.getHandlers()) {
+            handler.setLevel(Level.INFO);
+        }
+        Logger.getLogger("LoadTest").setLevel(Level.INFO);
+    }
+
+    private static ThreadFactory daemonThreads() {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "shopper-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private String get(String name, String defaultValue) {
+        String value = options.get(name);
+        return value != null && !value.trim().isEmpty() ? value.trim() : defaultValue;
+    }
+
+    private int getInt(String name, int defaultValue) {
+        String value = get(name, null);
+        try {
+            return value != null ? Integer.parseInt(value) : defaultValue;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--" + name + " must be a whole number: " + value);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package LoadTest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * One simulated shopper session, run start to finish on one client thread:
+ * Login, LoadAll, one or two searches, one to three AddToCart, ViewCart
+ * and, for some shoppers, Checkout. Steps are separated by think time.
+ *
+ * Redirects are not followed: the AddToCart and Checkout redirect is part
+ * of their response, and the next step of the script is the page a browser
+ * would have been sent to.
+ */
+final class Shopper implements Runnable {
+
+    static final String LOGIN = "Login";
+    static final String LOAD_ALL = "LoadAll";
+    static final String SEARCH = "Search";
+    static final String ADD_TO_CART = "AddToCart";
+    static final String VIEW_CART = "ViewCart";
+    static final String CHECKOUT = "Checkout";
+
+    private static final String[] SEARCH_TERMS = {
+        "pepperoni", "garlic", "cheese", "bbq", "cola", "pizza", "spicy", "chocolate", "family", "wings"
+    };
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+    private static final int READ_TIMEOUT_MILLIS = 60000;
+
+    private final String baseUrl;
+    private final String userID;
+    private final List<Integer> productIDs;
+    private final ActionStats stats;
+    private final long arrivalNanos;
+    private final long meanThinkNanos;
+    private final double checkoutRatio;
+    private final byte[] drain = new byte[8192];
+
+    private String sessionCookie;
+
+    Shopper(String baseUrl, String userID, List<Integer> productIDs, ActionStats stats,
+            long arrivalNanos, long meanThinkNanos, double checkoutRatio) {
+        this.baseUrl = baseUrl;
+        this.userID = userID;
+        this.productIDs = productIDs;
+        this.stats = stats;
+        this.arrivalNanos = arrivalNanos;
+        this.meanThinkNanos = meanThinkNanos;
+        this.checkoutRatio = checkoutRatio;
+    }
+
+    @Override
+    public void run() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        // Due at arrival: time spent waiting for a client thread counts
+        long due = arrivalNanos;
+        if (!send(LOGIN, due, "POST", "LoginServlet",
+                "action=Login&userID=" + userID + "&password=" + StandInDatabase.SHOPPER_PASSWORD, 302)) {
+            return;
+        }
+
+        due = think();
+        send(LOAD_ALL, due, "GET", "ShoppingServlet?action=LoadAll", null, 200);
+
+        for (int i = 1 + random.nextInt(2); i > 0; i--) {
+            due = think();
+            send(SEARCH, due, "GET", "ShoppingServlet?action=Search&searchName="
+                    + encode(SEARCH_TERMS[random.nextInt(SEARCH_TERMS.length)]), null, 200);
+        }
+
+        if (productIDs.isEmpty()) {
+            return;
+        }
+        for (int i = 1 + random.nextInt(3); i > 0; i--) {
+            due = think();
+            int productID = productIDs.get(random.nextInt(productIDs.size()));
+            send(ADD_TO_CART, due, "POST", "ShoppingServlet",
+                    "action=AddToCart&productID=" + productID + "&quantity=" + (1 + random.nextInt(2)), 302);
+        }
+
+        due = think();
+        send(VIEW_CART, due, "GET", "ShoppingServlet?action=ViewCart", null, 200);
+
+        if (random.nextDouble() < checkoutRatio) {
+            due = think();
+            send(CHECKOUT, due, "POST", "ShoppingServlet", "action=Checkout", 302);
+        }
+    }
+
+    /**
+     * Pause for an exponentially distributed think time
+     *
+     * @return when the next request is due
+     */
+    private long think() {
+        if (meanThinkNanos > 0) {
+            double u = ThreadLocalRandom.current().nextDouble();
+            LockSupport.parkNanos((long) (-Math.log(1.0 - u) * meanThinkNanos));
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Issue one request and record it
+     *
+     * @return whether the response had the expected status
+     */
+    private boolean send(String action, long due, String method, String path, String form, int expectedStatus) {
+        boolean ok = false;
+        HttpURLConnection conn = null;
+        try {
+            conn = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+            conn.setRequestMethod(method);
+            conn.setInstanceFollowRedirects(false);
+            conn.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+            conn.setReadTimeout(READ_TIMEOUT_MILLIS);
+            if (sessionCookie != null) {
+                conn.setRequestProperty("Cookie", sessionCookie);
+            }
+            if (form != null) {
+                byte[] body = form.getBytes(StandardCharsets.UTF_8);
+                conn.setDoOutput(true);
+                conn.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+                conn.setFixedLengthStreamingMode(body.length);
+                try (OutputStream out = conn.getOutputStream()) {
+                    out.write(body);
+                }
+            }
+
+            int status = conn.getResponseCode();
+            rememberSession(conn.getHeaderField("Set-Cookie"));
+            // Read the whole page so the connection can be kept alive
+            try (InputStream in = status < 400 ? conn.getInputStream() : conn.getErrorStream()) {
+                if (in != null) {
+                    while (in.read(drain) >= 0) {
+                        // discard
+                    }
+                }
+            }
+            ok = status == expectedStatus;
+        } catch (IOException e) {
+            if (conn != null) {
+                conn.disconnect();
+            }
+        }
+        stats.record(action, due, ok);
+        return ok;
+    }
+
+    private void rememberSession(String setCookie) {
+        if (setCookie != null && setCookie.startsWith("JSESSIONID=")) {
+            int end = setCookie.indexOf(';');
+            sessionCookie = end > 0 ? setCookie.substring(0, end) : setCookie;
+        }
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, StandardCharsets.UTF_8.name());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
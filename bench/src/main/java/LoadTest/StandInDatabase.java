@@ -0,0 +1,151 @@
+package LoadTest;
+
+import DBUtils.Product;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An in-memory H2 database, in SQL Server compatibility mode, with the
+ * PizzaStore schema: products, categories, suppliers, accounts, orders.
+ *
+ * Products come from BenchmarkCatalog. Products in stock get enough units
+ * that checkouts do not run them out during a test; the ones the catalog
+ * leaves at zero stay sold out. Shoppers are shopper1..shopperN, all with
+ * the same password.
+ */
+final class StandInDatabase {
+    private static final Logger LOGGER = Logger.getLogger(StandInDatabase.class.getName());
+
+    static final String URL = "jdbc:h2:mem:pizzastore;DB_CLOSE_DELAY=-1;MODE=MSSQLServer";
+    static final String USER = "sa";
+    static final String PASSWORD = "";
+    static final String SHOPPER_PASSWORD = "123456";
+
+    private static final int STOCK = 10000000;
+    private static final int BATCH_SIZE = 1000;
+
+    private final List<Integer> availableProductIDs;
+    private final int shoppers;
+
+    private StandInDatabase(List<Integer> availableProductIDs, int shoppers) {
+        this.availableProductIDs = availableProductIDs;
+        this.shoppers = shoppers;
+    }
+
+    /**
+     * Create and fill the database, and point the application's DBConfig at it
+     */
+    static StandInDatabase create(int products, int shoppers) throws SQLException {
+        long start = System.nanoTime();
+        List<Integer> available = new ArrayList<>();
+
+        try (Connection conn = DriverManager.getConnection(URL, USER, PASSWORD)) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE TABLE Categories (CategoryID INT PRIMARY KEY, CategoryName NVARCHAR(15))");
+                stmt.execute("CREATE TABLE Suppliers (SupplierID INT PRIMARY KEY, CompanyName NVARCHAR(40))");
+                stmt.execute("CREATE TABLE Products (ProductID INT PRIMARY KEY, ProductName NVARCHAR(40), " +
+                        "SupplierID INT, CategoryID INT, QuantityPerUnit NVARCHAR(20), UnitPrice DECIMAL(19,4), " +
+                        "UnitsInStock INT, Discontinued BIT, ProductImage NVARCHAR(255))");
+                stmt.execute("CREATE INDEX IX_Products_CategoryID ON Products (CategoryID)");
+                stmt.execute("CREATE TABLE Account (userID NVARCHAR(50) PRIMARY KEY, fullName NVARCHAR(50), " +
+                        "roleID NVARCHAR(2), password NVARCHAR(50))");
+                stmt.execute("CREATE TABLE Orders (OrderID INT IDENTITY PRIMARY KEY, CustomerID NVARCHAR(50), " +
+                        "OrderDate DATETIME)");
+                stmt.execute("CREATE TABLE OrderDetails (OrderID INT, ProductID INT, UnitPrice DECIMAL(19,4), " +
+                        "Quantity INT, PRIMARY KEY (OrderID, ProductID))");
+            }
+
+            List<Product> catalog = DBUtils.BenchmarkCatalog.products(products);
+            insertLookups(conn, catalog);
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "INSERT INTO Products VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+                int pending = 0;
+                for (Product product : catalog) {
+                    int stock = product.getUnitsInStock() > 0 ? STOCK : 0;
+                    pstmt.setInt(1, product.getProductID());
+                    pstmt.setString(2, product.getProductName());
+                    pstmt.setInt(3, product.getSupplierID());
+                    pstmt.setInt(4, product.getCategoryID());
+                    pstmt.setString(5, product.getQuantityPerUnit());
+                    pstmt.setBigDecimal(6, BigDecimal.valueOf(product.getUnitPriceCents(), 2));
+                    pstmt.setInt(7, stock);
+                    pstmt.setBoolean(8, product.isDiscontinued());
+                    pstmt.setString(9, product.getProductImage());
+                    pstmt.addBatch();
+                    if (++pending == BATCH_SIZE) {
+                        pstmt.executeBatch();
+                        pending = 0;
+                    }
+                    if (stock > 0 && !product.isDiscontinued()) {
+                        available.add(product.getProductID());
+                    }
+                }
+                pstmt.executeBatch();
+            }
+
+            try (PreparedStatement pstmt = conn.prepareStatement("INSERT INTO Account VALUES (?, ?, ?, ?)")) {
+                for (int i = 1; i <= shoppers; i++) {
+                    pstmt.setString(1, "shopper" + i);
+                    pstmt.setString(2, "Load Test Shopper " + i);
+                    pstmt.setString(3, "US");
+                    pstmt.setString(4, SHOPPER_PASSWORD);
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+            }
+        }
+
+        System.setProperty("db.driver", "org.h2.Driver");
+        System.setProperty("db.url", URL);
+        System.setProperty("db.user", USER);
+        System.setProperty("db.password", PASSWORD);
+
+        LOGGER.log(Level.INFO, "Stand-in database ready: {0} products ({1} available), {2} shoppers in {3} ms",
+                new Object[]{products, available.size(), shoppers, (System.nanoTime() - start) / 1000000});
+        return new StandInDatabase(Collections.unmodifiableList(available), shoppers);
+    }
+
+    private static void insertLookups(Connection conn, List<Product> catalog) throws SQLException {
+        Map<Integer, String> categories = new TreeMap<>();
+        Map<Integer, String> suppliers = new TreeMap<>();
+        for (Product product : catalog) {
+            categories.put(product.getCategoryID(), product.getCategoryName());
+            suppliers.put(product.getSupplierID(), product.getSupplierName());
+        }
+        insertAll(conn, "INSERT INTO Categories VALUES (?, ?)", categories);
+        insertAll(conn, "INSERT INTO Suppliers VALUES (?, ?)", suppliers);
+    }
+
+    private static void insertAll(Connection conn, String sql, Map<Integer, String> rows) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (Map.Entry<Integer, String> row : rows.entrySet()) {
+                pstmt.setInt(1, row.getKey());
+                pstmt.setString(2, row.getValue());
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    /**
+     * IDs of products shoppers can put in their carts
+     */
+    List<Integer> getAvailableProductIDs() {
+        return availableProductIDs;
+    }
+
+    int getShopperCount() {
+        return shoppers;
+    }
+}
@@ -0,0 +1,102 @@
+package ShoppingServlet;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The cart operations behind AddToCart and ViewCart: adding to an existing
+ * line, adding and removing a new line, and the cart total with and without
+ * formatting. The contended group has two tabs of one session adding while
+ * a third renders the cart.
+ *
+ * Every benchmark is its own group so each gets a cart of its own; the cart
+ * is rebuilt every iteration so quantities never overflow.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CartBenchmark {
+
+    @Param({"1", "10", "50"})
+    int lines;
+
+    private Cart cart;
+
+    /** Which line a thread adds to next */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        int nextProductID(int lines) {
+            return 1 + (next++ & Integer.MAX_VALUE) % lines;
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void createCart() {
+        cart = cart(lines);
+    }
+
+    static Cart cart(int lines) {
+        Cart cart = new Cart();
+        for (int id = 1; id <= lines; id++) {
+            cart.add(id, "Classic Pepperoni Pizza " + id, 899 + id * 100L, 1 + id % 3);
+        }
+        return cart;
+    }
+
+    @Benchmark
+    @Group("addToCart")
+    public int addToCart(Cursor cursor) {
+        return cart.add(cursor.nextProductID(lines), "Classic Pepperoni Pizza", 899, 1);
+    }
+
+    @Benchmark
+    @Group("addAndRemoveLine")
+    public void addAndRemoveLine() {
+        cart.add(lines + 1, "Spicy Garlic Bread", 499, 1);
+        cart.remove(lines + 1);
+    }
+
+    @Benchmark
+    @Group("calculateCartTotal")
+    public long calculateCartTotal() {
+        return cart.getTotalCents();
+    }
+
+    @Benchmark
+    @Group("formattedCartTotal")
+    public String formattedCartTotal() {
+        return cart.getFormattedTotal();
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(2)
+    public int contendedAdd(Cursor cursor) {
+        return cart.add(cursor.nextProductID(lines), "Classic Pepperoni Pizza", 899, 1);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public long contendedTotal() {
+        return cart.getTotalCents();
+    }
+}
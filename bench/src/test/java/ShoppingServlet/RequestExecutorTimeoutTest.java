@@ -0,0 +1,181 @@
+package ShoppingServlet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import DBUtils.DBConfig;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import org.apache.catalina.Context;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.startup.Tomcat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * An action that overruns async.timeoutMillis: the client gets 503, and
+ * every call the action makes on its request and response afterwards
+ * fails instead of reaching the container's (by then recycled) objects.
+ * The session it already held still takes its writes.
+ */
+public class RequestExecutorTimeoutTest {
+
+    private Tomcat tomcat;
+    private RequestExecutor executor;
+    private String baseUrl;
+
+    // The slow action waits for release, then reports what it saw
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private final AtomicReference<String> outcome = new AtomicReference<>();
+    private final AtomicReference<HttpSession> lateSession = new AtomicReference<>();
+
+    @Before
+    public void start() throws Exception {
+        System.setProperty("async.timeoutMillis", "200");
+        try {
+            executor = new RequestExecutor(DBConfig.load());
+        } finally {
+            System.clearProperty("async.timeoutMillis");
+        }
+
+        tomcat = new Tomcat();
+        tomcat.setBaseDir(Files.createTempDirectory("executor-test").toString());
+        Connector connector = new Connector("HTTP/1.1");
+        connector.setPort(0);
+        // One connection thread, so the next request reuses the same request objects
+        connector.setProperty("maxThreads", "1");
+        tomcat.setConnector(connector);
+
+        Context context = tomcat.addContext("", null);
+        Wrapper wrapper = Tomcat.addServlet(context, "test", new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest request, HttpServletResponse response)
+                    throws ServletException, IOException {
+                executor.dispatch(request, response, (req, resp) -> {
+                    if ("slow".equals(req.getParameter("action"))) {
+                        slowAction(req, resp);
+                    } else {
+                        resp.setContentType("text/plain");
+                        resp.getWriter().write("fast");
+                    }
+                });
+            }
+        });
+        wrapper.setAsyncSupported(true);
+        context.addServletMappingDecoded("/", "test");
+        tomcat.start();
+        baseUrl = "http://localhost:" + connector.getLocalPort() + "/";
+    }
+
+    @After
+    public void stop() throws Exception {
+        release.countDown();
+        tomcat.stop();
+        tomcat.destroy();
+    }
+
+    private void slowAction(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        HttpSession session = request.getSession(true);
+        try {
+            release.await(10, TimeUnit.SECONDS);
+            // A session outlives its request, so this still counts
+            session.setAttribute("late", "kept");
+            lateSession.set(session);
+            // Each of these comes after the timeout completed the request
+            outcome.set(lateCallsCancelled(
+                    () -> response.setStatus(HttpServletResponse.SC_OK),
+                    () -> response.setHeader("X-Late", "true"),
+                    () -> request.setAttribute("late", Boolean.TRUE),
+                    () -> response.getWriter().write("late"),
+                    () -> response.sendRedirect("elsewhere"),
+                    () -> request.getParameter("action"),
+                    () -> request.getSession(false),
+                    () -> response.isCommitted(),
+                    // Not one of the calls the actions make: reaches the closed stand-in
+                    () -> response.getLocale()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            finished.countDown();
+        }
+    }
+
+    private interface LateCall {
+        void run() throws IOException;
+    }
+
+    private static String lateCallsCancelled(LateCall... calls) throws IOException {
+        for (int i = 0; i < calls.length; i++) {
+            try {
+                calls[i].run();
+                return "late call " + i + " returned";
+            } catch (CancellationException e) {
+                // Expected
+            }
+        }
+        return "cancelled";
+    }
+
+    @Test
+    public void lateActionCannotWriteToRecycledResponse() throws Exception {
+        HttpURLConnection slow = get("?action=slow");
+        assertEquals(503, slow.getResponseCode());
+        body(slow);
+
+        // Let the action carry on while the connection serves the next request
+        HttpURLConnection fast = get("?action=fast");
+        release.countDown();
+        assertEquals(200, fast.getResponseCode());
+        assertEquals("fast", body(fast));
+        assertNull(fast.getHeaderField("X-Late"));
+
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        assertEquals("cancelled", outcome.get());
+        assertEquals("kept", lateSession.get().getAttribute("late"));
+
+        HttpURLConnection after = get("?action=fast");
+        assertEquals(200, after.getResponseCode());
+        assertEquals("fast", body(after));
+        assertNull(after.getHeaderField("X-Late"));
+    }
+
+    private HttpURLConnection get(String query) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + query).openConnection();
+        connection.setInstanceFollowRedirects(false);
+        return connection;
+    }
+
+    private static String body(HttpURLConnection connection) throws IOException {
+        InputStream in = connection.getResponseCode() < 400 ? connection.getInputStream() : connection.getErrorStream();
+        if (in == null) {
+            return "";
+        }
+        try (InputStream stream = in) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = stream.read(buffer)) > 0) {
+                bytes.write(buffer, 0, read);
+            }
+            return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package DBUtils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Background thread that writes EventLog events to java.util.logging.
+ *
+ * Events go into a ring of preallocated slots: a request thread claims the
+ * next sequence number with a compare-and-set, copies the event's fields
+ * into that slot and publishes it by writing the slot's sequence. The
+ * writer thread takes slots in order and only then builds the LogRecord, so
+ * message formatting and handler I/O never run on a request thread and
+ * logging an event allocates nothing beyond boxing its arguments.
+ *
+ * When the ring is full, log.async.overflow decides: drop (the default)
+ * discards INFO events and counts them, reporting the count once there is
+ * room again, while warnings and errors are written on the caller's thread
+ * instead; block makes the caller wait for a free slot.
+ *
+ * Settings (db.properties): log.async.enabled, log.async.bufferSize,
+ * log.async.overflow.
+ */
+final class AsyncLogWriter {
+    private static final Logger LOGGER = Logger.getLogger(AsyncLogWriter.class.getName());
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    // Left in claimed by the writer thread as it exits, so no slot is
+    // claimed that nobody will take
+    private static final long CLOSED = Long.MIN_VALUE;
+
+    private static volatile AsyncLogWriter instance;
+    // Set for good by shutdownInstance(), so a late event cannot start a new thread
+    private static boolean stopped;
+
+    /**
+     * One event's fields; reused for every event that lands on this slot
+     */
+    private static final class Slot {
+        // Sequence + 1 of the event last published here
+        volatile long published;
+
+        Logger logger;
+        Level level;
+        String message;
+        int sampleEvery;
+        long millis;
+        int threadID;
+        int argCount;
+        // Bit i set: argument i is numbers[i], otherwise objects[i]
+        int numeric;
+        final long[] numbers = new long[EventLog.MAX_ARGS];
+        final Object[] objects = new Object[EventLog.MAX_ARGS];
+    }
+
+    private final Slot[] slots;
+    private final int mask;
+    private final boolean blockWhenFull;
+
+    // Next sequence to claim, and next sequence the writer will take
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong taken = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+
+    private final Thread writer;
+    private volatile boolean writerParked;
+    private volatile boolean stopping;
+
+    private AsyncLogWriter(int bufferSize, boolean blockWhenFull) {
+        int size = Integer.highestOneBit(Math.max(64, Math.min(bufferSize, 1 << 20)) * 2 - 1);
+        this.slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+        }
+        this.mask = size - 1;
+        this.blockWhenFull = blockWhenFull;
+
+        this.writer = new Thread(this::run, "AsyncLogWriter");
+        writer.setDaemon(true);
+        writer.start();
+        LOGGER.log(Level.INFO, "Async logging started: {0} slots, overflow={1}",
+                new Object[]{size, blockWhenFull ? "block" : "drop"});
+    }
+
+    /**
+     * The shared writer, or null when log.async.enabled is false or the
+     * writer has been shut down
+     */
+    static AsyncLogWriter getInstance() {
+        AsyncLogWriter current = instance;
+        if (current == null) {
+            synchronized (AsyncLogWriter.class) {
+                current = instance;
+                if (current == null) {
+                    if (stopped) {
+                        return null;
+                    }
+                    DBConfig config = DBConfig.load();
+                    if (!Boolean.parseBoolean(config.get("log.async.enabled", "true"))) {
+                        return null;
+                    }
+                    current = new AsyncLogWriter(config.getInt("log.async.bufferSize", 8192),
+                            "block".equalsIgnoreCase(config.get("log.async.overflow", "drop").trim()));
+                    instance = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Write out queued events and stop the writer thread. Events logged
+     * afterwards, say by a request still finishing while the application
+     * is undeployed, are written on the caller's thread; that includes
+     * threads that fetched the writer before it stopped.
+     */
+    static void shutdownInstance() {
+        AsyncLogWriter current;
+        synchronized (AsyncLogWriter.class) {
+            current = instance;
+            instance = null;
+            stopped = true;
+        }
+        if (current != null) {
+            current.stop();
+        }
+    }
+
+    /**
+     * Queue an event; see EventLog for the argument encoding
+     *
+     * @return false if the event was neither queued nor written
+     */
+    boolean publish(Logger logger, Level level, String message, int sampleEvery,
+                    int argCount, int numeric, long n0, long n1, long n2, Object o0, Object o1, Object o2) {
+        long sequence = claim();
+        if (sequence < 0) {
+            if (sequence != CLOSED && level.intValue() < Level.WARNING.intValue()) {
+                dropped.increment();
+                return false;
+            }
+            // Never lose a warning, nor anything once the writer has
+            // exited: write it here instead
+            write(logger, level, message, sampleEvery, System.currentTimeMillis(), currentThreadID(),
+                    toArguments(argCount, numeric, n0, n1, n2, o0, o1, o2));
+            return true;
+        }
+
+        Slot slot = slots[(int) sequence & mask];
+        slot.logger = logger;
+        slot.level = level;
+        slot.message = message;
+        slot.sampleEvery = sampleEvery;
+        slot.millis = System.currentTimeMillis();
+        slot.threadID = currentThreadID();
+        slot.argCount = argCount;
+        slot.numeric = numeric;
+        slot.numbers[0] = n0;
+        slot.numbers[1] = n1;
+        slot.numbers[2] = n2;
+        slot.objects[0] = o0;
+        slot.objects[1] = o1;
+        slot.objects[2] = o2;
+        slot.published = sequence + 1;
+
+        if (writerParked) {
+            LockSupport.unpark(writer);
+        }
+        return true;
+    }
+
+    /**
+     * Reserve the next slot, or -1 if the ring is full and the event should
+     * not wait for one, or CLOSED if the writer thread has exited
+     */
+    private long claim() {
+        while (true) {
+            long sequence = claimed.get();
+            if (sequence == CLOSED) {
+                return CLOSED;
+            }
+            if (sequence - taken.get() >= slots.length) {
+                if (!blockWhenFull || stopping) {
+                    return -1;
+                }
+                LockSupport.unpark(writer);
+                LockSupport.parkNanos(this, FULL_PARK_NANOS);
+                continue;
+            }
+            if (claimed.compareAndSet(sequence, sequence + 1)) {
+                return sequence;
+            }
+        }
+    }
+
+    private void run() {
+        long next = taken.get();
+        while (true) {
+            Slot slot = slots[(int) next & mask];
+            if (slot.published != next + 1) {
+                reportDropped();
+                if (stopping && claimed.compareAndSet(next, CLOSED)) {
+                    return;
+                }
+                // Publishers check writerParked after publishing, so one of
+                // us always sees the other's write
+                writerParked = true;
+                if (slot.published != next + 1 && !stopping) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                writerParked = false;
+                continue;
+            }
+
+            Object[] arguments = toArguments(slot.argCount, slot.numeric,
+                    slot.numbers[0], slot.numbers[1], slot.numbers[2],
+                    slot.objects[0], slot.objects[1], slot.objects[2]);
+            Logger logger = slot.logger;
+            Level level = slot.level;
+            String message = slot.message;
+            int sampleEvery = slot.sampleEvery;
+            long millis = slot.millis;
+            int threadID = slot.threadID;
+            // Let the arguments be collected while the slot waits for reuse
+            slot.objects[0] = null;
+            slot.objects[1] = null;
+            slot.objects[2] = null;
+            slot.logger = null;
+            taken.lazySet(++next);
+
+            try {
+                write(logger, level, message, sampleEvery, millis, threadID, arguments);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Log handler failed", e);
+            }
+        }
+    }
+
+    private void reportDropped() {
+        long count = dropped.sumThenReset();
+        if (count > 0) {
+            LOGGER.log(Level.WARNING, "{0} log events dropped, the async log buffer was full", count);
+        }
+    }
+
+    /**
+     * Hand one event to its Logger, on the calling thread
+     */
+    static void write(Logger logger, Level level, String message, int sampleEvery,
+                              long millis, int threadID, Object[] arguments) {
+        LogRecord record = new LogRecord(level, sampleEvery > 1
+                ? message + " [1 in " + sampleEvery + " logged]" : message);
+        record.setLoggerName(logger.getName());
+        // Set explicitly so the handler does not walk the writer's stack
+        record.setSourceClassName(logger.getName());
+        record.setSourceMethodName(null);
+        record.setMillis(millis);
+        record.setThreadID(threadID);
+        record.setParameters(arguments);
+        logger.log(record);
+    }
+
+    static Object[] toArguments(int argCount, int numeric, long n0, long n1, long n2,
+                                Object o0, Object o1, Object o2) {
+        if (argCount == 0) {
+            return null;
+        }
+        Object[] arguments = new Object[argCount];
+        arguments[0] = (numeric & 1) != 0 ? (Object) n0 : o0;
+        if (argCount > 1) {
+            arguments[1] = (numeric & 2) != 0 ? (Object) n1 : o1;
+        }
+        if (argCount > 2) {
+            arguments[2] = (numeric & 4) != 0 ? (Object) n2 : o2;
+        }
+        return arguments;
+    }
+
+    static int currentThreadID() {
+        return (int) Thread.currentThread().getId();
+    }
+
+    private void stop() {
+        stopping = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        reportDropped();
+    }
+}
@@ -0,0 +1,349 @@
+package DBUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, versioned view of the whole product catalog.
+ *
+ * Products are kept in (ProductName, ProductID) order. The staff view is the
+ * full list and the customer view is the precomputed available subset, so
+ * neither needs a query. Snapshots are never modified: every change produces
+ * a new snapshot with a higher version. Products handed out are shared
+ * between requests and must be treated as read-only.
+ */
+public final class CatalogSnapshot {
+
+    /**
+     * Listing order - case-insensitive name, ties broken by ID
+     */
+    public static final Comparator<Product> NAME_ORDER =
+            Comparator.comparing(Product::getProductName, Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER))
+                      .thenComparingInt(Product::getProductID);
+
+    static final CatalogSnapshot EMPTY = new CatalogSnapshot(0, Collections.<Product>emptyList());
+
+    private final long version;
+    private final long createdAt;
+    private final List<Product> allProducts;
+    private final List<Product> availableProducts;
+    private final Map<Integer, List<Product>> byCategory;
+    private final ProductNameIndex nameIndex;
+    private final ProductPriceIndex priceIndex;
+
+    // Open-addressing ID lookup so hot paths never box product IDs
+    private final int[] idKeys;
+    private final Product[] idSlots;
+
+    CatalogSnapshot(long version, Collection<Product> products) {
+        this(version, products, ProductNameIndex.build(products), ProductPriceIndex.build(products));
+    }
+
+    private CatalogSnapshot(long version, Collection<Product> products,
+                            ProductNameIndex nameIndex, ProductPriceIndex priceIndex) {
+        this.version = version;
+        this.nameIndex = nameIndex;
+        this.priceIndex = priceIndex;
+        this.createdAt = System.currentTimeMillis();
+
+        Product[] sorted = products.toArray(new Product[0]);
+        Arrays.sort(sorted, NAME_ORDER);
+
+        int capacity = 16;
+        while (capacity < sorted.length * 2) {
+            capacity <<= 1;
+        }
+        this.idKeys = new int[capacity];
+        this.idSlots = new Product[capacity];
+
+        List<Product> available = new ArrayList<>();
+        Map<Integer, List<Product>> categories = new HashMap<>();
+        for (Product product : sorted) {
+            int slot = slotFor(product.getProductID());
+            while (idSlots[slot] != null && idKeys[slot] != product.getProductID()) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            idKeys[slot] = product.getProductID();
+            idSlots[slot] = product;
+            categories.computeIfAbsent(product.getCategoryID(), k -> new ArrayList<>()).add(product);
+            if (product.isAvailable()) {
+                available.add(product);
+            }
+        }
+        for (Map.Entry<Integer, List<Product>> entry : categories.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+
+        this.allProducts = Collections.unmodifiableList(Arrays.asList(sorted));
+        this.availableProducts = Collections.unmodifiableList(available);
+        this.byCategory = categories;
+    }
+
+    /**
+     * Monotonic version; every reload or patch produces a higher one
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Time this snapshot was built, in epoch milliseconds
+     */
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * All products, including discontinued and out of stock (staff view)
+     */
+    public List<Product> getAllProducts() {
+        return allProducts;
+    }
+
+    /**
+     * Products that can currently be bought (customer view)
+     */
+    public List<Product> getAvailableProducts() {
+        return availableProducts;
+    }
+
+    /**
+     * Get product by ID, or null if it is not in the catalog
+     */
+    public Product getProduct(int productID) {
+        int mask = idKeys.length - 1;
+        for (int slot = slotFor(productID); idSlots[slot] != null; slot = (slot + 1) & mask) {
+            if (idKeys[slot] == productID) {
+                return idSlots[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get products by category in listing order
+     */
+    public List<Product> getProductsByCategory(int categoryID) {
+        List<Product> products = byCategory.get(categoryID);
+        return products != null ? products : Collections.<Product>emptyList();
+    }
+
+    /**
+     * Products whose name contains the term, ignoring case, in listing order.
+     * Terms of three or more characters go through the trigram index; shorter
+     * ones are matched by scanning the snapshot.
+     */
+    public List<Product> searchByName(String term) {
+        List<Product> matches = new ArrayList<>();
+        if (term == null || term.isEmpty()) {
+            return matches;
+        }
+
+        if (term.length() < ProductNameIndex.GRAM) {
+            for (Product product : allProducts) {
+                if (ProductNameIndex.containsIgnoreCase(product.getProductName(), term)) {
+                    matches.add(product);
+                }
+            }
+            return matches;
+        }
+
+        for (int productID : nameIndex.candidates(term)) {
+            Product product = getProduct(productID);
+            if (product != null && ProductNameIndex.containsIgnoreCase(product.getProductName(), term)) {
+                matches.add(product);
+            }
+        }
+        matches.sort(NAME_ORDER);
+        return matches;
+    }
+
+    /**
+     * Products priced within [minCents, maxCents], cheapest first
+     */
+    public List<Product> searchByPrice(long minCents, long maxCents) {
+        if (minCents > maxCents) {
+            return new ArrayList<>();
+        }
+        int from = priceIndex.lowerBound(minCents);
+        int to = priceIndex.upperBound(maxCents);
+
+        List<Product> matches = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            matches.add(getProduct(priceIndex.idAt(i)));
+        }
+        return matches;
+    }
+
+    /**
+     * Number of products priced within [minCents, maxCents]; no allocation
+     */
+    public int countByPrice(long minCents, long maxCents) {
+        return priceIndex.count(minCents, maxCents);
+    }
+
+    /**
+     * Lowest price in the catalog in cents, or 0 when empty
+     */
+    public long getMinPriceCents() {
+        return priceIndex.minCents();
+    }
+
+    /**
+     * Highest price in the catalog in cents, or 0 when empty
+     */
+    public long getMaxPriceCents() {
+        return priceIndex.maxCents();
+    }
+
+    // Keyset-paginated variants
+
+    /**
+     * One page of the staff view, resuming after the cursor
+     */
+    public ProductPage pageAllProducts(String cursor, int pageSize) {
+        return pageByName(allProducts, cursor, pageSize);
+    }
+
+    /**
+     * One page of the customer view, resuming after the cursor
+     */
+    public ProductPage pageAvailableProducts(String cursor, int pageSize) {
+        return pageByName(availableProducts, cursor, pageSize);
+    }
+
+    /**
+     * One page of a category, resuming after the cursor
+     */
+    public ProductPage pageProductsByCategory(int categoryID, String cursor, int pageSize) {
+        return pageByName(getProductsByCategory(categoryID), cursor, pageSize);
+    }
+
+    /**
+     * One page of a name search, resuming after the cursor
+     */
+    public ProductPage pageSearchByName(String term, String cursor, int pageSize) {
+        return pageByName(searchByName(term), cursor, pageSize);
+    }
+
+    /**
+     * One page of a price search in (price, ID) order, resuming after the cursor
+     */
+    public ProductPage pageSearchByPrice(long minCents, long maxCents, String cursor, int pageSize) {
+        if (minCents > maxCents) {
+            return ProductPage.empty();
+        }
+        int size = ProductPage.normalizePageSize(pageSize);
+        int from = priceIndex.lowerBound(minCents);
+        int to = priceIndex.upperBound(maxCents);
+
+        long[] after = ProductPage.decodePriceCursor(cursor);
+        if (after != null) {
+            from = Math.max(from, priceIndex.positionAfter(after[0], (int) after[1]));
+        }
+
+        int end = Math.min(to, from + size);
+        List<Product> page = new ArrayList<>(Math.max(0, end - from));
+        for (int i = from; i < end; i++) {
+            page.add(getProduct(priceIndex.idAt(i)));
+        }
+        String next = end < to ? ProductPage.priceCursor(priceIndex.centsAt(end - 1), priceIndex.idAt(end - 1)) : null;
+        return new ProductPage(page, next);
+    }
+
+    /**
+     * Seek into a NAME_ORDER-sorted list just past the cursor key and cut a page
+     */
+    static ProductPage pageByName(List<Product> sorted, String cursor, int pageSize) {
+        int size = ProductPage.normalizePageSize(pageSize);
+        int from = 0;
+
+        Product after = ProductPage.decodeNameCursor(cursor);
+        if (after != null) {
+            int pos = Collections.binarySearch(sorted, after, NAME_ORDER);
+            from = pos >= 0 ? pos + 1 : -pos - 1;
+        }
+
+        int end = Math.min(sorted.size(), from + size);
+        List<Product> page = new ArrayList<>(sorted.subList(from, end));
+        String next = end < sorted.size() ? ProductPage.nameCursor(sorted.get(end - 1)) : null;
+        return new ProductPage(page, next);
+    }
+
+    public int size() {
+        return allProducts.size();
+    }
+
+    /**
+     * New snapshot with the product added, or replacing the one with the same ID
+     */
+    CatalogSnapshot withProduct(long newVersion, Product product) {
+        return withProducts(newVersion, Collections.singletonList(product));
+    }
+
+    /**
+     * New snapshot with every product added or replaced, built in one pass
+     * however many there are. If two have the same ID the last one wins.
+     */
+    CatalogSnapshot withProducts(long newVersion, Collection<Product> changed) {
+        if (changed.isEmpty()) {
+            return this;
+        }
+        Map<Integer, Product> replacements = new HashMap<>(changed.size() * 2);
+        for (Product product : changed) {
+            replacements.put(product.getProductID(), product);
+        }
+
+        List<Product> products = new ArrayList<>(allProducts.size() + replacements.size());
+        for (Product existing : allProducts) {
+            if (!replacements.containsKey(existing.getProductID())) {
+                products.add(existing);
+            }
+        }
+        products.addAll(replacements.values());
+
+        // Stock-only changes leave both indexes as they are
+        ProductNameIndex names = nameIndex;
+        ProductPriceIndex prices = priceIndex;
+        for (Product product : replacements.values()) {
+            Product previous = getProduct(product.getProductID());
+            names = names.with(previous, product);
+            prices = prices.with(previous, product);
+        }
+        return new CatalogSnapshot(newVersion, products, names, prices);
+    }
+
+    /**
+     * New snapshot without the given product
+     */
+    CatalogSnapshot withoutProduct(long newVersion, int productID) {
+        Product previous = getProduct(productID);
+        if (previous == null) {
+            return this;
+        }
+        List<Product> products = new ArrayList<>(allProducts);
+        products.remove(previous);
+        return new CatalogSnapshot(newVersion, products,
+                nameIndex.with(previous, null), priceIndex.with(previous, null));
+    }
+
+    private int slotFor(int productID) {
+        int h = productID * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (idKeys.length - 1);
+    }
+
+    @Override
+    public String toString() {
+        return "CatalogSnapshot{" +
+                "version=" + version +
+                ", products=" + allProducts.size() +
+                ", available=" + availableProducts.size() +
+                '}';
+    }
+}
@@ -0,0 +1,437 @@
+package DBUtils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Shared JDBC connection pool used by ProductDAO and UserDAO.
+ *
+ * Connections handed out are proxies: closing them returns the physical
+ * connection to the pool instead of closing the socket. Idle connections are
+ * reused most-recently-used first, validated before reuse when they have been
+ * idle for a while, and evicted in the background once idle for too long.
+ * Statements they create are timed into QueryStats (see QueryTimer).
+ */
+public final class ConnectionPool {
+    private static final Logger LOGGER = Logger.getLogger(ConnectionPool.class.getName());
+
+    private static volatile ConnectionPool instance;
+
+    private final DBConfig config;
+    private final int minIdle;
+    private final int maxSize;
+    private final long acquireTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long validationIntervalMillis;
+    private final int validationTimeoutSeconds;
+
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Semaphore permits;
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger total = new AtomicInteger();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder destroyed = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LatencyHistogram acquireTimes = new LatencyHistogram();
+    private final ScheduledExecutorService evictor;
+    // Null when jdbc.timing is off
+    private final QueryTimer queryTimer;
+
+    private volatile boolean closed;
+
+    public ConnectionPool(DBConfig config) {
+        this.config = config;
+        this.maxSize = Math.max(1, config.getInt("pool.maxSize", 20));
+        this.minIdle = Math.min(maxSize, Math.max(0, config.getInt("pool.minIdle", 2)));
+        this.acquireTimeoutMillis = config.getLong("pool.acquireTimeoutMillis", 5000);
+        this.idleTimeoutMillis = config.getLong("pool.idleTimeoutMillis", 600000);
+        this.validationIntervalMillis = config.getLong("pool.validationIntervalMillis", 5000);
+        this.validationTimeoutSeconds = config.getInt("pool.validationTimeoutSeconds", 2);
+        this.queryTimer = QueryTimer.create(config);
+        this.permits = new Semaphore(maxSize, true);
+
+        try {
+            Class.forName(config.getDriver());
+            LOGGER.log(Level.INFO, "JDBC Driver loaded successfully: {0}", config.getDriver());
+        } catch (ClassNotFoundException e) {
+            LOGGER.log(Level.SEVERE, "Failed to load JDBC Driver: " + config.getDriver(), e);
+        }
+
+        long evictionInterval = Math.max(1000, config.getLong("pool.evictionIntervalMillis", 30000));
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ConnectionPool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // First run fills the pool up to minIdle without blocking the caller
+        evictor.scheduleWithFixedDelay(this::maintain, 0, evictionInterval, TimeUnit.MILLISECONDS);
+
+        LOGGER.log(Level.INFO, "Connection pool created: minIdle={0}, maxSize={1}, {2}",
+                  new Object[]{minIdle, maxSize, config});
+    }
+
+    /**
+     * Get the pool shared by all DAOs, creating it from DBConfig on first use
+     */
+    public static ConnectionPool getInstance() {
+        ConnectionPool pool = instance;
+        if (pool == null) {
+            synchronized (ConnectionPool.class) {
+                pool = instance;
+                if (pool == null) {
+                    pool = new ConnectionPool(DBConfig.load());
+                    instance = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Get the shared pool if something has already started it, else null;
+     * for monitoring, which must not open connections by itself
+     */
+    public static ConnectionPool getInstanceIfStarted() {
+        return instance;
+    }
+
+    /**
+     * Close the shared pool, if it was ever created
+     */
+    public static void shutdownInstance() {
+        synchronized (ConnectionPool.class) {
+            if (instance != null) {
+                instance.close();
+                instance = null;
+            }
+        }
+    }
+
+    /**
+     * Get the configuration this pool was created from
+     */
+    public DBConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Borrow a connection. Closing the returned connection hands it back.
+     *
+     * @throws SQLTimeoutException if no connection frees up within the acquire timeout
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+
+        long start = System.nanoTime();
+        boolean acquired;
+        waiting.incrementAndGet();
+        try {
+            acquired = permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        } finally {
+            waiting.decrementAndGet();
+        }
+
+        if (!acquired) {
+            timeouts.increment();
+            throw new SQLTimeoutException("Timed out after " + acquireTimeoutMillis +
+                    " ms waiting for a database connection (active=" + active.get() +
+                    ", maxSize=" + maxSize + ")");
+        }
+
+        try {
+            PooledConnection pooled;
+            while ((pooled = idle.pollFirst()) != null && !isUsable(pooled)) {
+                destroy(pooled);
+            }
+            if (pooled == null) {
+                pooled = create();
+            }
+
+            active.incrementAndGet();
+            acquireTimes.recordNanos(System.nanoTime() - start);
+            return pooled.lease();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Close idle connections and refuse new borrowers. Connections that are
+     * still leased are closed when they are returned.
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        evictor.shutdownNow();
+
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            destroy(pooled);
+        }
+        LOGGER.log(Level.INFO, "Connection pool closed: {0}", this);
+    }
+
+    // Metrics
+
+    /**
+     * Connections currently leased to callers
+     */
+    public int getActiveConnections() {
+        return active.get();
+    }
+
+    /**
+     * Connections open and waiting in the pool
+     */
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    /**
+     * Threads currently blocked waiting for a connection
+     */
+    public int getWaitingThreads() {
+        return waiting.get();
+    }
+
+    /**
+     * Physical connections currently open
+     */
+    public int getTotalConnections() {
+        return total.get();
+    }
+
+    public long getCreatedCount() {
+        return created.sum();
+    }
+
+    public long getDestroyedCount() {
+        return destroyed.sum();
+    }
+
+    public long getAcquireTimeoutCount() {
+        return timeouts.sum();
+    }
+
+    /**
+     * Time spent in getConnection(), including waiting and connection setup
+     */
+    public LatencyHistogram getAcquireTimeHistogram() {
+        return acquireTimes;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    private PooledConnection create() throws SQLException {
+        Connection raw = DriverManager.getConnection(config.getUrl(), config.getUser(), config.getPassword());
+        total.incrementAndGet();
+        created.increment();
+        return new PooledConnection(raw);
+    }
+
+    private void destroy(PooledConnection pooled) {
+        total.decrementAndGet();
+        destroyed.increment();
+        try {
+            pooled.raw.close();
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "Error closing pooled connection", e);
+        }
+    }
+
+    private boolean isUsable(PooledConnection pooled) {
+        if (System.currentTimeMillis() - pooled.lastUsed < validationIntervalMillis) {
+            return true;
+        }
+        try {
+            return pooled.raw.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "Connection validation failed", e);
+            return false;
+        }
+    }
+
+    /**
+     * Return a leased connection, resetting any state the caller changed
+     */
+    private void release(PooledConnection pooled) {
+        active.decrementAndGet();
+        try {
+            boolean reusable = !closed && !pooled.broken;
+            if (reusable) {
+                try {
+                    if (!pooled.raw.getAutoCommit()) {
+                        pooled.raw.rollback();
+                        pooled.raw.setAutoCommit(true);
+                    }
+                    pooled.raw.clearWarnings();
+                } catch (SQLException e) {
+                    LOGGER.log(Level.FINE, "Discarding connection that failed reset", e);
+                    reusable = false;
+                }
+            }
+
+            if (reusable) {
+                pooled.lastUsed = System.currentTimeMillis();
+                idle.offerFirst(pooled);
+            } else {
+                destroy(pooled);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Background task: evict long-idle connections above minIdle, then top
+     * the pool back up to minIdle
+     */
+    private void maintain() {
+        try {
+            long now = System.currentTimeMillis();
+            Iterator<PooledConnection> oldestFirst = idle.descendingIterator();
+            while (oldestFirst.hasNext() && idle.size() > minIdle) {
+                PooledConnection pooled = oldestFirst.next();
+                if (now - pooled.lastUsed > idleTimeoutMillis && idle.removeLastOccurrence(pooled)) {
+                    destroy(pooled);
+                }
+            }
+
+            while (!closed && total.get() < minIdle && permits.tryAcquire()) {
+                try {
+                    PooledConnection pooled = create();
+                    pooled.lastUsed = System.currentTimeMillis();
+                    idle.offerLast(pooled);
+                } finally {
+                    permits.release();
+                }
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Could not open idle connection: {0}", e.getMessage());
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Connection pool maintenance failed", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPool{" +
+                "active=" + getActiveConnections() +
+                ", idle=" + getIdleConnections() +
+                ", waiting=" + getWaitingThreads() +
+                ", total=" + getTotalConnections() +
+                ", maxSize=" + maxSize +
+                ", timeouts=" + getAcquireTimeoutCount() +
+                ", acquire=" + acquireTimes +
+                '}';
+    }
+
+    /**
+     * A physical connection owned by the pool
+     */
+    private final class PooledConnection {
+        private final Connection raw;
+        private volatile long lastUsed = System.currentTimeMillis();
+        private volatile boolean broken;
+
+        PooledConnection(Connection raw) {
+            this.raw = raw;
+        }
+
+        Connection lease() {
+            return (Connection) Proxy.newProxyInstance(
+                    ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new Lease(this));
+        }
+    }
+
+    /**
+     * Handle given to one borrower; close() returns the connection exactly once
+     */
+    private final class Lease implements InvocationHandler {
+        private final PooledConnection pooled;
+        private boolean returned;
+
+        Lease(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || pooled.raw.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + pooled.raw;
+                default:
+                    break;
+            }
+
+            if (returned) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+
+            try {
+                if (queryTimer != null && QueryTimer.createsStatement(method.getName())) {
+                    long start = System.nanoTime();
+                    Statement statement = (Statement) method.invoke(pooled.raw, args);
+                    return queryTimer.wrap(statement, args, System.nanoTime() - start);
+                }
+                return method.invoke(pooled.raw, args);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException) {
+                    String state = ((SQLException) cause).getSQLState();
+                    // SQLSTATE class 08 means the connection itself is gone
+                    if (state != null && state.startsWith("08")) {
+                        pooled.broken = true;
+                    }
+                }
+                throw cause;
+            }
+        }
+    }
+}
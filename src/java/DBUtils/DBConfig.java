@@ -0,0 +1,101 @@
+package DBUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Database configuration - single source of connection and pool settings.
+ * Defaults come from db.properties on the classpath and can be overridden
+ * with JVM system properties of the same name.
+ */
+public final class DBConfig {
+    private static final Logger LOGGER = Logger.getLogger(DBConfig.class.getName());
+    private static final String RESOURCE = "db.properties";
+
+    private final Properties properties;
+
+    private DBConfig(Properties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Load configuration from db.properties and system property overrides
+     */
+    public static DBConfig load() {
+        Properties properties = new Properties();
+
+        try (InputStream in = DBConfig.class.getResourceAsStream(RESOURCE)) {
+            if (in != null) {
+                properties.load(in);
+            } else {
+                LOGGER.log(Level.WARNING, "{0} not found on classpath, using system properties only", RESOURCE);
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Failed to read " + RESOURCE, e);
+        }
+
+        return new DBConfig(properties);
+    }
+
+    public String getDriver() {
+        return get("db.driver", "com.microsoft.sqlserver.jdbc.SQLServerDriver");
+    }
+
+    public String getUrl() {
+        return get("db.url", null);
+    }
+
+    public String getUser() {
+        return get("db.user", null);
+    }
+
+    public String getPassword() {
+        return get("db.password", null);
+    }
+
+    /**
+     * Get a string setting, or the default when it is missing or blank.
+     * A system property with the same key takes precedence over the file.
+     */
+    public String get(String key, String defaultValue) {
+        String value = System.getProperty(key, properties.getProperty(key));
+        return value != null && !value.trim().isEmpty() ? value.trim() : defaultValue;
+    }
+
+    /**
+     * Get an integer setting, or the default when it is missing or malformed
+     */
+    public int getInt(String key, int defaultValue) {
+        return (int) getLong(key, defaultValue);
+    }
+
+    /**
+     * Get a long setting, or the default when it is missing or malformed
+     */
+    public long getLong(String key, long defaultValue) {
+        String value = get(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            LOGGER.log(Level.WARNING, "Invalid value for {0}: {1}, using {2}",
+                      new Object[]{key, value, defaultValue});
+            return defaultValue;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DBConfig{" +
+                "url='" + getUrl() + '\'' +
+                ", user='" + getUser() + '\'' +
+                ", password='" + (getPassword() != null ? "[PROTECTED]" : "null") + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,138 @@
+package DBUtils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Logging for per-request events, written by a background thread.
+ *
+ * Use it like a Logger, with the same {0}-style messages, for the INFO
+ * events that happen on every request ("Retrieved {0} products"). The
+ * event's message and arguments are queued to AsyncLogWriter as they are:
+ * there is no Object[] for the arguments, numbers are kept unboxed, and
+ * formatting and handler I/O happen on the writer thread. Events go to the
+ * java.util.logging Logger of the same name, so levels and handlers are
+ * configured as before. Errors with a stack trace should still go to the
+ * class's Logger.
+ *
+ * The sampled() view is for the highest-volume events: it logs only the
+ * first of every log.async.sampleEvery occurrences of each message, and
+ * says so on the line it writes.
+ *
+ * When log.async.enabled is false events are logged on the calling thread.
+ */
+public final class EventLog {
+
+    /** Most arguments an event can carry */
+    static final int MAX_ARGS = 3;
+
+    private final Logger logger;
+    private final int sampleEvery;
+    // Occurrences of each sampled message, keyed by the message constant
+    private final ConcurrentMap<String, AtomicLong> occurrences;
+
+    private EventLog(Logger logger, int sampleEvery) {
+        this.logger = logger;
+        this.sampleEvery = sampleEvery;
+        this.occurrences = sampleEvery > 1 ? new ConcurrentHashMap<String, AtomicLong>() : null;
+    }
+
+    /**
+     * Event log writing to the Logger named after this class
+     */
+    public static EventLog forClass(Class<?> type) {
+        return new EventLog(Logger.getLogger(type.getName()), 1);
+    }
+
+    /**
+     * The same log, keeping one of every log.async.sampleEvery events per
+     * message
+     */
+    public EventLog sampled() {
+        int every = Math.max(1, DBConfig.load().getInt("log.async.sampleEvery", 10));
+        return new EventLog(logger, every);
+    }
+
+    /**
+     * Write out queued events and stop the writer thread; call when the
+     * application stops. Events logged after this are written synchronously.
+     */
+    public static void shutdown() {
+        AsyncLogWriter.shutdownInstance();
+    }
+
+    public void info(String message) {
+        log(Level.INFO, message, 0, 0, 0, 0, 0, null, null, null);
+    }
+
+    public void info(String message, long arg0) {
+        log(Level.INFO, message, 1, 1, arg0, 0, 0, null, null, null);
+    }
+
+    public void info(String message, Object arg0) {
+        log(Level.INFO, message, 1, 0, 0, 0, 0, arg0, null, null);
+    }
+
+    public void info(String message, long arg0, long arg1) {
+        log(Level.INFO, message, 2, 3, arg0, arg1, 0, null, null, null);
+    }
+
+    public void info(String message, long arg0, Object arg1) {
+        log(Level.INFO, message, 2, 1, arg0, 0, 0, null, arg1, null);
+    }
+
+    public void info(String message, Object arg0, long arg1) {
+        log(Level.INFO, message, 2, 2, 0, arg1, 0, arg0, null, null);
+    }
+
+    public void info(String message, Object arg0, Object arg1) {
+        log(Level.INFO, message, 2, 0, 0, 0, 0, arg0, arg1, null);
+    }
+
+    public void info(String message, long arg0, Object arg1, Object arg2) {
+        log(Level.INFO, message, 3, 1, arg0, 0, 0, null, arg1, arg2);
+    }
+
+    public void info(String message, long arg0, Object arg1, long arg2) {
+        log(Level.INFO, message, 3, 5, arg0, 0, arg2, null, arg1, null);
+    }
+
+    public void info(String message, Object arg0, Object arg1, Object arg2) {
+        log(Level.INFO, message, 3, 0, 0, 0, 0, arg0, arg1, arg2);
+    }
+
+    /**
+     * @param numeric bit i set when argument i is the long ni, not the object oi
+     */
+    private void log(Level level, String message, int argCount, int numeric,
+                     long n0, long n1, long n2, Object o0, Object o1, Object o2) {
+        if (!logger.isLoggable(level) || !sample(message)) {
+            return;
+        }
+        AsyncLogWriter writer = AsyncLogWriter.getInstance();
+        if (writer != null) {
+            writer.publish(logger, level, message, sampleEvery, argCount, numeric, n0, n1, n2, o0, o1, o2);
+            return;
+        }
+        AsyncLogWriter.write(logger, level, message, sampleEvery, System.currentTimeMillis(),
+                AsyncLogWriter.currentThreadID(),
+                AsyncLogWriter.toArguments(argCount, numeric, n0, n1, n2, o0, o1, o2));
+    }
+
+    /**
+     * Whether this occurrence of the message should be logged
+     */
+    private boolean sample(String message) {
+        if (occurrences == null) {
+            return true;
+        }
+        AtomicLong count = occurrences.get(message);
+        if (count == null) {
+            count = occurrences.computeIfAbsent(message, m -> new AtomicLong());
+        }
+        return count.getAndIncrement() % sampleEvery == 0;
+    }
+}
@@ -0,0 +1,305 @@
+package DBUtils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * ProductRepository that keeps the whole catalog in memory, for load tests
+ * and benchmarks that must run the real servlets without SQL Server.
+ *
+ * Products live in one CatalogSnapshot, which already indexes them by ID
+ * (open addressing), by category and by price, and by name trigrams for
+ * search. Reads take the current snapshot without locking; writes take a
+ * lock, build one patched snapshot and swap it in, as ProductCatalog does
+ * for the JDBC repository. Products handed out must
+ * not be modified; writes store copies.
+ */
+public final class InMemoryProductRepository implements ProductRepository {
+    private static final Logger LOGGER = Logger.getLogger(InMemoryProductRepository.class.getName());
+
+    private static final String[] CATEGORY_NAMES = {"Pizza", "Beverages", "Desserts", "Appetizers"};
+    private static final String[] NAME_WORDS = {
+        "Margherita", "Pepperoni", "Hawaiian", "Veggie", "Supreme", "Garlic", "Cheese",
+        "Mushroom", "Cola", "Lemonade", "Tiramisu", "Brownie", "Wings", "Nachos"
+    };
+
+    private final AtomicReference<CatalogSnapshot> current;
+    private final AtomicLong versions = new AtomicLong();
+    private final AtomicInteger nextProductID;
+    // Writers build and swap snapshots one at a time; readers never take it
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    public InMemoryProductRepository(Collection<Product> products) {
+        int maxID = 0;
+        List<Product> copies = new ArrayList<>(products.size());
+        for (Product product : products) {
+            copies.add(new Product(product));
+            maxID = Math.max(maxID, product.getProductID());
+        }
+        this.current = new AtomicReference<>(new CatalogSnapshot(versions.incrementAndGet(), copies));
+        this.nextProductID = new AtomicInteger(maxID);
+        LOGGER.log(Level.INFO, "In-memory product repository started with {0} products", copies.size());
+    }
+
+    /**
+     * Repository filled with count generated products spread over the four
+     * shop categories; the same count always gives the same catalog
+     */
+    public static InMemoryProductRepository withGeneratedProducts(int count) {
+        List<Product> products = new ArrayList<>(count);
+        for (int id = 1; id <= count; id++) {
+            Product product = new Product();
+            int category = (id - 1) % CATEGORY_NAMES.length;
+            product.setProductID(id);
+            product.setProductName(NAME_WORDS[(id * 5) % NAME_WORDS.length] + " " + id);
+            product.setCategoryID(category + 1);
+            product.setCategoryName(CATEGORY_NAMES[category]);
+            product.setSupplierID(1 + id % 5);
+            product.setSupplierName("Supplier " + (1 + id % 5));
+            product.setQuantityPerUnit("1 unit");
+            product.setUnitPriceCents(199 + (id * 137L) % 2800);
+            product.setUnitsInStock(id % 17 == 0 ? 0 : 20 + id % 80);
+            product.setDiscontinued(id % 29 == 0);
+            products.add(product);
+        }
+        return new InMemoryProductRepository(products);
+    }
+
+    @Override
+    public CatalogSnapshot getCatalogSnapshot() {
+        return current.get();
+    }
+
+    @Override
+    public CatalogSnapshot getCachedCatalogSnapshot() {
+        return current.get();
+    }
+
+    @Override
+    public List<Product> getAllProducts() {
+        return current.get().getAllProducts();
+    }
+
+    @Override
+    public List<Product> getAvailableProducts() {
+        return current.get().getAvailableProducts();
+    }
+
+    @Override
+    public Product getProductById(int productID) {
+        return productID > 0 ? current.get().getProduct(productID) : null;
+    }
+
+    /**
+     * Never null: the lookup cannot fail. Empty when none of the products
+     * exists, as for a cart holding only deleted products.
+     */
+    @Override
+    public Map<Integer, Product> getProductsByIds(Collection<Integer> productIDs) {
+        CatalogSnapshot snapshot = current.get();
+        Map<Integer, Product> products = new HashMap<>(productIDs.size() * 2);
+        for (Integer id : productIDs) {
+            Product product = id != null ? snapshot.getProduct(id) : null;
+            if (product != null) {
+                products.put(id, product);
+            }
+        }
+        return Collections.unmodifiableMap(products);
+    }
+
+    @Override
+    public List<Product> searchProductsByName(String productName) {
+        if (productName == null || productName.trim().isEmpty()) {
+            return new ArrayList<>();
+        }
+        return current.get().searchByName(productName.trim());
+    }
+
+    @Override
+    public List<Product> searchProductsByPrice(BigDecimal minPrice, BigDecimal maxPrice) {
+        if (!isValidRange(minPrice, maxPrice)) {
+            return new ArrayList<>();
+        }
+        return current.get().searchByPrice(
+                Money.toCentsClamped(minPrice, RoundingMode.CEILING),
+                Money.toCentsClamped(maxPrice, RoundingMode.FLOOR));
+    }
+
+    @Override
+    public int countProductsByPrice(BigDecimal minPrice, BigDecimal maxPrice) {
+        if (minPrice == null || maxPrice == null || maxPrice.compareTo(minPrice) < 0) {
+            return 0;
+        }
+        return current.get().countByPrice(
+                Money.toCentsClamped(minPrice, RoundingMode.CEILING),
+                Money.toCentsClamped(maxPrice, RoundingMode.FLOOR));
+    }
+
+    @Override
+    public List<Product> getProductsByCategory(int categoryID) {
+        if (categoryID <= 0) {
+            return new ArrayList<>();
+        }
+        return current.get().getProductsByCategory(categoryID);
+    }
+
+    @Override
+    public ProductPage getAllProducts(String cursor, int pageSize) {
+        return current.get().pageAllProducts(cursor, pageSize);
+    }
+
+    @Override
+    public ProductPage getAvailableProducts(String cursor, int pageSize) {
+        return current.get().pageAvailableProducts(cursor, pageSize);
+    }
+
+    @Override
+    public ProductPage getProductsByCategory(int categoryID, String cursor, int pageSize) {
+        if (categoryID <= 0) {
+            return ProductPage.empty();
+        }
+        return current.get().pageProductsByCategory(categoryID, cursor, pageSize);
+    }
+
+    @Override
+    public ProductPage searchProductsByName(String productName, String cursor, int pageSize) {
+        if (productName == null || productName.trim().isEmpty()) {
+            return ProductPage.empty();
+        }
+        return current.get().pageSearchByName(productName.trim(), cursor, pageSize);
+    }
+
+    @Override
+    public ProductPage searchProductsByPrice(BigDecimal minPrice, BigDecimal maxPrice, String cursor, int pageSize) {
+        if (!isValidRange(minPrice, maxPrice)) {
+            return ProductPage.empty();
+        }
+        return current.get().pageSearchByPrice(
+                Money.toCentsClamped(minPrice, RoundingMode.CEILING),
+                Money.toCentsClamped(maxPrice, RoundingMode.FLOOR),
+                cursor, pageSize);
+    }
+
+    @Override
+    public int streamProducts(boolean availableOnly, ProductRowHandler handler) throws SQLException {
+        CatalogSnapshot snapshot = current.get();
+        return stream(availableOnly ? snapshot.getAvailableProducts() : snapshot.getAllProducts(), handler);
+    }
+
+    @Override
+    public int streamProductsByName(String productName, ProductRowHandler handler) throws SQLException {
+        return stream(searchProductsByName(productName), handler);
+    }
+
+    @Override
+    public int streamProductsByPrice(BigDecimal minPrice, BigDecimal maxPrice,
+                                     ProductRowHandler handler) throws SQLException {
+        return stream(searchProductsByPrice(minPrice, maxPrice), handler);
+    }
+
+    @Override
+    public int streamProductsByCategory(int categoryID, ProductRowHandler handler) throws SQLException {
+        return stream(getProductsByCategory(categoryID), handler);
+    }
+
+    @Override
+    public boolean insertProduct(Product product) {
+        if (product == null || !product.isValid()) {
+            LOGGER.log(Level.WARNING, "Invalid product data provided for insertion");
+            return false;
+        }
+        Product stored = new Product(product);
+        stored.setProductID(nextProductID.incrementAndGet());
+        writeLock.lock();
+        try {
+            current.set(current.get().withProduct(versions.incrementAndGet(), stored));
+        } finally {
+            writeLock.unlock();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean updateProduct(Product product) {
+        if (product == null || product.getProductID() <= 0 || !product.isValid()) {
+            LOGGER.log(Level.WARNING, "Invalid product data provided for update");
+            return false;
+        }
+        Product stored = new Product(product);
+        return replace(product.getProductID(), existing -> stored);
+    }
+
+    @Override
+    public boolean deleteProduct(int productID) {
+        writeLock.lock();
+        try {
+            CatalogSnapshot snapshot = current.get();
+            if (snapshot.getProduct(productID) == null) {
+                return false;
+            }
+            current.set(snapshot.withoutProduct(versions.incrementAndGet(), productID));
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean updateProductStock(int productID, int newStock) {
+        if (productID <= 0 || newStock < 0) {
+            return false;
+        }
+        return replace(productID, existing -> {
+            Product updated = new Product(existing);
+            updated.setUnitsInStock(newStock);
+            return updated;
+        });
+    }
+
+    /**
+     * Swap in a new version of an existing product
+     *
+     * @return false if there is no product with that ID
+     */
+    private boolean replace(int productID, UnaryOperator<Product> change) {
+        writeLock.lock();
+        try {
+            CatalogSnapshot snapshot = current.get();
+            Product existing = snapshot.getProduct(productID);
+            if (existing == null) {
+                return false;
+            }
+            current.set(snapshot.withProduct(versions.incrementAndGet(), change.apply(existing)));
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private static int stream(List<Product> products, ProductRowHandler handler) throws SQLException {
+        for (Product product : products) {
+            handler.handleProduct(product);
+        }
+        return products.size();
+    }
+
+    private static boolean isValidRange(BigDecimal minPrice, BigDecimal maxPrice) {
+        return minPrice != null && maxPrice != null &&
+               minPrice.compareTo(BigDecimal.ZERO) >= 0 &&
+               maxPrice.compareTo(minPrice) >= 0;
+    }
+}
@@ -0,0 +1,92 @@
+package DBUtils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * UserRepository backed by a ConcurrentHashMap keyed by user ID, for load
+ * tests without a database. Users are stored and returned as copies so
+ * callers cannot change stored accounts (LoginServlet clears the password
+ * of the user it gets back).
+ */
+public final class InMemoryUserRepository implements UserRepository {
+    private static final Logger LOGGER = Logger.getLogger(InMemoryUserRepository.class.getName());
+
+    private final ConcurrentMap<String, User> users = new ConcurrentHashMap<>();
+
+    /**
+     * Repository with count customers named user1..userN and one staff
+     * account, "staff"; every generated account has the given password
+     */
+    public static InMemoryUserRepository withGeneratedUsers(int count, String password) {
+        InMemoryUserRepository repository = new InMemoryUserRepository();
+        repository.insertUser(new User("staff", "Load Test Staff", User.ROLE_STAFF, password));
+        for (int i = 1; i <= count; i++) {
+            repository.insertUser(new User("user" + i, "Load Test User " + i, User.ROLE_USER, password));
+        }
+        LOGGER.log(Level.INFO, "In-memory user repository started with {0} users", repository.users.size());
+        return repository;
+    }
+
+    @Override
+    public User authenticateUser(String userID, String password) {
+        if (userID == null || password == null) {
+            return null;
+        }
+        User user = users.get(userID.trim());
+        return user != null && password.trim().equals(user.getPassword()) ? copy(user) : null;
+    }
+
+    @Override
+    public List<User> getAllUsers() {
+        List<User> all = new ArrayList<>(users.size());
+        for (User user : users.values()) {
+            all.add(user.getSecureCopy());
+        }
+        all.sort(Comparator.comparing(User::getFullName));
+        return all;
+    }
+
+    @Override
+    public User getUserByID(String userID) {
+        User user = userID != null ? users.get(userID.trim()) : null;
+        return user != null ? copy(user) : null;
+    }
+
+    @Override
+    public boolean userExists(String userID) {
+        return userID != null && users.containsKey(userID.trim());
+    }
+
+    @Override
+    public boolean insertUser(User user) {
+        if (user == null || !user.isValid()) {
+            LOGGER.log(Level.WARNING, "Invalid user data provided for insertion");
+            return false;
+        }
+        return users.putIfAbsent(user.getUserID(), copy(user)) == null;
+    }
+
+    @Override
+    public boolean updateUser(User user) {
+        if (user == null || !user.isValid()) {
+            LOGGER.log(Level.WARNING, "Invalid user data provided for update");
+            return false;
+        }
+        return users.replace(user.getUserID(), copy(user)) != null;
+    }
+
+    @Override
+    public boolean deleteUser(String userID) {
+        return userID != null && users.remove(userID.trim()) != null;
+    }
+
+    private static User copy(User user) {
+        return new User(user.getUserID(), user.getFullName(), user.getRoleID(), user.getPassword());
+    }
+}
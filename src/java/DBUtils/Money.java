@@ -0,0 +1,117 @@
+package DBUtils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point money helpers. Amounts are held as a long number of cents, so
+ * prices, subtotals and totals are exact and cost no allocation; BigDecimal
+ * only appears at the JDBC boundary and when parsing user input.
+ *
+ * Formatting produces the same "$1234.50" text as String.format("$%.2f"),
+ * negative amounts included ("$-1.50"), written digit by digit into a
+ * char[].
+ */
+public final class Money {
+
+    /** Longest formatted amount: "$-" + 17 digits + "." + 2 digits */
+    public static final int MAX_FORMATTED_LENGTH = 22;
+
+    private Money() {
+    }
+
+    /**
+     * Cents from a decimal amount, rounding half up beyond two places
+     */
+    public static long toCents(BigDecimal amount) {
+        return toCents(amount, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Cents from a decimal amount with an explicit rounding mode (CEILING for
+     * the lower end of a range, FLOOR for the upper end)
+     *
+     * @throws ArithmeticException if the amount does not fit in a long
+     */
+    public static long toCents(BigDecimal amount, RoundingMode rounding) {
+        if (amount == null) {
+            return 0;
+        }
+        return amount.setScale(2, rounding).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Like toCents, but amounts beyond the long range are clamped instead of
+     * failing; for user-entered search bounds
+     */
+    public static long toCentsClamped(BigDecimal amount, RoundingMode rounding) {
+        try {
+            return toCents(amount, rounding);
+        } catch (ArithmeticException e) {
+            return amount.signum() < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+    }
+
+    public static BigDecimal toBigDecimal(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    /**
+     * Price times quantity, failing rather than overflowing
+     */
+    public static long times(long cents, int quantity) {
+        return Math.multiplyExact(cents, (long) quantity);
+    }
+
+    public static long plus(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    /**
+     * Format as "$1234.50"
+     */
+    public static String format(long cents) {
+        char[] buffer = new char[MAX_FORMATTED_LENGTH];
+        int start = formatInto(cents, buffer);
+        return new String(buffer, start, buffer.length - start);
+    }
+
+    /**
+     * Write "$1234.50" into the end of a caller-supplied buffer of at least
+     * MAX_FORMATTED_LENGTH chars; allocates nothing
+     *
+     * @return index of the first character written
+     */
+    public static int format(long cents, char[] buffer) {
+        return formatInto(cents, buffer);
+    }
+
+    /**
+     * Fill the end of the buffer with the formatted amount, right to left
+     *
+     * @return index of the first character written
+     */
+    private static int formatInto(long cents, char[] buffer) {
+        boolean negative = cents < 0;
+        // Work with a non-positive value so Long.MIN_VALUE needs no special case
+        long value = negative ? cents : -cents;
+
+        int pos = buffer.length;
+        buffer[--pos] = (char) ('0' - value % 10);
+        value /= 10;
+        buffer[--pos] = (char) ('0' - value % 10);
+        value /= 10;
+        buffer[--pos] = '.';
+
+        do {
+            buffer[--pos] = (char) ('0' - value % 10);
+            value /= 10;
+        } while (value != 0);
+
+        if (negative) {
+            buffer[--pos] = '-';
+        }
+        buffer[--pos] = '$';
+        return pos;
+    }
+}
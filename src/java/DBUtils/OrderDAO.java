@@ -0,0 +1,149 @@
+package DBUtils;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Order Data Access Object - places orders and takes their stock.
+ *
+ * Expects the Orders and OrderDetails tables next to Products; orders.sql
+ * in this package creates them.
+ */
+public class OrderDAO {
+    private static final Logger LOGGER = Logger.getLogger(OrderDAO.class.getName());
+    private static final EventLog EVENTS = EventLog.forClass(OrderDAO.class);
+
+    // Takes stock only if enough is left; a row count of 0 means the line lost the race
+    private static final String DECREMENT_STOCK_SQL =
+            "UPDATE Products SET UnitsInStock = UnitsInStock - ? " +
+            "WHERE ProductID = ? AND UnitsInStock >= ? AND Discontinued = 0";
+
+    private static final String INSERT_ORDER_SQL =
+            "INSERT INTO Orders (CustomerID, OrderDate) VALUES (?, ?)";
+
+    private static final String INSERT_DETAIL_SQL =
+            "INSERT INTO OrderDetails (OrderID, ProductID, UnitPrice, Quantity) VALUES (?, ?, ?, ?)";
+
+    /**
+     * Get database connection from the shared pool
+     */
+    private Connection getConnection() throws SQLException {
+        return ConnectionPool.getInstance().getConnection();
+    }
+
+    /**
+     * Place an order in one transaction: decrement stock for every line with
+     * a single batch of conditional updates, then write the order and its
+     * details. If any line does not have enough stock nothing is written.
+     *
+     * Concurrent checkouts for the same product are serialized by the row
+     * locks the updates take, and lines are applied in ProductID order so two
+     * orders never wait on each other's rows. No table locks and no prior
+     * stock reads are needed.
+     */
+    public OrderResult placeOrder(String customerID, List<OrderLine> lines) {
+        if (customerID == null || lines == null || lines.isEmpty()) {
+            LOGGER.log(Level.WARNING, "Invalid order: customerID={0}, lines={1}", new Object[]{customerID, lines});
+            return OrderResult.failed();
+        }
+        for (OrderLine line : lines) {
+            if (line.getProductID() <= 0 || line.getQuantity() <= 0) {
+                LOGGER.log(Level.WARNING, "Invalid order line: {0}", line);
+                return OrderResult.failed();
+            }
+        }
+
+        List<OrderLine> ordered = new ArrayList<>(lines);
+        ordered.sort(Comparator.comparingInt(OrderLine::getProductID));
+
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                List<Integer> unavailable = decrementStock(conn, ordered);
+                if (!unavailable.isEmpty()) {
+                    conn.rollback();
+                    EVENTS.info("Order for {0} rejected, insufficient stock: {1}", customerID, unavailable);
+                    return OrderResult.unavailable(unavailable);
+                }
+
+                int orderID = insertOrder(conn, customerID);
+                insertDetails(conn, orderID, ordered);
+                conn.commit();
+
+                ProductDAO.applyStockTaken(ordered);
+                EVENTS.info("Order {0} placed by {1}: {2} lines", orderID, customerID, ordered.size());
+                return OrderResult.placed(orderID);
+
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error placing order for " + customerID, e);
+        }
+
+        return OrderResult.failed();
+    }
+
+    /**
+     * Run the conditional decrements as one batch
+     *
+     * @return products whose update matched no row
+     * @throws SQLException if any update reports a count other than 0 or 1,
+     *         such as SUCCESS_NO_INFO: the stock may not have been taken
+     */
+    private List<Integer> decrementStock(Connection conn, List<OrderLine> lines) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(DECREMENT_STOCK_SQL)) {
+            for (OrderLine line : lines) {
+                pstmt.setInt(1, line.getQuantity());
+                pstmt.setInt(2, line.getProductID());
+                pstmt.setInt(3, line.getQuantity());
+                pstmt.addBatch();
+            }
+
+            int[] counts = pstmt.executeBatch();
+            List<Integer> unavailable = new ArrayList<>();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0) {
+                    unavailable.add(lines.get(i).getProductID());
+                } else if (counts[i] != 1) {
+                    throw new SQLException("Stock update for product " + lines.get(i).getProductID() +
+                                           " reported " + counts[i] + " rows; expected 0 or 1");
+                }
+            }
+            return unavailable;
+        }
+    }
+
+    private int insertOrder(Connection conn, String customerID) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(INSERT_ORDER_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            pstmt.setString(1, customerID);
+            pstmt.setTimestamp(2, new Timestamp(System.currentTimeMillis()));
+            pstmt.executeUpdate();
+
+            try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                if (keys.next()) {
+                    return keys.getInt(1);
+                }
+            }
+        }
+        throw new SQLException("No OrderID generated for new order");
+    }
+
+    private void insertDetails(Connection conn, int orderID, List<OrderLine> lines) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(INSERT_DETAIL_SQL)) {
+            for (OrderLine line : lines) {
+                pstmt.setInt(1, orderID);
+                pstmt.setInt(2, line.getProductID());
+                pstmt.setBigDecimal(3, Money.toBigDecimal(line.getUnitPriceCents()));
+                pstmt.setInt(4, line.getQuantity());
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+}
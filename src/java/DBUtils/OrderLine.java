@@ -0,0 +1,38 @@
+package DBUtils;
+
+/**
+ * One line of an order being placed: product, quantity and the unit price
+ * the customer agreed to
+ */
+public class OrderLine {
+    private final int productID;
+    private final int quantity;
+    private final long unitPriceCents;
+
+    public OrderLine(int productID, int quantity, long unitPriceCents) {
+        this.productID = productID;
+        this.quantity = quantity;
+        this.unitPriceCents = unitPriceCents;
+    }
+
+    public int getProductID() {
+        return productID;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public long getUnitPriceCents() {
+        return unitPriceCents;
+    }
+
+    @Override
+    public String toString() {
+        return "OrderLine{" +
+                "productID=" + productID +
+                ", quantity=" + quantity +
+                ", unitPrice=" + Money.format(unitPriceCents) +
+                '}';
+    }
+}
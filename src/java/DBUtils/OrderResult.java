@@ -0,0 +1,60 @@
+package DBUtils;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of OrderDAO.placeOrder: the new order's ID, or the products that
+ * did not have enough stock, or a failure
+ */
+public final class OrderResult {
+    private final int orderID;
+    private final List<Integer> unavailableProductIDs;
+
+    private OrderResult(int orderID, List<Integer> unavailableProductIDs) {
+        this.orderID = orderID;
+        this.unavailableProductIDs = Collections.unmodifiableList(unavailableProductIDs);
+    }
+
+    static OrderResult placed(int orderID) {
+        return new OrderResult(orderID, Collections.<Integer>emptyList());
+    }
+
+    static OrderResult unavailable(List<Integer> productIDs) {
+        return new OrderResult(0, productIDs);
+    }
+
+    static OrderResult failed() {
+        return new OrderResult(0, Collections.<Integer>emptyList());
+    }
+
+    public boolean isPlaced() {
+        return orderID > 0;
+    }
+
+    public int getOrderID() {
+        return orderID;
+    }
+
+    /**
+     * Products that were out of stock or discontinued; nothing was written
+     */
+    public List<Integer> getUnavailableProductIDs() {
+        return unavailableProductIDs;
+    }
+
+    /**
+     * True when the order failed for a reason other than stock (database error)
+     */
+    public boolean isFailed() {
+        return orderID <= 0 && unavailableProductIDs.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "OrderResult{" +
+                "orderID=" + orderID +
+                ", unavailable=" + unavailableProductIDs +
+                '}';
+    }
+}
@@ -7,14 +7,14 @@ import java.math.BigDecimal;
  * Product JavaBean - Enhanced for PizzaStore Shopping Website
  */
 public class Product implements Serializable {
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
     
     private int productID;
     private String productName;
     private int supplierID;
     private int categoryID;
     private String quantityPerUnit;
-    private BigDecimal unitPrice;
+    private long unitPriceCents;
     private String productImage;
     
     // Additional fields for display purposes
@@ -23,9 +23,13 @@ public class Product implements Serializable {
     private int unitsInStock;
     private boolean discontinued;
     
+    // Formatted unitPrice, set along with it so reading it never writes;
+    // null after deserialization
+    private transient String formattedPrice;
+    
     // Default constructor
     public Product() {
-        this.unitPrice = BigDecimal.ZERO;
+        this.unitPriceCents = 0;
         this.unitsInStock = 0;
         this.discontinued = false;
     }
@@ -38,7 +42,8 @@ public class Product implements Serializable {
         this.supplierID = supplierID;
         this.categoryID = categoryID;
         this.quantityPerUnit = quantityPerUnit;
-        this.unitPrice = unitPrice != null ? unitPrice : BigDecimal.ZERO;
+        this.unitPriceCents = Money.toCents(unitPrice);
+        this.formattedPrice = Money.format(unitPriceCents);
     }
     
     // Constructor with all fields
@@ -49,6 +54,22 @@ public class Product implements Serializable {
         this.productImage = productImage;
     }
     
+    // Copy constructor
+    public Product(Product other) {
+        this.productID = other.productID;
+        this.productName = other.productName;
+        this.supplierID = other.supplierID;
+        this.categoryID = other.categoryID;
+        this.quantityPerUnit = other.quantityPerUnit;
+        this.unitPriceCents = other.unitPriceCents;
+        this.formattedPrice = other.formattedPrice;
+        this.productImage = other.productImage;
+        this.categoryName = other.categoryName;
+        this.supplierName = other.supplierName;
+        this.unitsInStock = other.unitsInStock;
+        this.discontinued = other.discontinued;
+    }
+    
     // Getters and Setters
     public int getProductID() {
         return productID;
@@ -90,12 +111,25 @@ public class Product implements Serializable {
         this.quantityPerUnit = quantityPerUnit != null ? quantityPerUnit.trim() : null;
     }
     
+    /**
+     * Unit price as a decimal, for JDBC and display code that needs one;
+     * hot paths should use getUnitPriceCents
+     */
     public BigDecimal getUnitPrice() {
-        return unitPrice;
+        return Money.toBigDecimal(unitPriceCents);
     }
     
     public void setUnitPrice(BigDecimal unitPrice) {
-        this.unitPrice = unitPrice != null ? unitPrice : BigDecimal.ZERO;
+        setUnitPriceCents(Money.toCents(unitPrice));
+    }
+    
+    public long getUnitPriceCents() {
+        return unitPriceCents;
+    }
+    
+    public void setUnitPriceCents(long unitPriceCents) {
+        this.unitPriceCents = unitPriceCents;
+        this.formattedPrice = Money.format(unitPriceCents);
     }
     
     public String getProductImage() {
@@ -165,15 +199,17 @@ public class Product implements Serializable {
      */
     public boolean isValid() {
         return productName != null && !productName.trim().isEmpty() &&
-               unitPrice != null && unitPrice.compareTo(BigDecimal.ZERO) > 0 &&
+               unitPriceCents > 0 &&
                supplierID > 0 && categoryID > 0;
     }
     
     /**
-     * Get formatted price as string
+     * Get formatted price as string ("$12.50"), formatted when the price
+     * was set
      */
     public String getFormattedPrice() {
-        return unitPrice != null ? String.format("$%.2f", unitPrice) : "$0.00";
+        String formatted = formattedPrice;
+        return formatted != null ? formatted : Money.format(unitPriceCents);
     }
     
     /**
@@ -211,7 +247,7 @@ public class Product implements Serializable {
                 "productID=" + productID +
                 ", productName='" + productName + '\'' +
                 ", categoryName='" + categoryName + '\'' +
-                ", unitPrice=" + unitPrice +
+                ", unitPrice=" + getFormattedPrice() +
                 ", unitsInStock=" + unitsInStock +
                 ", available=" + isAvailable() +
                 '}';
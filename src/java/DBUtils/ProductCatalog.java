@@ -0,0 +1,257 @@
+package DBUtils;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Read-through holder of the current CatalogSnapshot.
+ *
+ * Readers take the current snapshot without locking. The first read loads
+ * the catalog from the database; after that, product writes patch the
+ * snapshot and swap it atomically, and a full reload only happens once the
+ * snapshot is older than catalog.maxAgeMillis. Loads are coalesced: the
+ * first caller to find the catalog missing or expired runs the bulk query,
+ * and callers arriving while it runs wait for it and share its result
+ * instead of querying again. getLoadCount() and getCoalescedLoadCount()
+ * count the two.
+ */
+public final class ProductCatalog {
+    private static final Logger LOGGER = Logger.getLogger(ProductCatalog.class.getName());
+    private static final long RETRY_DELAY_MILLIS = 5000;
+
+    /**
+     * Source of the full product list
+     */
+    public interface Loader {
+        List<Product> load() throws SQLException;
+    }
+
+    /**
+     * A change to the current snapshot, given the version the result gets
+     */
+    private interface Patch {
+        CatalogSnapshot apply(CatalogSnapshot snapshot, long version);
+    }
+
+    private final AtomicReference<CatalogSnapshot> current = new AtomicReference<>();
+    private final AtomicLong versions = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    // Loads finished, whether they succeeded or not
+    private final AtomicLong loadsFinished = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong coalescedLoads = new AtomicLong();
+    private final ReentrantLock reloadLock = new ReentrantLock();
+    // Held while a patch or reload swaps the snapshot; readers never take it
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final long maxAgeMillis;
+    private volatile long refreshDueAt;
+
+    public ProductCatalog(long maxAgeMillis) {
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * Get the current snapshot, loading or refreshing it with the loader when
+     * needed. Returns an empty snapshot if the catalog has never loaded.
+     */
+    public CatalogSnapshot getSnapshot(Loader loader) {
+        CatalogSnapshot snapshot = current.get();
+        // Also covers the retry delay after a failed first load
+        if (System.currentTimeMillis() < refreshDueAt) {
+            return snapshot != null ? snapshot : CatalogSnapshot.EMPTY;
+        }
+
+        long finishedBefore = loadsFinished.get();
+        reloadLock.lock();
+        try {
+            if (loadsFinished.get() != finishedBefore) {
+                // A load ran while we waited; its result is ours too
+                coalescedLoads.incrementAndGet();
+            } else if (System.currentTimeMillis() >= refreshDueAt) {
+                loads.incrementAndGet();
+                reload(loader);
+            }
+            snapshot = current.get();
+        } finally {
+            reloadLock.unlock();
+        }
+        return snapshot != null ? snapshot : CatalogSnapshot.EMPTY;
+    }
+
+    /**
+     * Bulk loads run against the loader
+     */
+    public long getLoadCount() {
+        return loads.get();
+    }
+
+    /**
+     * Callers that waited for a load already running and shared its result
+     */
+    public long getCoalescedLoadCount() {
+        return coalescedLoads.get();
+    }
+
+    /**
+     * The current snapshot if it is loaded and not yet due for a refresh,
+     * else null; never calls the loader
+     */
+    public CatalogSnapshot getFreshSnapshot() {
+        CatalogSnapshot snapshot = current.get();
+        return snapshot != null && System.currentTimeMillis() < refreshDueAt ? snapshot : null;
+    }
+
+    /**
+     * Version of the current snapshot, or 0 if nothing has been loaded yet
+     */
+    public long getVersion() {
+        CatalogSnapshot snapshot = current.get();
+        return snapshot != null ? snapshot.getVersion() : 0;
+    }
+
+    /**
+     * Add or replace a product in the current snapshot
+     */
+    public void put(Product product) {
+        patch((s, version) -> s.withProduct(version, product));
+    }
+
+    /**
+     * Stamp to take before reading products from the database whose rows
+     * may go into the catalog with putIfUnchanged
+     */
+    public long getWriteStamp() {
+        return writes.get();
+    }
+
+    /**
+     * Add or replace products read from the database, in one snapshot swap,
+     * unless the catalog has changed since readStamp was taken: the rows
+     * might then be older than what the snapshot holds (a checkout's stock
+     * taken after they were read, say), so they are dropped instead
+     *
+     * @return false if the rows were dropped
+     */
+    public boolean putIfUnchanged(Collection<Product> products, long readStamp) {
+        writeLock.lock();
+        try {
+            if (writes.get() != readStamp) {
+                return false;
+            }
+            if (!products.isEmpty()) {
+                patch((s, version) -> s.withProducts(version, products));
+            }
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Remove a product from the current snapshot
+     */
+    public void remove(int productID) {
+        patch((s, version) -> s.withoutProduct(version, productID));
+    }
+
+    /**
+     * Replace a product's stock level in the current snapshot
+     */
+    public void updateStock(int productID, int unitsInStock) {
+        patch((s, version) -> {
+            Product existing = s.getProduct(productID);
+            if (existing == null) {
+                return s;
+            }
+            Product updated = new Product(existing);
+            updated.setUnitsInStock(unitsInStock);
+            return s.withProduct(version, updated);
+        });
+    }
+
+    /**
+     * Add deltas to several products' stock levels in one snapshot swap.
+     * Levels never go below zero; unknown products are skipped.
+     */
+    public void adjustStock(int[] productIDs, int[] deltas) {
+        patch((s, version) -> {
+            // A product may appear on several lines; later deltas apply to the earlier result
+            Map<Integer, Product> updated = new LinkedHashMap<>();
+            for (int i = 0; i < productIDs.length; i++) {
+                Product existing = updated.get(productIDs[i]);
+                if (existing == null) {
+                    existing = s.getProduct(productIDs[i]);
+                }
+                if (existing != null) {
+                    Product adjusted = new Product(existing);
+                    adjusted.setUnitsInStock(Math.max(0, existing.getUnitsInStock() + deltas[i]));
+                    updated.put(productIDs[i], adjusted);
+                }
+            }
+            return s.withProducts(version, updated.values());
+        });
+    }
+
+    /**
+     * Force a full reload on the next read
+     */
+    public void invalidate() {
+        refreshDueAt = 0;
+    }
+
+    /**
+     * Build the next snapshot from the current one and swap it in. Patches
+     * run one at a time under the write lock, so each is built once, with a
+     * version taken once, and versions only grow.
+     */
+    private void patch(Patch patch) {
+        writeLock.lock();
+        try {
+            writes.incrementAndGet();
+            CatalogSnapshot snapshot = current.get();
+            if (snapshot != null) {
+                current.set(patch.apply(snapshot, versions.incrementAndGet()));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private CatalogSnapshot reload(Loader loader) {
+        long writesBefore = writes.get();
+        try {
+            List<Product> products = loader.load();
+            CatalogSnapshot snapshot;
+            writeLock.lock();
+            try {
+                snapshot = new CatalogSnapshot(versions.incrementAndGet(), products);
+                current.set(snapshot);
+
+                // A write that raced with the load may have patched the old
+                // snapshot we just replaced, so reload again on the next read
+                refreshDueAt = writes.get() == writesBefore ? System.currentTimeMillis() + maxAgeMillis : 0;
+                // Rows read before this load must not overwrite it
+                writes.incrementAndGet();
+            } finally {
+                writeLock.unlock();
+            }
+
+            LOGGER.log(Level.INFO, "Product catalog loaded: {0}", snapshot);
+            return snapshot;
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error loading product catalog", e);
+            refreshDueAt = System.currentTimeMillis() + RETRY_DELAY_MILLIS;
+            return current.get();
+        } finally {
+            loadsFinished.incrementAndGet();
+        }
+    }
+}
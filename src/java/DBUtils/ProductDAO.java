@@ -2,71 +2,68 @@ package DBUtils;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Product Data Access Object - Enhanced for PizzaStore Shopping Website
  */
-public class ProductDAO {
+public class ProductDAO implements ProductRepository {
     private static final Logger LOGGER = Logger.getLogger(ProductDAO.class.getName());
+    private static final EventLog EVENTS = EventLog.forClass(ProductDAO.class);
+    private static final EventLog FREQUENT_EVENTS = EVENTS.sampled();
     
-    // Database connection settings
-    private static final String DB_URL = "jdbc:sqlserver://localhost:1433;databaseName=PizzaStore;trustServerCertificate=true;encrypt=false";
-    private static final String DB_USER = "sa";
-    private static final String DB_PASSWORD = "12345";
+    // Shared by every ProductDAO instance so all servlets read one snapshot
+    private static final ProductCatalog CATALOG =
+            new ProductCatalog(DBConfig.load().getLong("catalog.maxAgeMillis", 300000));
     
-    static {
-        try {
-            Class.forName("com.microsoft.sqlserver.jdbc.SQLServerDriver");
-            LOGGER.info("SQL Server JDBC Driver loaded successfully");
-        } catch (ClassNotFoundException e) {
-            LOGGER.log(Level.SEVERE, "Failed to load SQL Server JDBC Driver", e);
-        }
+    /**
+     * The catalog shared by every ProductDAO, e.g. for its load counters
+     */
+    public static ProductCatalog getCatalog() {
+        return CATALOG;
     }
     
     /**
-     * Get database connection
+     * Get database connection from the shared pool
      */
     private Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
+        return ConnectionPool.getInstance().getConnection();
     }
     
     /**
-     * Get all products with enhanced information
+     * Get the current catalog snapshot, loading it on first use
+     */
+    public CatalogSnapshot getCatalogSnapshot() {
+        return CATALOG.getSnapshot(this::queryAllProducts);
+    }
+    
+    /**
+     * Get the current catalog snapshot without loading or refreshing it
+     */
+    public CatalogSnapshot getCachedCatalogSnapshot() {
+        return CATALOG.getFreshSnapshot();
+    }
+    
+    /**
+     * Get all products with enhanced information (staff view of the catalog)
      */
     public List<Product> getAllProducts() {
-        List<Product> products = new ArrayList<>();
-        String sql = "SELECT p.ProductID, p.ProductName, p.SupplierID, p.CategoryID, " +
-                    "p.QuantityPerUnit, p.UnitPrice, p.UnitsInStock, p.Discontinued, p.ProductImage, " +
-                    "c.CategoryName, s.CompanyName as SupplierName " +
-                    "FROM Products p " +
-                    "LEFT JOIN Categories c ON p.CategoryID = c.CategoryID " +
-                    "LEFT JOIN Suppliers s ON p.SupplierID = s.SupplierID " +
-                    "ORDER BY p.ProductName";
-        
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql);
-             ResultSet rs = pstmt.executeQuery()) {
-            
-            while (rs.next()) {
-                Product product = createProductFromResultSet(rs);
-                products.add(product);
-            }
-            
-            LOGGER.log(Level.INFO, "Retrieved {0} products from database", products.size());
-            
-        } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Error retrieving all products", e);
-        }
-        
+        List<Product> products = getCatalogSnapshot().getAllProducts();
+        FREQUENT_EVENTS.info("Retrieved {0} products from catalog", products.size());
         return products;
     }
     
     /**
-     * Get product by ID
+     * Get product by ID, falling back to the database for products the
+     * catalog has not seen yet
      */
     public Product getProductById(int productID) {
         if (productID <= 0) {
@@ -74,194 +71,268 @@ public class ProductDAO {
             return null;
         }
         
-        String sql = "SELECT p.ProductID, p.ProductName, p.SupplierID, p.CategoryID, " +
-                    "p.QuantityPerUnit, p.UnitPrice, p.UnitsInStock, p.Discontinued, p.ProductImage, " +
-                    "c.CategoryName, s.CompanyName as SupplierName " +
-                    "FROM Products p " +
-                    "LEFT JOIN Categories c ON p.CategoryID = c.CategoryID " +
-                    "LEFT JOIN Suppliers s ON p.SupplierID = s.SupplierID " +
-                    "WHERE p.ProductID = ?";
-        
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setInt(1, productID);
-            
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    Product product = createProductFromResultSet(rs);
-                    LOGGER.log(Level.INFO, "Retrieved product: {0}", product.getProductName());
-                    return product;
-                }
+        Product product = getCatalogSnapshot().getProduct(productID);
+        if (product == null) {
+            long readStamp = CATALOG.getWriteStamp();
+            product = queryProductById(productID);
+            if (product != null) {
+                CATALOG.putIfUnchanged(Collections.singletonList(product), readStamp);
             }
-            
+        }
+        
+        if (product != null) {
+            FREQUENT_EVENTS.info("Retrieved product: {0}", product.getProductName());
+        }
+        return product;
+    }
+    
+    /**
+     * Get several products by ID straight from the database, so prices and
+     * stock are current (e.g. to re-validate a cart). IDs are sent as IN
+     * lists of up to Queries.MAX_IDS_PER_QUERY, so a normal cart costs a single
+     * round trip. Products that no longer exist are absent from the result.
+     * Fresh rows that differ from the catalog snapshot refresh it in one
+     * swap, unless the catalog changed while they were being read.
+     *
+     * @return read-only map of products keyed by ID, empty if none of them
+     *         exists any more; null if the lookup failed
+     */
+    public Map<Integer, Product> getProductsByIds(Collection<Integer> productIDs) {
+        int[] ids = productIDs.stream()
+                .filter(id -> id != null && id > 0)
+                .mapToInt(Integer::intValue)
+                .distinct()
+                .sorted()
+                .toArray();
+        if (ids.length == 0) {
+            return new HashMap<>();
+        }
+        
+        long readStamp = CATALOG.getWriteStamp();
+        Map<Integer, Product> products;
+        try {
+            products = queryProductsByIds(ids);
         } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Error retrieving product with ID: " + productID, e);
+            LOGGER.log(Level.SEVERE, "Error retrieving " + ids.length + " products by ID", e);
+            return null;
         }
         
-        return null;
+        CatalogSnapshot snapshot = getCatalogSnapshot();
+        List<Product> changed = new ArrayList<>();
+        for (Product fresh : products.values()) {
+            if (!sameStockAndPrice(fresh, snapshot.getProduct(fresh.getProductID()))) {
+                changed.add(fresh);
+            }
+        }
+        if (!changed.isEmpty()) {
+            CATALOG.putIfUnchanged(changed, readStamp);
+        }
+        
+        FREQUENT_EVENTS.info("Retrieved {0} of {1} requested products", products.size(), ids.length);
+        return products;
     }
     
     /**
-     * Search products by name (case insensitive)
+     * Search products by name (case insensitive substring match), answered
+     * from the catalog's trigram index without a database query
      */
     public List<Product> searchProductsByName(String productName) {
-        List<Product> products = new ArrayList<>();
-        
         if (productName == null || productName.trim().isEmpty()) {
             LOGGER.log(Level.WARNING, "Empty product name provided for search");
-            return products;
+            return new ArrayList<>();
         }
         
-        String sql = "SELECT p.ProductID, p.ProductName, p.SupplierID, p.CategoryID, " +
-                    "p.QuantityPerUnit, p.UnitPrice, p.UnitsInStock, p.Discontinued, p.ProductImage, " +
-                    "c.CategoryName, s.CompanyName as SupplierName " +
-                    "FROM Products p " +
-                    "LEFT JOIN Categories c ON p.CategoryID = c.CategoryID " +
-                    "LEFT JOIN Suppliers s ON p.SupplierID = s.SupplierID " +
-                    "WHERE LOWER(p.ProductName) LIKE LOWER(?) " +
-                    "ORDER BY p.ProductName";
+        List<Product> products = getCatalogSnapshot().searchByName(productName.trim());
         
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setString(1, "%" + productName.trim() + "%");
-            
-            try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                    Product product = createProductFromResultSet(rs);
-                    products.add(product);
-                }
-            }
-            
-            LOGGER.log(Level.INFO, "Found {0} products matching search term: {1}", 
-                      new Object[]{products.size(), productName});
-            
-        } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Error searching products by name: " + productName, e);
-        }
+        FREQUENT_EVENTS.info("Found {0} products matching search term: {1}", products.size(), productName);
         
         return products;
     }
     
     /**
-     * Search products by price range
+     * Search products by price range, answered from the catalog's price index
      */
     public List<Product> searchProductsByPrice(BigDecimal minPrice, BigDecimal maxPrice) {
-        List<Product> products = new ArrayList<>();
-        
         if (minPrice == null || maxPrice == null || 
             minPrice.compareTo(BigDecimal.ZERO) < 0 || 
             maxPrice.compareTo(minPrice) < 0) {
             LOGGER.log(Level.WARNING, "Invalid price range: {0} - {1}", 
                       new Object[]{minPrice, maxPrice});
-            return products;
+            return new ArrayList<>();
         }
         
-        String sql = "SELECT p.ProductID, p.ProductName, p.SupplierID, p.CategoryID, " +
-                    "p.QuantityPerUnit, p.UnitPrice, p.UnitsInStock, p.Discontinued, p.ProductImage, " +
-                    "c.CategoryName, s.CompanyName as SupplierName " +
-                    "FROM Products p " +
-                    "LEFT JOIN Categories c ON p.CategoryID = c.CategoryID " +
-                    "LEFT JOIN Suppliers s ON p.SupplierID = s.SupplierID " +
-                    "WHERE p.UnitPrice BETWEEN ? AND ? " +
-                    "ORDER BY p.UnitPrice";
+        List<Product> products = getCatalogSnapshot().searchByPrice(
+                Money.toCentsClamped(minPrice, RoundingMode.CEILING),
+                Money.toCentsClamped(maxPrice, RoundingMode.FLOOR));
         
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setBigDecimal(1, minPrice);
-            pstmt.setBigDecimal(2, maxPrice);
-            
-            try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                    Product product = createProductFromResultSet(rs);
-                    products.add(product);
-                }
-            }
-            
-            LOGGER.log(Level.INFO, "Found {0} products in price range: {1} - {2}", 
-                      new Object[]{products.size(), minPrice, maxPrice});
-            
-        } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Error searching products by price range", e);
-        }
+        FREQUENT_EVENTS.info("Found {0} products in price range: {1} - {2}", products.size(), minPrice, maxPrice);
         
         return products;
     }
     
+    /**
+     * Count products in a price range without building a result list,
+     * e.g. for price slider labels
+     */
+    public int countProductsByPrice(BigDecimal minPrice, BigDecimal maxPrice) {
+        if (minPrice == null || maxPrice == null || maxPrice.compareTo(minPrice) < 0) {
+            return 0;
+        }
+        return getCatalogSnapshot().countByPrice(
+                Money.toCentsClamped(minPrice, RoundingMode.CEILING),
+                Money.toCentsClamped(maxPrice, RoundingMode.FLOOR));
+    }
+    
     /**
      * Get products by category
      */
     public List<Product> getProductsByCategory(int categoryID) {
-        List<Product> products = new ArrayList<>();
+        if (categoryID <= 0) {
+            LOGGER.log(Level.WARNING, "Invalid category ID: {0}", categoryID);
+            return new ArrayList<>();
+        }
         
+        List<Product> products = getCatalogSnapshot().getProductsByCategory(categoryID);
+        FREQUENT_EVENTS.info("Found {0} products in category: {1}", products.size(), categoryID);
+        return products;
+    }
+    
+    /**
+     * Get available products only (customer view of the catalog)
+     */
+    public List<Product> getAvailableProducts() {
+        List<Product> products = getCatalogSnapshot().getAvailableProducts();
+        FREQUENT_EVENTS.info("Retrieved {0} available products", products.size());
+        return products;
+    }
+    
+    // Keyset-paginated listings: pass null for the first page, then the
+    // previous page's getNextCursor()
+    
+    /**
+     * Get one page of all products (staff view)
+     */
+    public ProductPage getAllProducts(String cursor, int pageSize) {
+        ProductPage page = getCatalogSnapshot().pageAllProducts(cursor, pageSize);
+        FREQUENT_EVENTS.info("Retrieved page of {0} products", page.size());
+        return page;
+    }
+    
+    /**
+     * Get one page of available products (customer view)
+     */
+    public ProductPage getAvailableProducts(String cursor, int pageSize) {
+        ProductPage page = getCatalogSnapshot().pageAvailableProducts(cursor, pageSize);
+        FREQUENT_EVENTS.info("Retrieved page of {0} available products", page.size());
+        return page;
+    }
+    
+    /**
+     * Get one page of products in a category
+     */
+    public ProductPage getProductsByCategory(int categoryID, String cursor, int pageSize) {
         if (categoryID <= 0) {
             LOGGER.log(Level.WARNING, "Invalid category ID: {0}", categoryID);
-            return products;
+            return ProductPage.empty();
         }
         
-        String sql = "SELECT p.ProductID, p.ProductName, p.SupplierID, p.CategoryID, " +
-                    "p.QuantityPerUnit, p.UnitPrice, p.UnitsInStock, p.Discontinued, p.ProductImage, " +
-                    "c.CategoryName, s.CompanyName as SupplierName " +
-                    "FROM Products p " +
-                    "LEFT JOIN Categories c ON p.CategoryID = c.CategoryID " +
-                    "LEFT JOIN Suppliers s ON p.SupplierID = s.SupplierID " +
-                    "WHERE p.CategoryID = ? " +
-                    "ORDER BY p.ProductName";
+        ProductPage page = getCatalogSnapshot().pageProductsByCategory(categoryID, cursor, pageSize);
+        FREQUENT_EVENTS.info("Found page of {0} products in category: {1}", page.size(), categoryID);
+        return page;
+    }
+    
+    /**
+     * Get one page of a name search
+     */
+    public ProductPage searchProductsByName(String productName, String cursor, int pageSize) {
+        if (productName == null || productName.trim().isEmpty()) {
+            LOGGER.log(Level.WARNING, "Empty product name provided for search");
+            return ProductPage.empty();
+        }
         
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setInt(1, categoryID);
-            
-            try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                    Product product = createProductFromResultSet(rs);
-                    products.add(product);
-                }
-            }
-            
-            LOGGER.log(Level.INFO, "Found {0} products in category: {1}", 
-                      new Object[]{products.size(), categoryID});
-            
-        } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Error retrieving products by category: " + categoryID, e);
+        ProductPage page = getCatalogSnapshot().pageSearchByName(productName.trim(), cursor, pageSize);
+        FREQUENT_EVENTS.info("Found page of {0} products matching search term: {1}", page.size(), productName);
+        return page;
+    }
+    
+    /**
+     * Get one page of a price range search, cheapest first
+     */
+    public ProductPage searchProductsByPrice(BigDecimal minPrice, BigDecimal maxPrice, String cursor, int pageSize) {
+        if (minPrice == null || maxPrice == null || 
+            minPrice.compareTo(BigDecimal.ZERO) < 0 || 
+            maxPrice.compareTo(minPrice) < 0) {
+            LOGGER.log(Level.WARNING, "Invalid price range: {0} - {1}", 
+                      new Object[]{minPrice, maxPrice});
+            return ProductPage.empty();
         }
         
-        return products;
+        ProductPage page = getCatalogSnapshot().pageSearchByPrice(
+                Money.toCentsClamped(minPrice, RoundingMode.CEILING),
+                Money.toCentsClamped(maxPrice, RoundingMode.FLOOR),
+                cursor, pageSize);
+        FREQUENT_EVENTS.info("Found page of {0} products in price range: {1} - {2}",
+                page.size(), minPrice, maxPrice);
+        return page;
     }
     
+    // Streaming reads: rows go from the ResultSet to the handler one at a
+    // time, straight from the database and without building a list, so
+    // memory stays flat however large the result is
+    
     /**
-     * Get available products only
+     * Stream all products, or only available ones, in name order
+     * @return number of rows streamed
      */
-    public List<Product> getAvailableProducts() {
-        List<Product> products = new ArrayList<>();
-        String sql = "SELECT p.ProductID, p.ProductName, p.SupplierID, p.CategoryID, " +
-                    "p.QuantityPerUnit, p.UnitPrice, p.UnitsInStock, p.Discontinued, p.ProductImage, " +
-                    "c.CategoryName, s.CompanyName as SupplierName " +
-                    "FROM Products p " +
-                    "LEFT JOIN Categories c ON p.CategoryID = c.CategoryID " +
-                    "LEFT JOIN Suppliers s ON p.SupplierID = s.SupplierID " +
-                    "WHERE p.Discontinued = 0 AND p.UnitsInStock > 0 " +
-                    "ORDER BY p.ProductName";
+    public int streamProducts(boolean availableOnly, ProductRowHandler handler) throws SQLException {
+        return streamQuery(availableOnly ? Queries.STREAM_AVAILABLE_PRODUCTS : Queries.STREAM_PRODUCTS,
+                           pstmt -> { }, handler);
+    }
+    
+    /**
+     * Stream products whose name contains the term (case insensitive)
+     * @return number of rows streamed
+     */
+    public int streamProductsByName(String productName, ProductRowHandler handler) throws SQLException {
+        if (productName == null || productName.trim().isEmpty()) {
+            LOGGER.log(Level.WARNING, "Empty product name provided for search");
+            return 0;
+        }
         
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql);
-             ResultSet rs = pstmt.executeQuery()) {
-            
-            while (rs.next()) {
-                Product product = createProductFromResultSet(rs);
-                products.add(product);
-            }
-            
-            LOGGER.log(Level.INFO, "Retrieved {0} available products", products.size());
-            
-        } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Error retrieving available products", e);
+        return streamQuery(Queries.STREAM_PRODUCTS_BY_NAME, pstmt -> pstmt.setString(1, "%" + productName.trim() + "%"), handler);
+    }
+    
+    /**
+     * Stream products in a price range, cheapest first
+     * @return number of rows streamed
+     */
+    public int streamProductsByPrice(BigDecimal minPrice, BigDecimal maxPrice,
+                                     ProductRowHandler handler) throws SQLException {
+        if (minPrice == null || maxPrice == null || 
+            minPrice.compareTo(BigDecimal.ZERO) < 0 || 
+            maxPrice.compareTo(minPrice) < 0) {
+            LOGGER.log(Level.WARNING, "Invalid price range: {0} - {1}", 
+                      new Object[]{minPrice, maxPrice});
+            return 0;
         }
         
-        return products;
+        return streamQuery(Queries.STREAM_PRODUCTS_BY_PRICE, pstmt -> {
+            pstmt.setBigDecimal(1, minPrice);
+            pstmt.setBigDecimal(2, maxPrice);
+        }, handler);
+    }
+    
+    /**
+     * Stream products in a category in name order
+     * @return number of rows streamed
+     */
+    public int streamProductsByCategory(int categoryID, ProductRowHandler handler) throws SQLException {
+        if (categoryID <= 0) {
+            LOGGER.log(Level.WARNING, "Invalid category ID: {0}", categoryID);
+            return 0;
+        }
+        
+        return streamQuery(Queries.STREAM_PRODUCTS_BY_CATEGORY, pstmt -> pstmt.setInt(1, categoryID), handler);
     }
     
     /**
@@ -278,7 +349,7 @@ public class ProductDAO {
                     "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
         
         try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             
             conn.setAutoCommit(false);
             
@@ -286,7 +357,7 @@ public class ProductDAO {
             pstmt.setInt(2, product.getSupplierID());
             pstmt.setInt(3, product.getCategoryID());
             pstmt.setString(4, product.getQuantityPerUnit());
-            pstmt.setBigDecimal(5, product.getUnitPrice());
+            pstmt.setBigDecimal(5, Money.toBigDecimal(product.getUnitPriceCents()));
             pstmt.setInt(6, product.getUnitsInStock());
             pstmt.setBoolean(7, product.isDiscontinued());
             pstmt.setString(8, product.getProductImage());
@@ -294,8 +365,15 @@ public class ProductDAO {
             int result = pstmt.executeUpdate();
             
             if (result > 0) {
+                int productID = 0;
+                try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                    if (keys.next()) {
+                        productID = keys.getInt(1);
+                    }
+                }
                 conn.commit();
-                LOGGER.log(Level.INFO, "Product inserted successfully: {0}", product.getProductName());
+                refreshCatalogEntry(productID);
+                EVENTS.info("Product inserted successfully: {0}", product.getProductName());
                 return true;
             } else {
                 conn.rollback();
@@ -331,7 +409,7 @@ public class ProductDAO {
             pstmt.setInt(2, product.getSupplierID());
             pstmt.setInt(3, product.getCategoryID());
             pstmt.setString(4, product.getQuantityPerUnit());
-            pstmt.setBigDecimal(5, product.getUnitPrice());
+            pstmt.setBigDecimal(5, Money.toBigDecimal(product.getUnitPriceCents()));
             pstmt.setInt(6, product.getUnitsInStock());
             pstmt.setBoolean(7, product.isDiscontinued());
             pstmt.setString(8, product.getProductImage());
@@ -341,7 +419,8 @@ public class ProductDAO {
             
             if (result > 0) {
                 conn.commit();
-                LOGGER.log(Level.INFO, "Product updated successfully: {0}", product.getProductName());
+                refreshCatalogEntry(product.getProductID());
+                EVENTS.info("Product updated successfully: {0}", product.getProductName());
                 return true;
             } else {
                 conn.rollback();
@@ -377,7 +456,8 @@ public class ProductDAO {
             
             if (result > 0) {
                 conn.commit();
-                LOGGER.log(Level.INFO, "Product deleted successfully with ID: {0}", productID);
+                CATALOG.remove(productID);
+                EVENTS.info("Product deleted successfully with ID: {0}", productID);
                 return true;
             } else {
                 conn.rollback();
@@ -412,8 +492,8 @@ public class ProductDAO {
             int result = pstmt.executeUpdate();
             
             if (result > 0) {
-                LOGGER.log(Level.INFO, "Product stock updated: productID={0}, newStock={1}", 
-                          new Object[]{productID, newStock});
+                CATALOG.updateStock(productID, newStock);
+                EVENTS.info("Product stock updated: productID={0}, newStock={1}", productID, newStock);
                 return true;
             }
             
@@ -425,21 +505,148 @@ public class ProductDAO {
     }
     
     /**
-     * Create Product object from ResultSet
+     * Take stock sold by a committed order out of the catalog snapshot
      */
-    private Product createProductFromResultSet(ResultSet rs) throws SQLException {
-        Product product = new Product();
-        product.setProductID(rs.getInt("ProductID"));
-        product.setProductName(rs.getString("ProductName"));
-        product.setSupplierID(rs.getInt("SupplierID"));
-        product.setCategoryID(rs.getInt("CategoryID"));
-        product.setQuantityPerUnit(rs.getString("QuantityPerUnit"));
-        product.setUnitPrice(rs.getBigDecimal("UnitPrice"));
-        product.setUnitsInStock(rs.getInt("UnitsInStock"));
-        product.setDiscontinued(rs.getBoolean("Discontinued"));
-        product.setProductImage(rs.getString("ProductImage"));
-        product.setCategoryName(rs.getString("CategoryName"));
-        product.setSupplierName(rs.getString("SupplierName"));
-        return product;
+    static void applyStockTaken(List<OrderLine> lines) {
+        int[] productIDs = new int[lines.size()];
+        int[] deltas = new int[lines.size()];
+        for (int i = 0; i < productIDs.length; i++) {
+            productIDs[i] = lines.get(i).getProductID();
+            deltas[i] = -lines.get(i).getQuantity();
+        }
+        CATALOG.adjustStock(productIDs, deltas);
+    }
+    
+    /**
+     * Binds parameters of a streaming query
+     */
+    private interface StatementBinder {
+        void bind(PreparedStatement pstmt) throws SQLException;
+    }
+    
+    /**
+     * Run a query and hand each row to the handler as it arrives
+     */
+    private int streamQuery(Queries.Query query, StatementBinder binder, ProductRowHandler handler) throws SQLException {
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = query.prepare(conn)) {
+            
+            binder.bind(pstmt);
+            
+            int rows = 0;
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    handler.handleRow(rs);
+                    rows++;
+                }
+            }
+            
+            FREQUENT_EVENTS.info("Streamed {0} products from database", rows);
+            return rows;
+        }
+    }
+    
+    /**
+     * Load every product for the catalog snapshot
+     */
+    private List<Product> queryAllProducts() throws SQLException {
+        List<Product> products = new ArrayList<>();
+        
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = Queries.ALL_PRODUCTS.prepare(conn);
+             ResultSet rs = pstmt.executeQuery()) {
+            
+            while (rs.next()) {
+                products.add(ProductRowMapper.INSTANCE.mapRow(rs));
+            }
+        }
+        
+        FREQUENT_EVENTS.info("Retrieved {0} products from database", products.size());
+        return products;
+    }
+    
+    /**
+     * Load one product straight from the database, bypassing the catalog
+     */
+    private Product queryProductById(int productID) {
+        try {
+            return loadProductById(productID);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error retrieving product with ID: " + productID, e);
+        }
+        return null;
+    }
+    
+    private Product loadProductById(int productID) throws SQLException {
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = Queries.PRODUCT_BY_ID.prepare(conn)) {
+            
+            pstmt.setInt(1, productID);
+            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return ProductRowMapper.INSTANCE.mapRow(rs);
+                }
+            }
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Fetch products for sorted, distinct IDs in chunks of
+     * Queries.MAX_IDS_PER_QUERY over one connection
+     */
+    private Map<Integer, Product> queryProductsByIds(int[] ids) throws SQLException {
+        Map<Integer, Product> products = new HashMap<>(ids.length * 2);
+        try (Connection conn = getConnection()) {
+            for (int from = 0; from < ids.length; from += Queries.MAX_IDS_PER_QUERY) {
+                int to = Math.min(ids.length, from + Queries.MAX_IDS_PER_QUERY);
+                queryProductsByIds(conn, ids, from, to, products);
+            }
+        }
+        return Collections.unmodifiableMap(products);
+    }
+    
+    /**
+     * Fetch ids[from..to) with one IN query, padded to the catalog's next
+     * list size by repeating the last ID
+     */
+    private void queryProductsByIds(Connection conn, int[] ids, int from, int to,
+                                    Map<Integer, Product> products) throws SQLException {
+        int count = to - from;
+        int padded = Queries.paddedIdCount(count);
+        
+        try (PreparedStatement pstmt = Queries.productsByIds(count).prepare(conn)) {
+            for (int i = 0; i < padded; i++) {
+                pstmt.setInt(i + 1, ids[from + Math.min(i, count - 1)]);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    Product product = ProductRowMapper.INSTANCE.mapRow(rs);
+                    products.put(product.getProductID(), product);
+                }
+            }
+        }
+    }
+    
+    private static boolean sameStockAndPrice(Product a, Product b) {
+        return b != null &&
+               a.getUnitsInStock() == b.getUnitsInStock() &&
+               a.isDiscontinued() == b.isDiscontinued() &&
+               a.getUnitPriceCents() == b.getUnitPriceCents();
+    }
+    
+    /**
+     * Re-read a product after a write so the catalog picks up joined columns
+     * (category and supplier names); falls back to a full reload if the row
+     * cannot be read or another write got to the catalog first
+     */
+    private void refreshCatalogEntry(int productID) {
+        long readStamp = CATALOG.getWriteStamp();
+        Product fresh = productID > 0 ? queryProductById(productID) : null;
+        if (fresh == null || !CATALOG.putIfUnchanged(Collections.singletonList(fresh), readStamp)) {
+            CATALOG.invalidate();
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,298 @@
+package DBUtils;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable trigram inverted index over product names.
+ *
+ * Every lower-cased three-character window of a product name maps to a sorted
+ * int[] of product IDs. A substring query of three or more characters is
+ * answered by intersecting the posting lists of its trigrams (smallest list
+ * first, galloping through the larger ones); the result is a candidate set
+ * that the caller confirms with a real substring check.
+ *
+ * Changes produce a new index that shares every posting list the change did
+ * not touch, so patching one product costs a table copy plus a few small
+ * array copies rather than a rebuild.
+ */
+final class ProductNameIndex {
+    static final int GRAM = 3;
+
+    private static final int[] NO_IDS = new int[0];
+
+    // Open-addressing table: keys[i] == 0 marks an empty slot
+    private final long[] keys;
+    private final int[][] postings;
+    private final int size;
+
+    private ProductNameIndex(long[] keys, int[][] postings, int size) {
+        this.keys = keys;
+        this.postings = postings;
+        this.size = size;
+    }
+
+    /**
+     * Build an index over the given products
+     */
+    static ProductNameIndex build(Collection<Product> products) {
+        Map<Long, IntList> lists = new HashMap<>();
+        for (Product product : products) {
+            for (long gram : trigrams(product.getProductName())) {
+                lists.computeIfAbsent(gram, k -> new IntList()).add(product.getProductID());
+            }
+        }
+
+        int capacity = tableSizeFor(lists.size());
+        long[] keys = new long[capacity];
+        int[][] postings = new int[capacity][];
+        for (Map.Entry<Long, IntList> entry : lists.entrySet()) {
+            int[] ids = entry.getValue().toArray();
+            Arrays.sort(ids);
+            insert(keys, postings, entry.getKey(), ids);
+        }
+        return new ProductNameIndex(keys, postings, lists.size());
+    }
+
+    /**
+     * New index reflecting a product change. Either side may be null for an
+     * insert or a delete; a change that keeps the name returns this index.
+     */
+    ProductNameIndex with(Product previous, Product next) {
+        long[] removed = previous != null ? trigrams(previous.getProductName()) : new long[0];
+        long[] added = next != null ? trigrams(next.getProductName()) : new long[0];
+        if (previous != null && next != null && Arrays.equals(removed, added)) {
+            return this;
+        }
+
+        // Copy the table (sharing posting arrays), growing it if needed
+        int capacity = tableSizeFor(size + added.length);
+        long[] newKeys;
+        int[][] newPostings;
+        if (capacity == keys.length) {
+            newKeys = keys.clone();
+            newPostings = postings.clone();
+        } else {
+            newKeys = new long[capacity];
+            newPostings = new int[capacity][];
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0) {
+                    insert(newKeys, newPostings, keys[i], postings[i]);
+                }
+            }
+        }
+
+        int newSize = size;
+        if (previous != null) {
+            for (long gram : removed) {
+                int slot = find(newKeys, gram);
+                if (slot >= 0) {
+                    newPostings[slot] = removeSorted(newPostings[slot], previous.getProductID());
+                }
+            }
+        }
+        if (next != null) {
+            for (long gram : added) {
+                int slot = find(newKeys, gram);
+                if (slot >= 0) {
+                    newPostings[slot] = insertSorted(newPostings[slot], next.getProductID());
+                } else {
+                    insert(newKeys, newPostings, gram, new int[]{next.getProductID()});
+                    newSize++;
+                }
+            }
+        }
+        return new ProductNameIndex(newKeys, newPostings, newSize);
+    }
+
+    /**
+     * Sorted IDs of products whose name may contain the term. The term must be
+     * at least GRAM characters long; matches still need to be verified.
+     */
+    int[] candidates(String term) {
+        long[] grams = trigrams(term);
+        if (grams.length == 0) {
+            return NO_IDS;
+        }
+
+        int[][] lists = new int[grams.length][];
+        for (int i = 0; i < grams.length; i++) {
+            int slot = find(keys, grams[i]);
+            if (slot < 0 || postings[slot].length == 0) {
+                return NO_IDS;
+            }
+            lists[i] = postings[slot];
+        }
+
+        // Intersect from the shortest list so the working set only shrinks
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.length, b.length));
+        int[] result = lists[0].clone();
+        int count = result.length;
+        for (int i = 1; i < lists.length && count > 0; i++) {
+            count = intersect(result, count, lists[i]);
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Number of distinct trigrams in the index
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Keep only the first count values of target that also occur in other,
+     * compacting them in place; returns the new count. Both inputs are sorted.
+     */
+    static int intersect(int[] target, int count, int[] other) {
+        int kept = 0;
+        int lo = 0;
+        for (int i = 0; i < count && lo < other.length; i++) {
+            int value = target[i];
+
+            // Gallop: double the step until we pass value, then binary search
+            int step = 1;
+            int hi = lo;
+            while (hi < other.length && other[hi] < value) {
+                lo = hi + 1;
+                hi += step;
+                step <<= 1;
+            }
+            int pos = Arrays.binarySearch(other, lo, Math.min(hi + 1, other.length), value);
+            if (pos >= 0) {
+                target[kept++] = value;
+                lo = pos + 1;
+            } else {
+                lo = -pos - 1;
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Distinct, sorted trigram keys of a name, case-folded
+     */
+    static long[] trigrams(String text) {
+        if (text == null || text.length() < GRAM) {
+            return new long[0];
+        }
+
+        long[] grams = new long[text.length() - GRAM + 1];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = key(fold(text.charAt(i)), fold(text.charAt(i + 1)), fold(text.charAt(i + 2)));
+        }
+        Arrays.sort(grams);
+
+        int distinct = 0;
+        for (int i = 0; i < grams.length; i++) {
+            if (i == 0 || grams[i] != grams[i - 1]) {
+                grams[distinct++] = grams[i];
+            }
+        }
+        return distinct == grams.length ? grams : Arrays.copyOf(grams, distinct);
+    }
+
+    /**
+     * Case-insensitive substring test that does not allocate
+     */
+    static boolean containsIgnoreCase(String text, String term) {
+        if (text == null) {
+            return false;
+        }
+        int last = text.length() - term.length();
+        for (int i = 0; i <= last; i++) {
+            if (text.regionMatches(true, i, term, 0, term.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    private static long key(char a, char b, char c) {
+        // Bit 48 keeps every key non-zero so 0 can mark empty slots
+        return (1L << 48) | ((long) a << 32) | ((long) b << 16) | c;
+    }
+
+    private static int tableSizeFor(int entries) {
+        int capacity = 16;
+        while (capacity < entries * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int slotFor(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private static int find(long[] keys, long key) {
+        int mask = keys.length - 1;
+        for (int slot = slotFor(key, mask); keys[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private static void insert(long[] keys, int[][] postings, long key, int[] ids) {
+        int mask = keys.length - 1;
+        int slot = slotFor(key, mask);
+        while (keys[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        postings[slot] = ids;
+    }
+
+    private static int[] insertSorted(int[] ids, int id) {
+        int pos = Arrays.binarySearch(ids, id);
+        if (pos >= 0) {
+            return ids;
+        }
+        pos = -pos - 1;
+        int[] result = new int[ids.length + 1];
+        System.arraycopy(ids, 0, result, 0, pos);
+        result[pos] = id;
+        System.arraycopy(ids, pos, result, pos + 1, ids.length - pos);
+        return result;
+    }
+
+    private static int[] removeSorted(int[] ids, int id) {
+        int pos = Arrays.binarySearch(ids, id);
+        if (pos < 0) {
+            return ids;
+        }
+        int[] result = new int[ids.length - 1];
+        System.arraycopy(ids, 0, result, 0, pos);
+        System.arraycopy(ids, pos + 1, result, pos, ids.length - pos - 1);
+        return result;
+    }
+
+    /**
+     * Growable int list used while building
+     */
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int count;
+
+        void add(int value) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, count);
+        }
+    }
+}
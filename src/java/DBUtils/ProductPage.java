@@ -0,0 +1,149 @@
+package DBUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a product listing plus the keyset cursor for the next page.
+ *
+ * Cursors are opaque, URL-safe strings that carry the sort key of the last
+ * row on the page - (ProductName, ProductID) for name-ordered listings and
+ * (price in cents, ProductID) for price searches - so the next page is found
+ * by seeking past that key rather than skipping rows. Every page costs the
+ * same no matter how deep into the listing it is. A product without a name
+ * leaves the name out of its cursor, colon included, so it is not mistaken
+ * for one named "" (NAME_ORDER puts nulls first).
+ */
+public final class ProductPage {
+    public static final int DEFAULT_PAGE_SIZE = 48;
+    public static final int MAX_PAGE_SIZE = 500;
+
+    private static final char NAME_KEY = 'N';
+    private static final char PRICE_KEY = 'P';
+
+    private final List<Product> products;
+    private final String nextCursor;
+
+    ProductPage(List<Product> products, String nextCursor) {
+        this.products = Collections.unmodifiableList(products);
+        this.nextCursor = nextCursor;
+    }
+
+    static ProductPage empty() {
+        return new ProductPage(Collections.<Product>emptyList(), null);
+    }
+
+    /**
+     * Products on this page
+     */
+    public List<Product> getProducts() {
+        return products;
+    }
+
+    /**
+     * Cursor to pass back for the following page, or null on the last page
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+
+    public boolean isEmpty() {
+        return products.isEmpty();
+    }
+
+    public int size() {
+        return products.size();
+    }
+
+    /**
+     * Clamp a requested page size into 1..MAX_PAGE_SIZE
+     */
+    public static int normalizePageSize(int pageSize) {
+        if (pageSize <= 0) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(pageSize, MAX_PAGE_SIZE);
+    }
+
+    // Cursor encoding
+
+    static String nameCursor(Product last) {
+        String key = NAME_KEY + Integer.toString(last.getProductID());
+        return encode(last.getProductName() != null ? key + ':' + last.getProductName() : key);
+    }
+
+    static String priceCursor(long cents, int productID) {
+        return encode(PRICE_KEY + Integer.toString(productID) + ':' + cents);
+    }
+
+    /**
+     * Decode a name cursor into a probe product carrying its sort key, or
+     * null if the cursor is absent or not a name cursor
+     */
+    static Product decodeNameCursor(String cursor) {
+        String[] parts = decode(cursor, NAME_KEY);
+        if (parts == null) {
+            return null;
+        }
+        Product probe = new Product();
+        probe.setProductID(Integer.parseInt(parts[0]));
+        probe.setProductName(parts[1]);
+        return probe;
+    }
+
+    /**
+     * Decode a price cursor into {cents, productID}, or null if the cursor is
+     * absent or not a price cursor
+     */
+    static long[] decodePriceCursor(String cursor) {
+        String[] parts = decode(cursor, PRICE_KEY);
+        if (parts == null) {
+            return null;
+        }
+        try {
+            return new long[]{Long.parseLong(parts[1]), Integer.parseInt(parts[0])};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String encode(String key) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decode(String cursor, char kind) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (key.isEmpty() || key.charAt(0) != kind) {
+                return null;
+            }
+            // No colon: the value is null
+            int colon = key.indexOf(':');
+            String[] parts = colon < 0
+                    ? new String[]{key.substring(1), null}
+                    : new String[]{key.substring(1, colon), key.substring(colon + 1)};
+            Integer.parseInt(parts[0]);
+            return parts;
+        } catch (IllegalArgumentException e) {
+            // Covers malformed Base64 and NumberFormatException
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ProductPage{" +
+                "size=" + products.size() +
+                ", hasMore=" + hasMore() +
+                '}';
+    }
+}
@@ -0,0 +1,200 @@
+package DBUtils;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+
+/**
+ * Immutable price index: prices in cents sorted ascending in a long[], with
+ * the matching product IDs in a parallel int[] (ties ordered by ID).
+ *
+ * A price range lookup is two binary searches and returns an index range, so
+ * counting matches (for price sliders) allocates nothing.
+ */
+final class ProductPriceIndex {
+    private final long[] cents;
+    private final int[] ids;
+
+    private ProductPriceIndex(long[] cents, int[] ids) {
+        this.cents = cents;
+        this.ids = ids;
+    }
+
+    /**
+     * Build an index over the given products
+     */
+    static ProductPriceIndex build(Collection<Product> products) {
+        Product[] sorted = products.toArray(new Product[0]);
+        Arrays.sort(sorted, Comparator.comparingLong((Product p) -> p.getUnitPriceCents())
+                                      .thenComparingInt(Product::getProductID));
+
+        long[] cents = new long[sorted.length];
+        int[] ids = new int[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            cents[i] = sorted[i].getUnitPriceCents();
+            ids[i] = sorted[i].getProductID();
+        }
+        return new ProductPriceIndex(cents, ids);
+    }
+
+    /**
+     * New index reflecting a product change. Either side may be null for an
+     * insert or a delete; a change that keeps the price returns this index.
+     */
+    ProductPriceIndex with(Product previous, Product next) {
+        if (previous != null && next != null &&
+            previous.getUnitPriceCents() == next.getUnitPriceCents()) {
+            return this;
+        }
+
+        long[] newCents = cents;
+        int[] newIds = ids;
+        if (previous != null) {
+            int pos = positionOf(newCents, newIds, previous.getUnitPriceCents(), previous.getProductID());
+            if (pos >= 0) {
+                newCents = removeAt(newCents, pos);
+                newIds = removeAt(newIds, pos);
+            }
+        }
+        if (next != null) {
+            long price = next.getUnitPriceCents();
+            int pos = positionOf(newCents, newIds, price, next.getProductID());
+            if (pos < 0) {
+                pos = -pos - 1;
+                newCents = insertAt(newCents, pos, price);
+                newIds = insertAt(newIds, pos, next.getProductID());
+            }
+        }
+        return new ProductPriceIndex(newCents, newIds);
+    }
+
+    /**
+     * First position with a price of at least minCents
+     */
+    int lowerBound(long minCents) {
+        int lo = 0;
+        int hi = cents.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cents[mid] < minCents) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * First position with a price greater than maxCents
+     */
+    int upperBound(long maxCents) {
+        int lo = 0;
+        int hi = cents.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cents[mid] <= maxCents) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * First position whose (price, id) key sorts after the given key; used to
+     * resume a price-ordered listing from a cursor
+     */
+    int positionAfter(long priceCents, int productID) {
+        int pos = positionOf(cents, ids, priceCents, productID);
+        return pos >= 0 ? pos + 1 : -pos - 1;
+    }
+
+    /**
+     * Number of products priced within [minCents, maxCents]
+     */
+    int count(long minCents, long maxCents) {
+        return minCents > maxCents ? 0 : Math.max(0, upperBound(maxCents) - lowerBound(minCents));
+    }
+
+    /**
+     * Product ID at a position in price order
+     */
+    int idAt(int position) {
+        return ids[position];
+    }
+
+    /**
+     * Price in cents at a position in price order
+     */
+    long centsAt(int position) {
+        return cents[position];
+    }
+
+    int size() {
+        return ids.length;
+    }
+
+    long minCents() {
+        return cents.length > 0 ? cents[0] : 0;
+    }
+
+    long maxCents() {
+        return cents.length > 0 ? cents[cents.length - 1] : 0;
+    }
+
+    /**
+     * Binary search for an exact (price, id) pair; returns -(insertion point) - 1
+     * when absent, like Arrays.binarySearch
+     */
+    private static int positionOf(long[] cents, int[] ids, long price, int id) {
+        int lo = 0;
+        int hi = cents.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = Long.compare(cents[mid], price);
+            if (c == 0) {
+                c = Integer.compare(ids[mid], id);
+            }
+            if (c < 0) {
+                lo = mid + 1;
+            } else if (c > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(lo + 1);
+    }
+
+    private static long[] removeAt(long[] values, int pos) {
+        long[] result = new long[values.length - 1];
+        System.arraycopy(values, 0, result, 0, pos);
+        System.arraycopy(values, pos + 1, result, pos, values.length - pos - 1);
+        return result;
+    }
+
+    private static int[] removeAt(int[] values, int pos) {
+        int[] result = new int[values.length - 1];
+        System.arraycopy(values, 0, result, 0, pos);
+        System.arraycopy(values, pos + 1, result, pos, values.length - pos - 1);
+        return result;
+    }
+
+    private static long[] insertAt(long[] values, int pos, long value) {
+        long[] result = new long[values.length + 1];
+        System.arraycopy(values, 0, result, 0, pos);
+        result[pos] = value;
+        System.arraycopy(values, pos, result, pos + 1, values.length - pos);
+        return result;
+    }
+
+    private static int[] insertAt(int[] values, int pos, int value) {
+        int[] result = new int[values.length + 1];
+        System.arraycopy(values, 0, result, 0, pos);
+        result[pos] = value;
+        System.arraycopy(values, pos, result, pos + 1, values.length - pos);
+        return result;
+    }
+}
@@ -0,0 +1,86 @@
+package DBUtils;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Product storage as the servlets see it. ProductDAO is the SQL Server
+ * implementation; InMemoryProductRepository serves the same calls from
+ * memory for load tests. Repositories.products() picks one from
+ * configuration.
+ *
+ * Reads follow ProductDAO's conventions: invalid input and failures give an
+ * empty result (or null/false) rather than an exception, except for the
+ * streaming reads, which report failures as SQLException.
+ */
+public interface ProductRepository {
+
+    /**
+     * The current immutable catalog snapshot
+     */
+    CatalogSnapshot getCatalogSnapshot();
+
+    /**
+     * The current snapshot if reading it needs no database work (it is
+     * loaded and not due for a refresh), else null
+     */
+    CatalogSnapshot getCachedCatalogSnapshot();
+
+    List<Product> getAllProducts();
+
+    List<Product> getAvailableProducts();
+
+    Product getProductById(int productID);
+
+    /**
+     * Current products for several IDs, e.g. to re-validate a cart
+     *
+     * @return read-only map keyed by ID, empty if none of them exists any
+     *         more; null if the lookup failed
+     */
+    Map<Integer, Product> getProductsByIds(Collection<Integer> productIDs);
+
+    List<Product> searchProductsByName(String productName);
+
+    List<Product> searchProductsByPrice(BigDecimal minPrice, BigDecimal maxPrice);
+
+    int countProductsByPrice(BigDecimal minPrice, BigDecimal maxPrice);
+
+    List<Product> getProductsByCategory(int categoryID);
+
+    // Keyset-paginated listings: pass null for the first page, then the
+    // previous page's getNextCursor()
+
+    ProductPage getAllProducts(String cursor, int pageSize);
+
+    ProductPage getAvailableProducts(String cursor, int pageSize);
+
+    ProductPage getProductsByCategory(int categoryID, String cursor, int pageSize);
+
+    ProductPage searchProductsByName(String productName, String cursor, int pageSize);
+
+    ProductPage searchProductsByPrice(BigDecimal minPrice, BigDecimal maxPrice, String cursor, int pageSize);
+
+    // Streaming reads hand each product to the handler as it is produced
+    // and return the number of rows
+
+    int streamProducts(boolean availableOnly, ProductRowHandler handler) throws SQLException;
+
+    int streamProductsByName(String productName, ProductRowHandler handler) throws SQLException;
+
+    int streamProductsByPrice(BigDecimal minPrice, BigDecimal maxPrice,
+                              ProductRowHandler handler) throws SQLException;
+
+    int streamProductsByCategory(int categoryID, ProductRowHandler handler) throws SQLException;
+
+    boolean insertProduct(Product product);
+
+    boolean updateProduct(Product product);
+
+    boolean deleteProduct(int productID);
+
+    boolean updateProductStock(int productID, int newStock);
+}
@@ -0,0 +1,28 @@
+package DBUtils;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+
+/**
+ * Callback for streaming product rows straight off a ResultSet.
+ *
+ * The handler is called once per row with the cursor positioned on that
+ * row, and must read what it needs before returning; no Product objects are
+ * created. Rows have the standard product columns (Queries.PRODUCT_COLUMNS);
+ * read them by position with the ProductRowMapper constants.
+ *
+ * Repositories that already hold Product objects (InMemoryProductRepository)
+ * call handleProduct instead.
+ */
+public interface ProductRowHandler {
+
+    void handleRow(ResultSet rs) throws SQLException;
+
+    /**
+     * Handle a product that is already in memory
+     */
+    default void handleProduct(Product product) throws SQLException {
+        throw new SQLFeatureNotSupportedException(getClass().getName() + " only reads ResultSet rows");
+    }
+}
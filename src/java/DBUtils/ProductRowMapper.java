@@ -0,0 +1,47 @@
+package DBUtils;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps a row of the standard product select (Queries.PRODUCT_COLUMNS) to a
+ * Product by column position. Reading by index skips the driver's
+ * case-insensitive label lookup on every column of every row.
+ */
+public final class ProductRowMapper implements RowMapper<Product> {
+
+    // 1-based positions in Queries.PRODUCT_COLUMNS
+    public static final int PRODUCT_ID = 1;
+    public static final int PRODUCT_NAME = 2;
+    public static final int SUPPLIER_ID = 3;
+    public static final int CATEGORY_ID = 4;
+    public static final int QUANTITY_PER_UNIT = 5;
+    public static final int UNIT_PRICE = 6;
+    public static final int UNITS_IN_STOCK = 7;
+    public static final int DISCONTINUED = 8;
+    public static final int PRODUCT_IMAGE = 9;
+    public static final int CATEGORY_NAME = 10;
+    public static final int SUPPLIER_NAME = 11;
+
+    public static final ProductRowMapper INSTANCE = new ProductRowMapper();
+
+    private ProductRowMapper() {
+    }
+
+    @Override
+    public Product mapRow(ResultSet rs) throws SQLException {
+        Product product = new Product();
+        product.setProductID(rs.getInt(PRODUCT_ID));
+        product.setProductName(rs.getString(PRODUCT_NAME));
+        product.setSupplierID(rs.getInt(SUPPLIER_ID));
+        product.setCategoryID(rs.getInt(CATEGORY_ID));
+        product.setQuantityPerUnit(rs.getString(QUANTITY_PER_UNIT));
+        product.setUnitPrice(rs.getBigDecimal(UNIT_PRICE));
+        product.setUnitsInStock(rs.getInt(UNITS_IN_STOCK));
+        product.setDiscontinued(rs.getBoolean(DISCONTINUED));
+        product.setProductImage(rs.getString(PRODUCT_IMAGE));
+        product.setCategoryName(rs.getString(CATEGORY_NAME));
+        product.setSupplierName(rs.getString(SUPPLIER_NAME));
+        return product;
+    }
+}
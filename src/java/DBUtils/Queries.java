@@ -0,0 +1,185 @@
+package DBUtils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The read queries used by ProductDAO and UserDAO, defined in one place.
+ *
+ * Every product query selects PRODUCT_COLUMNS and every account query
+ * selects USER_COLUMNS, in the order ProductRowMapper and UserRowMapper
+ * read them. Each definition carries the JDBC fetch size suited to how many
+ * rows it returns. SQL text is built once, when the class loads, so
+ * identical statements reach the driver's and server's plan caches.
+ */
+public final class Queries {
+
+    /**
+     * A named SQL statement with its fetch-size hint
+     */
+    public static final class Query {
+        private final String name;
+        private final String sql;
+        private final int fetchSize;
+
+        Query(String name, String sql, int fetchSize) {
+            this.name = name;
+            this.sql = sql;
+            this.fetchSize = fetchSize;
+            BY_SQL.put(sql, this);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        /**
+         * Rows fetched per round trip, or 0 for the driver's default
+         */
+        public int getFetchSize() {
+            return fetchSize;
+        }
+
+        /**
+         * Prepare as a forward-only, read-only statement with the fetch size applied
+         */
+        public PreparedStatement prepare(Connection conn) throws SQLException {
+            PreparedStatement pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            if (fetchSize > 0) {
+                pstmt.setFetchSize(fetchSize);
+            }
+            return pstmt;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    // Fetch sizes: whole-table loads, streamed listings, small lists
+    private static final int BULK_FETCH_SIZE = 512;
+    private static final int STREAM_FETCH_SIZE = 256;
+    private static final int LIST_FETCH_SIZE = 64;
+
+    /** Columns in ProductRowMapper order */
+    public static final String PRODUCT_COLUMNS =
+            "p.ProductID, p.ProductName, p.SupplierID, p.CategoryID, " +
+            "p.QuantityPerUnit, p.UnitPrice, p.UnitsInStock, p.Discontinued, p.ProductImage, " +
+            "c.CategoryName, s.CompanyName AS SupplierName";
+
+    private static final String PRODUCT_SELECT =
+            "SELECT " + PRODUCT_COLUMNS + " " +
+            "FROM Products p " +
+            "LEFT JOIN Categories c ON p.CategoryID = c.CategoryID " +
+            "LEFT JOIN Suppliers s ON p.SupplierID = s.SupplierID ";
+
+    /** Columns in UserRowMapper order */
+    public static final String USER_COLUMNS = "userID, fullName, roleID, password";
+
+    private static final String USER_SELECT = "SELECT " + USER_COLUMNS + " FROM Account ";
+
+    // Every Query by its SQL text, for naming statements in QueryStats
+    private static final Map<String, Query> BY_SQL = new ConcurrentHashMap<>();
+
+    public static final Query ALL_PRODUCTS = new Query("allProducts",
+            PRODUCT_SELECT, BULK_FETCH_SIZE);
+
+    public static final Query PRODUCT_BY_ID = new Query("productById",
+            PRODUCT_SELECT + "WHERE p.ProductID = ?", 0);
+
+    public static final Query STREAM_PRODUCTS = new Query("streamProducts",
+            PRODUCT_SELECT + "ORDER BY p.ProductName, p.ProductID", STREAM_FETCH_SIZE);
+
+    public static final Query STREAM_AVAILABLE_PRODUCTS = new Query("streamAvailableProducts",
+            PRODUCT_SELECT + "WHERE p.Discontinued = 0 AND p.UnitsInStock > 0 " +
+            "ORDER BY p.ProductName, p.ProductID", STREAM_FETCH_SIZE);
+
+    public static final Query STREAM_PRODUCTS_BY_NAME = new Query("streamProductsByName",
+            PRODUCT_SELECT + "WHERE LOWER(p.ProductName) LIKE LOWER(?) " +
+            "ORDER BY p.ProductName, p.ProductID", STREAM_FETCH_SIZE);
+
+    public static final Query STREAM_PRODUCTS_BY_PRICE = new Query("streamProductsByPrice",
+            PRODUCT_SELECT + "WHERE p.UnitPrice BETWEEN ? AND ? " +
+            "ORDER BY p.UnitPrice, p.ProductID", STREAM_FETCH_SIZE);
+
+    public static final Query STREAM_PRODUCTS_BY_CATEGORY = new Query("streamProductsByCategory",
+            PRODUCT_SELECT + "WHERE p.CategoryID = ? " +
+            "ORDER BY p.ProductName, p.ProductID", STREAM_FETCH_SIZE);
+
+    public static final Query AUTHENTICATE_USER = new Query("authenticateUser",
+            USER_SELECT + "WHERE userID = ? AND password = ?", 0);
+
+    public static final Query ALL_USERS = new Query("allUsers",
+            USER_SELECT + "ORDER BY fullName", LIST_FETCH_SIZE);
+
+    public static final Query USER_BY_ID = new Query("userById",
+            USER_SELECT + "WHERE userID = ?", 0);
+
+    public static final Query USER_EXISTS = new Query("userExists",
+            "SELECT COUNT(*) FROM Account WHERE userID = ?", 0);
+
+    /** Largest IN list per statement; SQL Server allows 2100 parameters */
+    public static final int MAX_IDS_PER_QUERY = 512;
+
+    // IN (?, ...) lookups for 1, 2, 4, ... MAX_IDS_PER_QUERY IDs
+    private static final Query[] PRODUCTS_BY_IDS = new Query[Integer.numberOfTrailingZeros(MAX_IDS_PER_QUERY) + 1];
+
+    static {
+        for (int i = 0; i < PRODUCTS_BY_IDS.length; i++) {
+            int count = 1 << i;
+            StringBuilder sql = new StringBuilder(PRODUCT_SELECT.length() + count * 2 + 32)
+                    .append(PRODUCT_SELECT).append("WHERE p.ProductID IN (");
+            for (int j = 0; j < count; j++) {
+                sql.append(j == 0 ? "?" : ",?");
+            }
+            sql.append(')');
+            // One name for every size: they are the same query to QueryStats
+            PRODUCTS_BY_IDS[i] = new Query("productsByIds", sql.toString(), Math.min(count, LIST_FETCH_SIZE));
+        }
+    }
+
+    private Queries() {
+    }
+
+    /**
+     * Name of the query with exactly this SQL text, or null if the
+     * statement did not come from here
+     */
+    public static String nameOf(String sql) {
+        Query query = sql != null ? BY_SQL.get(sql) : null;
+        return query != null ? query.getName() : null;
+    }
+
+    /**
+     * IN-list lookup with room for at least count IDs (at most
+     * MAX_IDS_PER_QUERY). Lists come in powers of two so SQL Server caches a
+     * handful of plans instead of one per list length; callers fill the
+     * spare parameters by repeating an ID.
+     */
+    public static Query productsByIds(int count) {
+        if (count <= 0 || count > MAX_IDS_PER_QUERY) {
+            throw new IllegalArgumentException("ID count out of range: " + count);
+        }
+        return PRODUCTS_BY_IDS[sizeIndex(count)];
+    }
+
+    /**
+     * Number of parameters in productsByIds(count)
+     */
+    public static int paddedIdCount(int count) {
+        return 1 << sizeIndex(count);
+    }
+
+    private static int sizeIndex(int count) {
+        return 32 - Integer.numberOfLeadingZeros(count - 1);
+    }
+}
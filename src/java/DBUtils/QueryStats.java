@@ -0,0 +1,170 @@
+package DBUtils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-statement JDBC timings, keyed by SQL fingerprint.
+ *
+ * ConnectionPool's connections time every statement they prepare (see
+ * QueryTimer) and record here: how long prepare, execute and fetching the
+ * rows took, how many rows came back or were changed, failures, and how
+ * many executions crossed the slow-query threshold. Statements from
+ * Queries are named after their Query; any other statement is named
+ * sql_ followed by a hash of its fingerprint.
+ */
+public final class QueryStats {
+
+    /** Distinct fingerprints tracked; later ones share the "other" entry */
+    private static final int MAX_ENTRIES = 256;
+
+    private static final QueryStats INSTANCE = new QueryStats();
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Entry other = new Entry("other", "");
+
+    /**
+     * Timings for one statement shape
+     */
+    public static final class Entry {
+        private final String name;
+        private final String fingerprint;
+        private final LatencyHistogram prepare = new LatencyHistogram();
+        private final LatencyHistogram execute = new LatencyHistogram();
+        private final LatencyHistogram fetch = new LatencyHistogram();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder slow = new LongAdder();
+
+        private Entry(String name, String fingerprint) {
+            this.name = name;
+            this.fingerprint = fingerprint;
+        }
+
+        void recordPrepare(long nanos) {
+            prepare.recordNanos(nanos);
+        }
+
+        /**
+         * Record one finished execution
+         *
+         * @param fetchNanos time spent in ResultSet.next(), 0 for updates
+         * @param rows rows read, or update count
+         */
+        void recordExecution(long executeNanos, long fetchNanos, long rows, boolean failed) {
+            execute.recordNanos(executeNanos);
+            fetch.recordNanos(fetchNanos);
+            if (rows > 0) {
+                this.rows.add(rows);
+            }
+            if (failed) {
+                errors.increment();
+            }
+        }
+
+        void recordSlow() {
+            slow.increment();
+        }
+
+        /**
+         * Query name, or sql_ and a fingerprint hash
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * The statement's SQL with values replaced by ?
+         */
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        public LatencyHistogram getPrepareTimes() {
+            return prepare;
+        }
+
+        /**
+         * Time until executeQuery/executeUpdate returned; one value per execution
+         */
+        public LatencyHistogram getExecuteTimes() {
+            return execute;
+        }
+
+        /**
+         * Time spent fetching rows in ResultSet.next(); one value per execution
+         */
+        public LatencyHistogram getFetchTimes() {
+            return fetch;
+        }
+
+        public long getExecutionCount() {
+            return execute.getCount();
+        }
+
+        public long getRowCount() {
+            return rows.sum();
+        }
+
+        public long getErrorCount() {
+            return errors.sum();
+        }
+
+        public long getSlowCount() {
+            return slow.sum();
+        }
+
+        @Override
+        public String toString() {
+            return name + "{executions=" + getExecutionCount() +
+                    ", rows=" + getRowCount() +
+                    ", errors=" + getErrorCount() +
+                    ", slow=" + getSlowCount() +
+                    ", executeP99=" + execute.getValueAtPercentile(99.0) +
+                    "us, fetchP99=" + fetch.getValueAtPercentile(99.0) + "us}";
+        }
+    }
+
+    private QueryStats() {
+    }
+
+    public static QueryStats getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * The entry for a statement's SQL text, created on first use
+     */
+    Entry entryFor(String sql) {
+        String fingerprint = SqlFingerprint.of(sql);
+        Entry entry = entries.get(fingerprint);
+        if (entry != null) {
+            return entry;
+        }
+        if (entries.size() >= MAX_ENTRIES) {
+            return other;
+        }
+        String name = Queries.nameOf(sql);
+        if (name == null) {
+            name = "sql_" + String.format("%08x", fingerprint.hashCode());
+        }
+        String entryName = name;
+        return entries.computeIfAbsent(fingerprint, f -> new Entry(entryName, f));
+    }
+
+    /**
+     * Every statement seen so far, by name
+     */
+    public List<Entry> getEntries() {
+        List<Entry> list = new ArrayList<>(entries.values());
+        if (other.getExecutionCount() > 0) {
+            list.add(other);
+        }
+        list.sort(Comparator.comparing(Entry::getName).thenComparing(Entry::getFingerprint));
+        return list;
+    }
+}
@@ -0,0 +1,319 @@
+package DBUtils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * Times the statements a pooled connection creates, into QueryStats.
+ *
+ * ConnectionPool hands each statement it prepares to wrap(), which returns
+ * a proxy. The proxy times prepare (the prepareStatement call itself),
+ * execute (until executeQuery/executeUpdate returns) and fetch (time spent
+ * inside ResultSet.next(), so the DAO's own mapping work is not counted)
+ * separately, and counts rows. A query's execution is recorded when its
+ * ResultSet is exhausted or closed, or when the statement is closed.
+ * executeQuery() returns a DelegatingResultSet that only watches next()
+ * and close(); column getters go straight to the driver.
+ *
+ * Bind parameters are remembered only to describe their shape to the slow
+ * query log; values are never logged.
+ *
+ * Settings (db.properties): jdbc.timing, jdbc.slowQueryMillis,
+ * jdbc.slowQueryLogPerMinute.
+ */
+final class QueryTimer {
+
+    private final QueryStats stats;
+    private final SlowQueryLog slowLog;
+
+    private QueryTimer(QueryStats stats, SlowQueryLog slowLog) {
+        this.stats = stats;
+        this.slowLog = slowLog;
+    }
+
+    /**
+     * The timer configured by jdbc.* settings, or null when jdbc.timing is off
+     */
+    static QueryTimer create(DBConfig config) {
+        if (!Boolean.parseBoolean(config.get("jdbc.timing", "true"))) {
+            return null;
+        }
+        return new QueryTimer(QueryStats.getInstance(), new SlowQueryLog(
+                config.getLong("jdbc.slowQueryMillis", 250),
+                config.getInt("jdbc.slowQueryLogPerMinute", 20)));
+    }
+
+    /**
+     * Whether a Connection method returns a statement that wrap() handles
+     */
+    static boolean createsStatement(String methodName) {
+        return "prepareStatement".equals(methodName)
+                || "prepareCall".equals(methodName)
+                || "createStatement".equals(methodName);
+    }
+
+    /**
+     * Time a statement the connection just created
+     *
+     * @param args arguments of the Connection call that created it
+     * @param prepareNanos how long that call took
+     */
+    Statement wrap(Statement statement, Object[] args, long prepareNanos) {
+        QueryStats.Entry entry = null;
+        if (!(args == null || args.length == 0) && args[0] instanceof String) {
+            entry = stats.entryFor((String) args[0]);
+            entry.recordPrepare(prepareNanos);
+        }
+
+        Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+                : statement instanceof PreparedStatement ? PreparedStatement.class
+                : Statement.class;
+        return (Statement) Proxy.newProxyInstance(QueryTimer.class.getClassLoader(),
+                new Class<?>[]{type}, new TimedStatement(statement, entry, prepareNanos));
+    }
+
+    private static Object forward(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Rows changed according to an execute call's result
+     */
+    private static long updateCount(Object result) {
+        if (result instanceof Number) {
+            return ((Number) result).longValue();
+        }
+        long rows = 0;
+        if (result instanceof int[]) {
+            for (int count : (int[]) result) {
+                rows += Math.max(0, count);
+            }
+        } else if (result instanceof long[]) {
+            for (long count : (long[]) result) {
+                rows += Math.max(0, count);
+            }
+        }
+        return rows;
+    }
+
+    private final class TimedStatement implements InvocationHandler {
+        private final Statement target;
+        // Null for a plain Statement: its SQL arrives with each execute
+        private final QueryStats.Entry entry;
+        private long prepareNanos;
+
+        // Bind parameters by position: the setter used and its value
+        private String[] setters = new String[8];
+        private Object[] values = new Object[8];
+        private int batchSize;
+
+        private TimedResultSet pending;
+
+        TimedStatement(Statement target, QueryStats.Entry entry, long prepareNanos) {
+            this.target = target;
+            this.entry = entry;
+            this.prepareNanos = prepareNanos;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "executeQuery":
+                    return execute(method, args, true);
+                case "executeUpdate":
+                case "executeLargeUpdate":
+                case "execute":
+                case "executeBatch":
+                case "executeLargeBatch":
+                    return execute(method, args, false);
+                case "addBatch":
+                    batchSize++;
+                    break;
+                case "clearBatch":
+                    batchSize = 0;
+                    break;
+                case "clearParameters":
+                    Arrays.fill(setters, null);
+                    Arrays.fill(values, null);
+                    break;
+                case "close":
+                    finishPending();
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                        remember((Integer) args[0], name, args[1]);
+                    }
+                    break;
+            }
+            return forward(target, method, args);
+        }
+
+        private Object execute(Method method, Object[] args, boolean query) throws Throwable {
+            finishPending();
+            QueryStats.Entry current = entry;
+            if (current == null) {
+                current = stats.entryFor(args != null && args.length > 0 && args[0] instanceof String
+                        ? (String) args[0] : null);
+            }
+
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = forward(target, method, args);
+            } catch (Throwable e) {
+                finish(current, System.nanoTime() - start, 0, 0, true);
+                throw e;
+            }
+            long executeNanos = System.nanoTime() - start;
+
+            if (query && result instanceof ResultSet) {
+                pending = new TimedResultSet(this, (ResultSet) result, current, executeNanos);
+                return pending;
+            }
+            finish(current, executeNanos, 0, updateCount(result), false);
+            return result;
+        }
+
+        void finishPending() {
+            if (pending != null) {
+                pending.complete(false);
+            }
+        }
+
+        void finish(QueryStats.Entry current, long executeNanos, long fetchNanos, long rows, boolean failed) {
+            current.recordExecution(executeNanos, fetchNanos, rows, failed);
+            // Prepare is charged to the first execution only
+            long prepare = prepareNanos;
+            prepareNanos = 0;
+            if (slowLog.isSlow(prepare + executeNanos + fetchNanos)) {
+                slowLog.log(current, prepare, executeNanos, fetchNanos, rows, describeParameters(), failed);
+            }
+            batchSize = 0;
+        }
+
+        private void remember(int index, String setter, Object value) {
+            if (index < 1 || index > 2100) {
+                return;
+            }
+            if (index > setters.length) {
+                int size = Math.max(index, setters.length * 2);
+                setters = Arrays.copyOf(setters, size);
+                values = Arrays.copyOf(values, size);
+            }
+            setters[index - 1] = setter;
+            values[index - 1] = value;
+        }
+
+        /**
+         * "1:String(6, %...%), 2:Int" - types, string lengths and LIKE
+         * wildcards only
+         */
+        private String describeParameters() {
+            StringBuilder out = new StringBuilder();
+            for (int i = 0; i < setters.length; i++) {
+                if (setters[i] == null) {
+                    continue;
+                }
+                if (out.length() > 0) {
+                    out.append(", ");
+                }
+                out.append(i + 1).append(':').append(shapeOf(setters[i], values[i]));
+            }
+            if (batchSize > 1) {
+                out.append(" (batch of ").append(batchSize).append(')');
+            }
+            return out.toString();
+        }
+    }
+
+    private static String shapeOf(String setter, Object value) {
+        if (value == null || "setNull".equals(setter)) {
+            return "null";
+        }
+        if (value instanceof String) {
+            String text = (String) value;
+            boolean leading = text.startsWith("%");
+            boolean trailing = text.length() > 1 && text.endsWith("%");
+            String like = leading && trailing ? ", %...%" : leading ? ", %..." : trailing ? ", ...%" : "";
+            return "String(" + text.length() + like + ")";
+        }
+        return "setObject".equals(setter) ? value.getClass().getSimpleName() : setter.substring(3);
+    }
+
+    /**
+     * Counts rows and fetch time of one executeQuery result. A plain
+     * subclass rather than a proxy: the row mappers' getters run once per
+     * column and row, and reach the driver's ResultSet directly.
+     */
+    private static final class TimedResultSet extends DelegatingResultSet {
+        private final TimedStatement statement;
+        private final QueryStats.Entry entry;
+        private final long executeNanos;
+        private long fetchNanos;
+        private long rows;
+        private boolean complete;
+
+        TimedResultSet(TimedStatement statement, ResultSet target, QueryStats.Entry entry, long executeNanos) {
+            super(target);
+            this.statement = statement;
+            this.entry = entry;
+            this.executeNanos = executeNanos;
+        }
+
+        @Override
+        public boolean next() throws SQLException {
+            long start = System.nanoTime();
+            boolean more;
+            try {
+                more = target.next();
+            } catch (SQLException | RuntimeException e) {
+                fetchNanos += System.nanoTime() - start;
+                complete(true);
+                throw e;
+            }
+            fetchNanos += System.nanoTime() - start;
+            if (more) {
+                rows++;
+            } else {
+                complete(false);
+            }
+            return more;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try {
+                target.close();
+            } finally {
+                complete(false);
+            }
+        }
+
+        void complete(boolean failed) {
+            if (!complete) {
+                complete = true;
+                if (statement.pending == this) {
+                    statement.pending = null;
+                }
+                statement.finish(entry, executeNanos, fetchNanos, rows, failed);
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package DBUtils;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Picks the product and user repositories the servlets use.
+ *
+ * repository=jdbc (the default) uses ProductDAO and UserDAO against the
+ * configured database. repository=memory uses the in-memory engines, filled
+ * with repository.memory.products generated products and
+ * repository.memory.users generated customers (user1..userN, plus "staff"),
+ * all with the password repository.memory.password. Nothing is written back
+ * anywhere, and checkout still needs the database.
+ */
+public final class Repositories {
+    private static final Logger LOGGER = Logger.getLogger(Repositories.class.getName());
+
+    private static final String MEMORY = "memory";
+
+    private static ProductRepository products;
+    private static UserRepository users;
+
+    private Repositories() {
+    }
+
+    /**
+     * True when repository=memory, i.e. no database is needed for browsing
+     * and login
+     */
+    public static boolean isInMemory() {
+        return MEMORY.equalsIgnoreCase(DBConfig.load().get("repository", "jdbc").trim());
+    }
+
+    public static synchronized ProductRepository products() {
+        if (products == null) {
+            DBConfig config = DBConfig.load();
+            products = isInMemory()
+                    ? InMemoryProductRepository.withGeneratedProducts(config.getInt("repository.memory.products", 2000))
+                    : new ProductDAO();
+            LOGGER.log(Level.INFO, "Product repository: {0}", products.getClass().getSimpleName());
+        }
+        return products;
+    }
+
+    public static synchronized UserRepository users() {
+        if (users == null) {
+            DBConfig config = DBConfig.load();
+            users = isInMemory()
+                    ? InMemoryUserRepository.withGeneratedUsers(config.getInt("repository.memory.users", 1000),
+                                                                config.get("repository.memory.password", "password"))
+                    : new UserDAO();
+            LOGGER.log(Level.INFO, "User repository: {0}", users.getClass().getSimpleName());
+        }
+        return users;
+    }
+}
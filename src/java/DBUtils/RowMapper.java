@@ -0,0 +1,14 @@
+package DBUtils;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Turns the current ResultSet row into an object. Mappers read columns by
+ * position, in select-list order, so they must be used with the query
+ * definitions in Queries that they were written for.
+ */
+public interface RowMapper<T> {
+
+    T mapRow(ResultSet rs) throws SQLException;
+}
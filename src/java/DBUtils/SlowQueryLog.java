@@ -0,0 +1,69 @@
+package DBUtils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Logs statements slower than a threshold, at most maxPerMinute lines a
+ * minute so a struggling database does not also flood the log. Each line
+ * has the fingerprint, the prepare/execute/fetch split, the row count and
+ * the shape of the bind parameters (types, string lengths, LIKE wildcards;
+ * never the values). Lines dropped by the limit are counted on the next
+ * line that gets through.
+ *
+ * Settings (db.properties): jdbc.slowQueryMillis, jdbc.slowQueryLogPerMinute.
+ */
+final class SlowQueryLog {
+    private static final Logger LOGGER = Logger.getLogger(SlowQueryLog.class.getName());
+
+    private static final long WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final long thresholdNanos;
+    private final int maxPerMinute;
+
+    // Start of the current one-minute window and lines logged in it
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+    private final AtomicLong loggedInWindow = new AtomicLong();
+    private final LongAdder suppressed = new LongAdder();
+
+    SlowQueryLog(long thresholdMillis, int maxPerMinute) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, thresholdMillis));
+        this.maxPerMinute = Math.max(0, maxPerMinute);
+    }
+
+    boolean isSlow(long nanos) {
+        return nanos >= thresholdNanos;
+    }
+
+    void log(QueryStats.Entry entry, long prepareNanos, long executeNanos, long fetchNanos,
+             long rows, String parameters, boolean failed) {
+        entry.recordSlow();
+        if (!tryAcquire()) {
+            suppressed.increment();
+            return;
+        }
+        long dropped = suppressed.sumThenReset();
+        LOGGER.log(Level.WARNING,
+                "Slow query {0}{1}: {2} ms (prepare {3}, execute {4}, fetch {5}), {6} rows, params [{7}]{8}: {9}",
+                new Object[]{entry.getName(), failed ? " (failed)" : "",
+                    millis(prepareNanos + executeNanos + fetchNanos), millis(prepareNanos),
+                    millis(executeNanos), millis(fetchNanos), rows, parameters,
+                    dropped > 0 ? ", " + dropped + " more not logged" : "", entry.getFingerprint()});
+    }
+
+    private boolean tryAcquire() {
+        long now = System.nanoTime();
+        long start = windowStart.get();
+        if (now - start >= WINDOW_NANOS && windowStart.compareAndSet(start, now)) {
+            loggedInWindow.set(0);
+        }
+        return loggedInWindow.incrementAndGet() <= maxPerMinute;
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.1f", nanos / 1e6);
+    }
+}
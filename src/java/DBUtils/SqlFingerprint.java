@@ -0,0 +1,153 @@
+package DBUtils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Reduces SQL text to the shape of the statement, so statements that differ
+ * only in their values are counted together: string and number literals
+ * become ?, IN lists of any length become IN (?...), whitespace runs become
+ * one space.
+ *
+ *   SELECT * FROM Products WHERE ProductID IN (?,?,?,?) AND Name LIKE '%ham%'
+ *   SELECT * FROM Products WHERE ProductID IN (?...) AND Name LIKE ?
+ *
+ * Statements from Queries and the DAOs are constants, so results are cached
+ * by SQL text; the cache stops growing at MAX_CACHED entries.
+ */
+final class SqlFingerprint {
+    private static final int MAX_CACHED = 1024;
+
+    private static final ConcurrentMap<String, String> CACHE = new ConcurrentHashMap<>();
+
+    private SqlFingerprint() {
+    }
+
+    static String of(String sql) {
+        if (sql == null) {
+            return "";
+        }
+        String fingerprint = CACHE.get(sql);
+        if (fingerprint == null) {
+            fingerprint = collapseLists(normalize(sql));
+            if (CACHE.size() < MAX_CACHED) {
+                CACHE.putIfAbsent(sql, fingerprint);
+            }
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Literals to ?, whitespace and comments to single spaces
+     */
+    private static String normalize(String sql) {
+        StringBuilder out = new StringBuilder(sql.length());
+        int n = sql.length();
+        int i = 0;
+        while (i < n) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                // String literal; '' is an escaped quote
+                i++;
+                while (i < n) {
+                    if (sql.charAt(i) == '\'') {
+                        if (i + 1 < n && sql.charAt(i + 1) == '\'') {
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                i++;
+                out.append('?');
+            } else if (c == '-' && i + 1 < n && sql.charAt(i + 1) == '-') {
+                while (i < n && sql.charAt(i) != '\n') {
+                    i++;
+                }
+                space(out);
+            } else if (Character.isWhitespace(c)) {
+                while (i < n && Character.isWhitespace(sql.charAt(i))) {
+                    i++;
+                }
+                space(out);
+            } else if (Character.isDigit(c) && !inIdentifier(out)) {
+                while (i < n && (Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+                    i++;
+                }
+                out.append('?');
+            } else {
+                out.append(c);
+                i++;
+            }
+        }
+        int end = out.length();
+        while (end > 0 && (out.charAt(end - 1) == ' ' || out.charAt(end - 1) == ';')) {
+            end--;
+        }
+        out.setLength(end);
+        return out.toString();
+    }
+
+    /**
+     * "IN (?, ?, ?)" and "IN (?)" to "IN (?...)"; other parentheses are left alone
+     */
+    private static String collapseLists(String sql) {
+        StringBuilder out = new StringBuilder(sql.length());
+        int n = sql.length();
+        int i = 0;
+        while (i < n) {
+            char c = sql.charAt(i);
+            out.append(c);
+            i++;
+            if (c != '(' || !afterIn(out)) {
+                continue;
+            }
+            int j = i;
+            int markers = 0;
+            while (j < n) {
+                char d = sql.charAt(j);
+                if (d == '?') {
+                    markers++;
+                } else if (d != ',' && d != ' ') {
+                    break;
+                }
+                j++;
+            }
+            if (markers > 0 && j < n && sql.charAt(j) == ')') {
+                out.append("?...");
+                i = j;
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Whether the ( just appended opens an IN list
+     */
+    private static boolean afterIn(StringBuilder out) {
+        int end = out.length() - 1;
+        if (end > 0 && out.charAt(end - 1) == ' ') {
+            end--;
+        }
+        if (end < 2 || Character.toUpperCase(out.charAt(end - 1)) != 'N'
+                || Character.toUpperCase(out.charAt(end - 2)) != 'I') {
+            return false;
+        }
+        return end == 2 || !Character.isLetterOrDigit(out.charAt(end - 3)) && out.charAt(end - 3) != '_';
+    }
+
+    private static void space(StringBuilder out) {
+        if (out.length() > 0 && out.charAt(out.length() - 1) != ' ') {
+            out.append(' ');
+        }
+    }
+
+    private static boolean inIdentifier(StringBuilder out) {
+        if (out.length() == 0) {
+            return false;
+        }
+        char previous = out.charAt(out.length() - 1);
+        return Character.isLetterOrDigit(previous) || previous == '_' || previous == '@' || previous == '#';
+    }
+}
@@ -9,28 +9,16 @@ import java.util.logging.Logger;
 /**
  * User Data Access Object - Enhanced for PizzaStore Shopping Website
  */
-public class UserDAO {
+public class UserDAO implements UserRepository {
     private static final Logger LOGGER = Logger.getLogger(UserDAO.class.getName());
-    
-    // Database connection settings
-    private static final String DB_URL = "jdbc:sqlserver://localhost:1433;databaseName=PizzaStore;trustServerCertificate=true;encrypt=false";
-    private static final String DB_USER = "sa";
-    private static final String DB_PASSWORD = "123456";
-    
-    static {
-        try {
-            Class.forName("com.microsoft.sqlserver.jdbc.SQLServerDriver");
-            LOGGER.info("SQL Server JDBC Driver loaded successfully");
-        } catch (ClassNotFoundException e) {
-            LOGGER.log(Level.SEVERE, "Failed to load SQL Server JDBC Driver", e);
-        }
-    }
+    private static final EventLog EVENTS = EventLog.forClass(UserDAO.class);
+    private static final EventLog FREQUENT_EVENTS = EVENTS.sampled();
     
     /**
-     * Get database connection
+     * Get database connection from the shared pool
      */
     private Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
+        return ConnectionPool.getInstance().getConnection();
     }
     
     /**
@@ -43,18 +31,16 @@ public class UserDAO {
             return null;
         }
         
-        String sql = "SELECT userID, fullName, roleID, password FROM Account WHERE userID = ? AND password = ?";
-        
         try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = Queries.AUTHENTICATE_USER.prepare(conn)) {
             
             pstmt.setString(1, userID.trim());
             pstmt.setString(2, password.trim());
             
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
-                    User user = createUserFromResultSet(rs);
-                    LOGGER.log(Level.INFO, "User authenticated successfully: {0}", userID);
+                    User user = UserRowMapper.INSTANCE.mapRow(rs);
+                    EVENTS.info("User authenticated successfully: {0}", userID);
                     return user;
                 } else {
                     LOGGER.log(Level.WARNING, "Authentication failed for user: {0}", userID);
@@ -73,19 +59,17 @@ public class UserDAO {
      */
     public List<User> getAllUsers() {
         List<User> users = new ArrayList<>();
-        String sql = "SELECT userID, fullName, roleID, password FROM Account ORDER BY fullName";
-        
         try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql);
+             PreparedStatement pstmt = Queries.ALL_USERS.prepare(conn);
              ResultSet rs = pstmt.executeQuery()) {
             
             while (rs.next()) {
-                User user = createUserFromResultSet(rs);
+                User user = UserRowMapper.INSTANCE.mapRow(rs);
                 user.clearSensitiveData(); // Remove password for security
                 users.add(user);
             }
             
-            LOGGER.log(Level.INFO, "Retrieved {0} users from database", users.size());
+            FREQUENT_EVENTS.info("Retrieved {0} users from database", users.size());
             
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error retrieving all users", e);
@@ -103,17 +87,15 @@ public class UserDAO {
             return null;
         }
         
-        String sql = "SELECT userID, fullName, roleID, password FROM Account WHERE userID = ?";
-        
         try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = Queries.USER_BY_ID.prepare(conn)) {
             
             pstmt.setString(1, userID.trim());
             
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
-                    User user = createUserFromResultSet(rs);
-                    LOGGER.log(Level.INFO, "Retrieved user: {0}", userID);
+                    User user = UserRowMapper.INSTANCE.mapRow(rs);
+                    FREQUENT_EVENTS.info("Retrieved user: {0}", userID);
                     return user;
                 }
             }
@@ -133,10 +115,8 @@ public class UserDAO {
             return false;
         }
         
-        String sql = "SELECT COUNT(*) FROM Account WHERE userID = ?";
-        
         try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = Queries.USER_EXISTS.prepare(conn)) {
             
             pstmt.setString(1, userID.trim());
             
@@ -178,7 +158,7 @@ public class UserDAO {
             
             if (result > 0) {
                 conn.commit();
-                LOGGER.log(Level.INFO, "User inserted successfully: {0}", user.getUserID());
+                EVENTS.info("User inserted successfully: {0}", user.getUserID());
                 return true;
             } else {
                 conn.rollback();
@@ -217,7 +197,7 @@ public class UserDAO {
             
             if (result > 0) {
                 conn.commit();
-                LOGGER.log(Level.INFO, "User updated successfully: {0}", user.getUserID());
+                EVENTS.info("User updated successfully: {0}", user.getUserID());
                 return true;
             } else {
                 conn.rollback();
@@ -253,7 +233,7 @@ public class UserDAO {
             
             if (result > 0) {
                 conn.commit();
-                LOGGER.log(Level.INFO, "User deleted successfully: {0}", userID);
+                EVENTS.info("User deleted successfully: {0}", userID);
                 return true;
             } else {
                 conn.rollback();
@@ -266,25 +246,4 @@ public class UserDAO {
         
         return false;
     }
-    
-    /**
-     * Create User object from ResultSet
-     */
-    private User createUserFromResultSet(ResultSet rs) throws SQLException {
-        User user = new User();
-        user.setUserID(rs.getString("userID"));
-        user.setFullName(rs.getString("fullName"));
-        user.setRoleID(rs.getString("roleID"));
-        user.setPassword(rs.getString("password"));
-        
-        // Set type based on roleID for shopping website
-        String roleID = rs.getString("roleID");
-        if ("AD".equals(roleID) || "ST".equals(roleID)) {
-            user.setType(User.TYPE_STAFF);
-        } else {
-            user.setType(User.TYPE_CUSTOMER);
-        }
-        
-        return user;
-    }
 }
\ No newline at end of file
@@ -0,0 +1,31 @@
+package DBUtils;
+
+import java.util.List;
+
+/**
+ * Account storage as the servlets see it. UserDAO is the SQL Server
+ * implementation; InMemoryUserRepository keeps accounts in memory for load
+ * tests. Repositories.users() picks one from configuration.
+ */
+public interface UserRepository {
+
+    /**
+     * The matching user, or null if the ID and password do not match
+     */
+    User authenticateUser(String userID, String password);
+
+    /**
+     * All users, without passwords
+     */
+    List<User> getAllUsers();
+
+    User getUserByID(String userID);
+
+    boolean userExists(String userID);
+
+    boolean insertUser(User user);
+
+    boolean updateUser(User user);
+
+    boolean deleteUser(String userID);
+}
@@ -0,0 +1,29 @@
+package DBUtils;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps a row of the standard account select (Queries.USER_COLUMNS) to a
+ * User by column position
+ */
+public final class UserRowMapper implements RowMapper<User> {
+
+    // 1-based positions in Queries.USER_COLUMNS
+    public static final int USER_ID = 1;
+    public static final int FULL_NAME = 2;
+    public static final int ROLE_ID = 3;
+    public static final int PASSWORD = 4;
+
+    public static final UserRowMapper INSTANCE = new UserRowMapper();
+
+    private UserRowMapper() {
+    }
+
+    @Override
+    public User mapRow(ResultSet rs) throws SQLException {
+        // The constructor derives the staff/customer type from the role
+        return new User(rs.getString(USER_ID), rs.getString(FULL_NAME),
+                        rs.getString(ROLE_ID), rs.getString(PASSWORD));
+    }
+}
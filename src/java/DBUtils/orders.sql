@@ -0,0 +1,22 @@
+-- Tables OrderDAO writes checkouts to, next to Products and Account in the
+-- PizzaStore database (db.url in db.properties). Safe to run more than once.
+--   sqlcmd -S localhost -d PizzaStore -U sa -i orders.sql
+
+IF OBJECT_ID(N'dbo.Orders', N'U') IS NULL
+    CREATE TABLE dbo.Orders (
+        OrderID    INT IDENTITY(1, 1) NOT NULL CONSTRAINT PK_Orders PRIMARY KEY,
+        CustomerID NVARCHAR(50) NOT NULL,
+        OrderDate  DATETIME NOT NULL
+    );
+GO
+
+-- No foreign key to Products: staff may delete a product that was ordered
+IF OBJECT_ID(N'dbo.OrderDetails', N'U') IS NULL
+    CREATE TABLE dbo.OrderDetails (
+        OrderID   INT NOT NULL CONSTRAINT FK_OrderDetails_Orders REFERENCES dbo.Orders (OrderID),
+        ProductID INT NOT NULL,
+        UnitPrice MONEY NOT NULL,
+        Quantity  INT NOT NULL CONSTRAINT CK_OrderDetails_Quantity CHECK (Quantity > 0),
+        CONSTRAINT PK_OrderDetails PRIMARY KEY (OrderID, ProductID)
+    );
+GO
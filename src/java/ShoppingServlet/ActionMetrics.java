@@ -0,0 +1,111 @@
+package ShoppingServlet;
+
+import DBUtils.LatencyHistogram;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency and error counts for every servlet action, exported by
+ * MetricsServlet.
+ *
+ * Each (servlet, action) pair has a lock-free LatencyHistogram and an error
+ * counter. Servlets look up their fixed list of actions once, at init, and
+ * record into them on every request; the raw action parameter never names
+ * a series, so clients cannot create new ones.
+ */
+public final class ActionMetrics {
+
+    private static final ActionMetrics INSTANCE = new ActionMetrics();
+
+    private static final Comparator<Action> ORDER =
+            Comparator.comparing(Action::getServlet).thenComparing(Action::getName);
+
+    private final ConcurrentMap<String, Action> actions = new ConcurrentHashMap<>();
+
+    /**
+     * Timings and failures of one servlet action
+     */
+    public static final class Action {
+        private final String servlet;
+        private final String name;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+
+        private Action(String servlet, String name) {
+            this.servlet = servlet;
+            this.name = name;
+        }
+
+        /**
+         * Record one request that started at startNanos (System.nanoTime())
+         *
+         * @param failed the action threw or answered with a server error
+         */
+        public void record(long startNanos, boolean failed) {
+            latency.recordNanos(System.nanoTime() - startNanos);
+            if (failed) {
+                errors.increment();
+            }
+        }
+
+        public String getServlet() {
+            return servlet;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        public long getErrorCount() {
+            return errors.sum();
+        }
+    }
+
+    private ActionMetrics() {
+    }
+
+    public static ActionMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * The metrics for an action, created on first use
+     */
+    public Action action(String servlet, String name) {
+        String key = servlet + '/' + name;
+        Action action = actions.get(key);
+        // get() first: computeIfAbsent locks its bin even when the key is present
+        return action != null ? action : actions.computeIfAbsent(key, k -> new Action(servlet, name));
+    }
+
+    /**
+     * The metrics for each of a servlet's actions, by action name
+     */
+    public Map<String, Action> actions(String servlet, String... names) {
+        Map<String, Action> byName = new HashMap<>();
+        for (String name : names) {
+            byName.put(name, action(servlet, name));
+        }
+        return Collections.unmodifiableMap(byName);
+    }
+
+    /**
+     * Every action recorded so far, by servlet then action name
+     */
+    public List<Action> getActions() {
+        List<Action> list = new ArrayList<>(actions.values());
+        list.sort(ORDER);
+        return list;
+    }
+}
@@ -0,0 +1,448 @@
+package ShoppingServlet;
+
+import DBUtils.Money;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * Shopping cart kept in the session under SHOPPING_CART.
+ *
+ * Lines are stored in primitive arrays (product ID, quantity, unit price in
+ * cents, name) in the order they were added, with an open-addressing hash
+ * table over the product IDs for lookups. The item count and total are kept
+ * up to date on every change, so reading them costs nothing.
+ *
+ * Each change builds a new immutable State and swaps it in with
+ * compareAndSet, so requests from two tabs of the same session can update
+ * the cart at once without locks and without losing updates. Readers always
+ * see a consistent set of lines and totals.
+ *
+ * When the container persists or replicates the session the cart writes
+ * only a format byte, the line count and, per line, the product ID,
+ * quantity and unit price as varints; names are left out. A restored cart
+ * shows "Product #id" until refreshCart (or the next add) fills the names
+ * back in from the catalog. CartStore keeps carts in the same encoding.
+ */
+public final class Cart implements Externalizable {
+    private static final long serialVersionUID = 2L;
+
+    /** Session attribute the cart is stored under */
+    public static final String SESSION_KEY = "SHOPPING_CART";
+
+    private static final int FORMAT_VERSION = 1;
+
+    /** Guards readExternal against corrupt or hostile input */
+    private static final int MAX_LINES = 10000;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.EMPTY);
+
+    /**
+     * Add quantity of a product, creating the line if needed. The line keeps
+     * its existing price; use setUnitPriceCents to reprice.
+     *
+     * @return the line's new quantity
+     * @throws IllegalArgumentException if the line's quantity or the cart's
+     *         totals would not fit; the cart is left as it was
+     */
+    public int add(int productID, String productName, long unitPriceCents, int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive: " + quantity);
+        }
+        State next;
+        try {
+            next = update(s -> {
+                int index = s.indexOf(productID);
+                if (index < 0) {
+                    return s.withLine(productID, productName, unitPriceCents, quantity);
+                }
+                State added = s.withQuantity(index, Math.addExact(s.quantities[index], quantity));
+                return s.names[index] == null ? added.withName(index, productName) : added;
+            });
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Cart quantity out of range", e);
+        }
+        return next.quantities[next.indexOf(productID)];
+    }
+
+    /**
+     * Set a line's quantity; 0 or less removes the line
+     */
+    public void setQuantity(int productID, int quantity) {
+        update(s -> {
+            int index = s.indexOf(productID);
+            if (index < 0) {
+                return s;
+            }
+            return quantity > 0 ? s.withQuantity(index, quantity) : s.without(index);
+        });
+    }
+
+    /**
+     * Take quantity off a line, removing it when nothing is left. Used after
+     * checkout so items added from another tab meanwhile are kept.
+     */
+    public void subtract(int productID, int quantity) {
+        update(s -> {
+            int index = s.indexOf(productID);
+            if (index < 0) {
+                return s;
+            }
+            int left = s.quantities[index] - quantity;
+            return left > 0 ? s.withQuantity(index, left) : s.without(index);
+        });
+    }
+
+    public void setUnitPriceCents(int productID, long unitPriceCents) {
+        update(s -> {
+            int index = s.indexOf(productID);
+            return index < 0 ? s : s.withPrice(index, unitPriceCents);
+        });
+    }
+
+    /**
+     * Fill in a line's name, e.g. after the cart was restored from a
+     * persisted session
+     */
+    public void setProductName(int productID, String productName) {
+        update(s -> {
+            int index = s.indexOf(productID);
+            return index < 0 ? s : s.withName(index, productName);
+        });
+    }
+
+    public void remove(int productID) {
+        update(s -> {
+            int index = s.indexOf(productID);
+            return index < 0 ? s : s.without(index);
+        });
+    }
+
+    public void clear() {
+        state.set(State.EMPTY);
+    }
+
+    public boolean contains(int productID) {
+        return state.get().indexOf(productID) >= 0;
+    }
+
+    /**
+     * Quantity of a product in the cart, or 0
+     */
+    public int getQuantity(int productID) {
+        State s = state.get();
+        int index = s.indexOf(productID);
+        return index < 0 ? 0 : s.quantities[index];
+    }
+
+    /**
+     * Number of distinct products
+     */
+    public int size() {
+        return state.get().size;
+    }
+
+    public boolean isEmpty() {
+        return state.get().size == 0;
+    }
+
+    /**
+     * Sum of all quantities
+     */
+    public int getTotalQuantity() {
+        return state.get().totalQuantity;
+    }
+
+    public long getTotalCents() {
+        return state.get().totalCents;
+    }
+
+    public BigDecimal getTotal() {
+        return Money.toBigDecimal(getTotalCents());
+    }
+
+    public String getFormattedTotal() {
+        return Money.format(getTotalCents());
+    }
+
+    /**
+     * Product IDs in the order they were added
+     */
+    public int[] getProductIDs() {
+        State s = state.get();
+        return Arrays.copyOf(s.productIDs, s.size);
+    }
+
+    /**
+     * Read-only view of the lines as of now, for rendering
+     */
+    public List<Line> getLines() {
+        State s = state.get();
+        List<Line> lines = new ArrayList<>(s.size);
+        for (int i = 0; i < s.size; i++) {
+            lines.add(new Line(s.productIDs[i], s.names[i], s.quantities[i], s.priceCents[i]));
+        }
+        return Collections.unmodifiableList(lines);
+    }
+
+    private State update(UnaryOperator<State> change) {
+        while (true) {
+            State current = state.get();
+            State next = change.apply(current);
+            if (next == current || state.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        writeTo(out);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        readFrom(in);
+    }
+
+    /**
+     * Write the compact encoding: format byte, line count, then per line the
+     * product ID, quantity and unit price in cents as varints. Shared by
+     * session serialization and CartStore.
+     */
+    void writeTo(DataOutput out) throws IOException {
+        State s = state.get();
+        out.writeByte(FORMAT_VERSION);
+        SessionCodec.writeVarInt(out, s.size);
+        for (int i = 0; i < s.size; i++) {
+            SessionCodec.writeVarInt(out, s.productIDs[i]);
+            SessionCodec.writeVarInt(out, s.quantities[i]);
+            SessionCodec.writeVarLong(out, s.priceCents[i]);
+        }
+    }
+
+    /**
+     * Replace the contents with lines read from writeTo's encoding
+     */
+    void readFrom(DataInput in) throws IOException {
+        SessionCodec.checkVersion(in, FORMAT_VERSION, Cart.class);
+        int size = SessionCodec.readVarInt(in);
+        if (size < 0 || size > MAX_LINES) {
+            throw new InvalidObjectException("Bad cart size " + size);
+        }
+        int[] ids = new int[size];
+        int[] q = new int[size];
+        long[] p = new long[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = SessionCodec.readVarInt(in);
+            q[i] = SessionCodec.readVarInt(in);
+            p[i] = SessionCodec.readVarLong(in);
+            if (q[i] <= 0) {
+                throw new InvalidObjectException("Bad quantity " + q[i] + " for product " + ids[i]);
+            }
+        }
+        State read;
+        try {
+            read = size == 0 ? State.EMPTY : new State(ids, q, p, new String[size], size);
+        } catch (ArithmeticException e) {
+            throw new InvalidObjectException("Cart total out of range");
+        }
+        for (int i = 0; i < size; i++) {
+            // A repeated ID finds its first line
+            if (read.indexOf(ids[i]) != i) {
+                throw new InvalidObjectException("Duplicate line for product " + ids[i]);
+            }
+        }
+        state.set(read);
+    }
+
+    @Override
+    public String toString() {
+        State s = state.get();
+        return "Cart{" +
+                "lines=" + s.size +
+                ", quantity=" + s.totalQuantity +
+                ", totalCents=" + s.totalCents +
+                '}';
+    }
+
+    /**
+     * One cart line, as handed to page templates
+     */
+    public static final class Line {
+        private final int productID;
+        private final String productName;
+        private final int quantity;
+        private final long unitPriceCents;
+
+        Line(int productID, String productName, int quantity, long unitPriceCents) {
+            this.productID = productID;
+            this.productName = productName;
+            this.quantity = quantity;
+            this.unitPriceCents = unitPriceCents;
+        }
+
+        public int getProductID() {
+            return productID;
+        }
+
+        /**
+         * The product name, or "Product #id" if the cart was restored from a
+         * persisted session and has not been refreshed yet
+         */
+        public String getProductName() {
+            return productName != null ? productName : "Product #" + productID;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public long getUnitPriceCents() {
+            return unitPriceCents;
+        }
+
+        public BigDecimal getUnitPrice() {
+            return Money.toBigDecimal(unitPriceCents);
+        }
+
+        public String getFormattedUnitPrice() {
+            return Money.format(unitPriceCents);
+        }
+
+        public long getSubtotalCents() {
+            return Money.times(unitPriceCents, quantity);
+        }
+
+        public BigDecimal getSubtotal() {
+            return Money.toBigDecimal(getSubtotalCents());
+        }
+
+        public String getFormattedSubtotal() {
+            return Money.format(getSubtotalCents());
+        }
+    }
+
+    /**
+     * Immutable cart contents. Lines are dense arrays in insertion order;
+     * slots is a linear-probing table of (line index + 1), 0 meaning empty.
+     */
+    private static final class State {
+        static final State EMPTY = new State(new int[0], new int[0], new long[0], new String[0], 0);
+
+        final int[] productIDs;
+        final int[] quantities;
+        final long[] priceCents;
+        final String[] names;
+        final int size;
+        final int[] slots;
+        final long totalCents;
+        final int totalQuantity;
+
+        State(int[] productIDs, int[] quantities, long[] priceCents, String[] names, int size) {
+            this.productIDs = productIDs;
+            this.quantities = quantities;
+            this.priceCents = priceCents;
+            this.names = names;
+            this.size = size;
+
+            // Table at most half full
+            int capacity = 4;
+            while (capacity < size * 2) {
+                capacity <<= 1;
+            }
+            int[] table = new int[capacity];
+            long cents = 0;
+            int quantity = 0;
+            for (int i = 0; i < size; i++) {
+                int slot = slotFor(productIDs[i], capacity);
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                table[slot] = i + 1;
+                cents = Money.plus(cents, Money.times(priceCents[i], quantities[i]));
+                quantity = Math.addExact(quantity, quantities[i]);
+            }
+            this.slots = table;
+            this.totalCents = cents;
+            this.totalQuantity = quantity;
+        }
+
+        int indexOf(int productID) {
+            int mask = slots.length - 1;
+            for (int slot = slotFor(productID, slots.length); ; slot = (slot + 1) & mask) {
+                int entry = slots[slot];
+                if (entry == 0) {
+                    return -1;
+                }
+                if (productIDs[entry - 1] == productID) {
+                    return entry - 1;
+                }
+            }
+        }
+
+        State withLine(int productID, String name, long cents, int quantity) {
+            int n = size + 1;
+            int[] ids = Arrays.copyOf(productIDs, n);
+            int[] q = Arrays.copyOf(quantities, n);
+            long[] p = Arrays.copyOf(priceCents, n);
+            String[] nm = Arrays.copyOf(names, n);
+            ids[size] = productID;
+            q[size] = quantity;
+            p[size] = cents;
+            nm[size] = name;
+            return new State(ids, q, p, nm, n);
+        }
+
+        State withQuantity(int index, int quantity) {
+            int[] q = quantities.clone();
+            q[index] = quantity;
+            return new State(productIDs, q, priceCents, names, size);
+        }
+
+        State withPrice(int index, long cents) {
+            long[] p = priceCents.clone();
+            p[index] = cents;
+            return new State(productIDs, quantities, p, names, size);
+        }
+
+        State withName(int index, String name) {
+            String[] nm = names.clone();
+            nm[index] = name;
+            return new State(productIDs, quantities, priceCents, nm, size);
+        }
+
+        State without(int index) {
+            int n = size - 1;
+            int[] ids = new int[n];
+            int[] q = new int[n];
+            long[] p = new long[n];
+            String[] nm = new String[n];
+            System.arraycopy(productIDs, 0, ids, 0, index);
+            System.arraycopy(productIDs, index + 1, ids, index, n - index);
+            System.arraycopy(quantities, 0, q, 0, index);
+            System.arraycopy(quantities, index + 1, q, index, n - index);
+            System.arraycopy(priceCents, 0, p, 0, index);
+            System.arraycopy(priceCents, index + 1, p, index, n - index);
+            System.arraycopy(names, 0, nm, 0, index);
+            System.arraycopy(names, index + 1, nm, index, n - index);
+            return new State(ids, q, p, nm, n);
+        }
+
+        private static int slotFor(int productID, int capacity) {
+            int h = productID * 0x9E3779B9;
+            return (h ^ (h >>> 16)) & (capacity - 1);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package ShoppingServlet;
+
+import DBUtils.DBConfig;
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Durable home for logged-in customers' carts, keyed by user ID.
+ *
+ * The session still holds the live Cart; ShoppingServlet writes it through
+ * to the store on every change and reads it back when a session has no cart
+ * yet, so a redeploy, restart or move to a new session keeps the customer's
+ * items. Implementations must be safe for concurrent use.
+ *
+ * Settings (db.properties): cart.store (mapped or none), cart.store.file,
+ * cart.store.slots, cart.store.slotBytes, cart.store.stripes.
+ */
+public interface CartStore {
+
+    /** Store that keeps nothing; carts live only in the session */
+    CartStore NONE = new CartStore() {
+        @Override
+        public Cart load(String userID) {
+            return null;
+        }
+
+        @Override
+        public void save(String userID, Cart cart) {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    /**
+     * The user's saved cart, or null if there is none or it cannot be read
+     */
+    Cart load(String userID);
+
+    /**
+     * Save the user's cart; an empty cart removes the entry
+     */
+    void save(String userID, Cart cart);
+
+    void close();
+
+    /**
+     * Shared store for the web application
+     */
+    static CartStore getInstance() {
+        return Holder.get();
+    }
+
+    /**
+     * Flush and close the shared store
+     */
+    static void shutdownInstance() {
+        Holder.shutdown();
+    }
+
+    /**
+     * Creates the configured store once; falls back to NONE if it cannot be
+     * opened, so the shop keeps working with session-only carts
+     */
+    final class Holder {
+        private static final Logger LOGGER = Logger.getLogger(CartStore.class.getName());
+
+        private static CartStore instance;
+
+        private Holder() {
+        }
+
+        static synchronized CartStore get() {
+            if (instance == null) {
+                instance = open(DBConfig.load());
+            }
+            return instance;
+        }
+
+        static synchronized void shutdown() {
+            if (instance != null) {
+                instance.close();
+                instance = null;
+            }
+        }
+
+        private static CartStore open(DBConfig config) {
+            String type = config.get("cart.store", "mapped");
+            if (!"mapped".equalsIgnoreCase(type)) {
+                LOGGER.log(Level.INFO, "Cart store disabled (cart.store={0})", type);
+                return NONE;
+            }
+
+            File file = new File(config.get("cart.store.file", defaultFile()));
+            try {
+                return new MappedCartStore(file,
+                        config.getInt("cart.store.slots", 16384),
+                        config.getInt("cart.store.slotBytes", 512),
+                        config.getInt("cart.store.stripes", 64));
+            } catch (IOException | IllegalArgumentException e) {
+                LOGGER.log(Level.SEVERE, "Could not open cart store " + file + ", carts will not survive restarts", e);
+                return NONE;
+            }
+        }
+
+        /**
+         * Tomcat's work directory when running in Tomcat, else the temp dir
+         */
+        private static String defaultFile() {
+            String base = System.getProperty("catalina.base");
+            File dir = base != null ? new File(base, "work") : new File(System.getProperty("java.io.tmpdir"));
+            return new File(dir, "PizzaStore-carts.dat").getPath();
+        }
+    }
+}
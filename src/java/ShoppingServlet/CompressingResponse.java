@@ -0,0 +1,406 @@
+package ShoppingServlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Response wrapper that gzips the body as it is written.
+ *
+ * The first minBytes of the body are held back to decide. The response is
+ * compressed once that much has been written, or the servlet calls
+ * flushBuffer(), provided its content type is on the allow-list, its status
+ * carries a body and no Content-Encoding is set yet; a body that ends
+ * shorter than minBytes goes out as it is. Compressed output is sync-flushed
+ * on every flushBuffer(), so streamed responses still reach the client as
+ * they are produced.
+ *
+ * A compressed body is a different representation of the same content, so
+ * ETags set through this wrapper are made weak.
+ *
+ * Compressed output is written blocking. A servlet that switches the
+ * stream to non-blocking output with setWriteListener() before any
+ * compressed byte has gone out gets a plain response, and the container's
+ * stream, listener and isReady() as they are.
+ *
+ * finish() must be called once the servlet is done; CompressionFilter does
+ * that when the chain returns or the async request completes.
+ */
+final class CompressingResponse extends HttpServletResponseWrapper {
+
+    private enum State { UNDECIDED, PLAIN, COMPRESSED, DONE }
+
+    private final int minBytes;
+    private final int level;
+    private final Set<String> mimeTypes;
+
+    private State state = State.UNDECIDED;
+    private byte[] held;
+    private int heldCount;
+    private long declaredLength = -1;
+    private ServletOutputStream target;
+    private GzipStream gzip;
+    private boolean nonBlocking;
+
+    private final Body body = new Body();
+    private PrintWriter writer;
+    private boolean streamUsed;
+
+    CompressingResponse(HttpServletResponse response, int minBytes, int level, Set<String> mimeTypes) {
+        super(response);
+        this.minBytes = minBytes;
+        this.level = level;
+        this.mimeTypes = mimeTypes;
+    }
+
+    /**
+     * Write out whatever is held back and end the gzip stream
+     */
+    void finish() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        if (state == State.UNDECIDED) {
+            decide(heldCount);
+        }
+        if (state == State.COMPRESSED) {
+            gzip.finish();
+            gzip.end();
+        }
+        state = State.DONE;
+    }
+
+    /**
+     * Free the gzip stream of a response that will not be finished, such as
+     * one its AsyncContext completed directly
+     */
+    void release() {
+        State previous = state;
+        state = State.DONE;
+        if (previous == State.COMPRESSED) {
+            gzip.end();
+        }
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (writer != null) {
+            throw new IllegalStateException("getWriter() has already been called");
+        }
+        streamUsed = true;
+        return body;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            if (streamUsed) {
+                throw new IllegalStateException("getOutputStream() has already been called");
+            }
+            writer = new PrintWriter(new OutputStreamWriter(body, getCharacterEncoding()));
+        }
+        return writer;
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        // An explicit flush means the servlet is streaming: decide now
+        if (state == State.UNDECIDED) {
+            decide(-1);
+        }
+        if (state == State.COMPRESSED) {
+            gzip.flush();
+        }
+        super.flushBuffer();
+    }
+
+    @Override
+    public void resetBuffer() {
+        super.resetBuffer();
+        discardBody();
+        if (state == State.COMPRESSED) {
+            // Content-Encoding is already set; start the gzip stream over
+            gzip.end();
+            startGzip();
+        }
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        discardBody();
+        if (state == State.COMPRESSED) {
+            gzip.end();
+        }
+        state = State.UNDECIDED;
+        declaredLength = -1;
+        streamUsed = false;
+    }
+
+    @Override
+    public void sendError(int status, String message) throws IOException {
+        dropEncoding();
+        super.sendError(status, message);
+    }
+
+    @Override
+    public void sendError(int status) throws IOException {
+        dropEncoding();
+        super.sendError(status);
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+        dropEncoding();
+        super.sendRedirect(location);
+    }
+
+    @Override
+    public void setContentLength(int length) {
+        setContentLengthLong(length);
+    }
+
+    @Override
+    public void setContentLengthLong(long length) {
+        if (state == State.PLAIN) {
+            super.setContentLengthLong(length);
+        } else {
+            // Only true of the uncompressed body; passed on if it stays that way
+            declaredLength = length;
+        }
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        if ("Content-Length".equalsIgnoreCase(name) && value != null) {
+            setContentLengthLong(Long.parseLong(value.trim()));
+        } else {
+            super.setHeader(name, weakenETag(name, value));
+        }
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        if ("Content-Length".equalsIgnoreCase(name) && value != null) {
+            setContentLengthLong(Long.parseLong(value.trim()));
+        } else {
+            super.addHeader(name, weakenETag(name, value));
+        }
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+        if ("Content-Length".equalsIgnoreCase(name)) {
+            setContentLengthLong(value);
+        } else {
+            super.setIntHeader(name, value);
+        }
+    }
+
+    private static String weakenETag(String name, String value) {
+        return "ETag".equalsIgnoreCase(name) && value != null && value.startsWith("\"") ? "W/" + value : value;
+    }
+
+    /**
+     * Choose plain or compressed output and write the held bytes
+     *
+     * @param length the whole body's length, or -1 if more may follow
+     */
+    private void decide(long length) throws IOException {
+        boolean compressible = isCompressible();
+        if (compressible) {
+            super.addHeader("Vary", "Accept-Encoding");
+        }
+        long known = length >= 0 ? length : declaredLength;
+        decide(length, compressible && (known < 0 || known >= minBytes));
+    }
+
+    private void decide(long length, boolean compress) throws IOException {
+        if (compress) {
+            super.setHeader("Content-Encoding", "gzip");
+            startGzip();
+            state = State.COMPRESSED;
+            gzip.write(held != null ? held : new byte[0], 0, heldCount);
+        } else {
+            state = State.PLAIN;
+            if (declaredLength >= 0) {
+                super.setContentLengthLong(declaredLength);
+            } else if (length > 0 && !isCommitted()) {
+                super.setContentLengthLong(length);
+            }
+            if (heldCount > 0) {
+                target().write(held, 0, heldCount);
+            }
+        }
+        held = null;
+        heldCount = 0;
+    }
+
+    private boolean isCompressible() {
+        int status = getStatus();
+        if (status < 200 || status == SC_NO_CONTENT || status == SC_NOT_MODIFIED) {
+            return false;
+        }
+        if (getHeader("Content-Encoding") != null) {
+            return false;
+        }
+        String type = getContentType();
+        if (type == null) {
+            return false;
+        }
+        int semicolon = type.indexOf(';');
+        String mimeType = (semicolon >= 0 ? type.substring(0, semicolon) : type).trim().toLowerCase(Locale.ROOT);
+        return mimeTypes.contains(mimeType);
+    }
+
+    private void startGzip() {
+        try {
+            gzip = new GzipStream(target(), level);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot open response output", e);
+        }
+    }
+
+    private ServletOutputStream target() throws IOException {
+        if (target == null) {
+            target = super.getOutputStream();
+        }
+        return target;
+    }
+
+    private void discardBody() {
+        held = null;
+        heldCount = 0;
+        // Characters still buffered in the old writer must not be written
+        writer = null;
+    }
+
+    /**
+     * The container writes error pages and redirects itself; nothing we
+     * hold back may follow them, and a gzip header must not stay on a plain
+     * body
+     */
+    private void dropEncoding() {
+        discardBody();
+        if (state == State.COMPRESSED) {
+            gzip.end();
+        }
+        if (state == State.COMPRESSED && !isCommitted()) {
+            // reset() is the only way to remove a header; keep the cookies
+            List<String> cookies = new ArrayList<>(getHeaders("Set-Cookie"));
+            super.reset();
+            for (String cookie : cookies) {
+                super.addHeader("Set-Cookie", cookie);
+            }
+        }
+        state = State.DONE;
+    }
+
+    /**
+     * GZIPOutputStream with a chosen level whose zlib memory is released
+     * by end() rather than waiting for garbage collection
+     */
+    private static final class GzipStream extends GZIPOutputStream {
+
+        GzipStream(OutputStream out, int level) throws IOException {
+            super(out, 8192, true);
+            def.setLevel(level);
+        }
+
+        void end() {
+            def.end();
+        }
+    }
+
+    private final class Body extends ServletOutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            switch (state) {
+                case UNDECIDED:
+                    if (heldCount + length <= minBytes) {
+                        if (held == null) {
+                            held = new byte[minBytes];
+                        }
+                        System.arraycopy(bytes, offset, held, heldCount, length);
+                        heldCount += length;
+                        return;
+                    }
+                    decide(-1);
+                    write(bytes, offset, length);
+                    return;
+                case PLAIN:
+                    target().write(bytes, offset, length);
+                    return;
+                case COMPRESSED:
+                    gzip.write(bytes, offset, length);
+                    return;
+                default:
+                    // After sendError, sendRedirect or finish(): ignored, as the container does
+                    return;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            // Held bytes wait for the decision; see flushBuffer()
+            if (state == State.PLAIN) {
+                target().flush();
+            } else if (state == State.COMPRESSED) {
+                gzip.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (state != State.DONE) {
+                finish();
+                if (target != null) {
+                    target.close();
+                }
+            }
+        }
+
+        @Override
+        public boolean isReady() {
+            // Held and compressed bytes are written blocking, so always ready
+            return !nonBlocking || target.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener listener) {
+            try {
+                if (state == State.UNDECIDED) {
+                    // Anything held back goes out now, while writes still block
+                    decide(-1, false);
+                }
+                if (state != State.PLAIN) {
+                    throw new IllegalStateException("Non-blocking output cannot follow compressed output");
+                }
+                nonBlocking = true;
+                target().setWriteListener(listener);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package ShoppingServlet;
+
+import DBUtils.DBConfig;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Gzips responses for clients that send Accept-Encoding: gzip.
+ *
+ * Bodies are compressed as they are written by
+ * CompressingResponse, which leaves bodies shorter than compression.minBytes
+ * and content types outside compression.mimeTypes alone. Requests the
+ * servlet finishes asynchronously are finished when their AsyncContext
+ * completes.
+ *
+ * Settings (db.properties): compression.enabled, compression.minBytes,
+ * compression.level, compression.mimeTypes.
+ */
+@WebFilter(filterName = "CompressionFilter", urlPatterns = {"/*"}, asyncSupported = true)
+public class CompressionFilter implements Filter {
+    private static final Logger LOGGER = Logger.getLogger(CompressionFilter.class.getName());
+
+    private static final String DEFAULT_MIME_TYPES =
+            "text/html,text/plain,text/css,application/json,application/javascript,image/svg+xml";
+
+    private boolean enabled;
+    private int minBytes;
+    private int level;
+    private Set<String> mimeTypes;
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        DBConfig config = DBConfig.load();
+        enabled = Boolean.parseBoolean(config.get("compression.enabled", "true"));
+        // Held back in memory per response until the decision is made
+        minBytes = Math.max(0, Math.min(config.getInt("compression.minBytes", 1024), 64 * 1024));
+        level = Math.max(1, Math.min(config.getInt("compression.level", 6), 9));
+
+        Set<String> types = new HashSet<>();
+        for (String type : config.get("compression.mimeTypes", DEFAULT_MIME_TYPES).split(",")) {
+            if (!type.trim().isEmpty()) {
+                types.add(type.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+        mimeTypes = Collections.unmodifiableSet(types);
+
+        LOGGER.log(Level.INFO, "Response compression {0}: minBytes={1}, level={2}, types={3}",
+                new Object[]{enabled ? "enabled" : "disabled", minBytes, level, mimeTypes});
+    }
+
+    @Override
+    public void doFilter(ServletRequest req, ServletResponse resp, FilterChain chain)
+            throws IOException, ServletException {
+
+        if (!enabled || !(req instanceof HttpServletRequest) || !(resp instanceof HttpServletResponse)) {
+            chain.doFilter(req, resp);
+            return;
+        }
+        HttpServletRequest request = (HttpServletRequest) req;
+        HttpServletResponse response = (HttpServletResponse) resp;
+        if (!acceptsGzip(request)) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        CompressingResponse compressing = new CompressingResponse(response, minBytes, level, mimeTypes);
+        AsyncAwareRequest wrapped = new AsyncAwareRequest(request, compressing);
+        chain.doFilter(wrapped, compressing);
+        if (!wrapped.asyncStarted) {
+            compressing.finish();
+        }
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+    /**
+     * Whether Accept-Encoding allows gzip: gzip, x-gzip or * with a
+     * non-zero q-value
+     */
+    static boolean acceptsGzip(HttpServletRequest request) {
+        Enumeration<String> headers = request.getHeaders("Accept-Encoding");
+        while (headers != null && headers.hasMoreElements()) {
+            for (String coding : headers.nextElement().split(",")) {
+                String[] parts = coding.split(";");
+                String name = parts[0].trim().toLowerCase(Locale.ROOT);
+                if (!name.equals("gzip") && !name.equals("x-gzip") && !name.equals("*")) {
+                    continue;
+                }
+                double quality = 1;
+                for (int i = 1; i < parts.length; i++) {
+                    String parameter = parts[i].trim();
+                    if (parameter.startsWith("q=") || parameter.startsWith("Q=")) {
+                        try {
+                            quality = Double.parseDouble(parameter.substring(2).trim());
+                        } catch (NumberFormatException e) {
+                            quality = 0;
+                        }
+                    }
+                }
+                if (quality > 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Hands out AsyncContexts that finish the compressed response before
+     * completing it
+     */
+    private static final class AsyncAwareRequest extends HttpServletRequestWrapper {
+        private final CompressingResponse response;
+        private volatile boolean asyncStarted;
+
+        AsyncAwareRequest(HttpServletRequest request, CompressingResponse response) {
+            super(request);
+            this.response = response;
+        }
+
+        @Override
+        public AsyncContext startAsync() {
+            return started(super.startAsync());
+        }
+
+        @Override
+        public AsyncContext startAsync(ServletRequest request, ServletResponse response) {
+            return started(super.startAsync(request, response));
+        }
+
+        @Override
+        public AsyncContext getAsyncContext() {
+            return new FinishingAsyncContext(super.getAsyncContext(), response);
+        }
+
+        private AsyncContext started(AsyncContext async) {
+            if (!asyncStarted) {
+                asyncStarted = true;
+                async.addListener(new ReleaseListener(response));
+            }
+            return new FinishingAsyncContext(async, response);
+        }
+    }
+
+    /**
+     * Frees the gzip stream of a request completed without finish(), as the
+     * timeout handler does through the container's own AsyncContext
+     */
+    private static final class ReleaseListener implements AsyncListener {
+        private final CompressingResponse response;
+
+        ReleaseListener(CompressingResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            response.release();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            response.release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+
+    private static final class FinishingAsyncContext implements AsyncContext {
+        private final AsyncContext async;
+        private final CompressingResponse response;
+
+        FinishingAsyncContext(AsyncContext async, CompressingResponse response) {
+            this.async = async;
+            this.response = response;
+        }
+
+        @Override
+        public void complete() {
+            try {
+                response.finish();
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Could not finish compressed response", e);
+            } finally {
+                async.complete();
+            }
+        }
+
+        @Override
+        public ServletRequest getRequest() {
+            return async.getRequest();
+        }
+
+        @Override
+        public ServletResponse getResponse() {
+            return async.getResponse();
+        }
+
+        @Override
+        public boolean hasOriginalRequestAndResponse() {
+            return async.hasOriginalRequestAndResponse();
+        }
+
+        @Override
+        public void dispatch() {
+            async.dispatch();
+        }
+
+        @Override
+        public void dispatch(String path) {
+            async.dispatch(path);
+        }
+
+        @Override
+        public void dispatch(ServletContext context, String path) {
+            async.dispatch(context, path);
+        }
+
+        @Override
+        public void addListener(AsyncListener listener) {
+            async.addListener(listener);
+        }
+
+        @Override
+        public void addListener(AsyncListener listener, ServletRequest request, ServletResponse response) {
+            async.addListener(listener, request, response);
+        }
+
+        @Override
+        public <T extends AsyncListener> T createListener(Class<T> type) throws ServletException {
+            return async.createListener(type);
+        }
+
+        @Override
+        public void setTimeout(long timeout) {
+            async.setTimeout(timeout);
+        }
+
+        @Override
+        public long getTimeout() {
+            return async.getTimeout();
+        }
+
+        @Override
+        public void start(Runnable run) {
+            async.start(run);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package ShoppingServlet;
+
+import DBUtils.CatalogSnapshot;
+import java.util.Enumeration;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * ETag and Last-Modified for catalog pages, so a browser re-requesting a
+ * listing it already has gets 304 Not Modified instead of the page.
+ *
+ * A catalog page depends only on the snapshot it is rendered from, the
+ * viewer's role (staff see every product), the parameters that choose the
+ * products, and the page template, which only changes on redeploy. The
+ * strong ETag is the snapshot version, which every product write bumps,
+ * and a hash of the rest. Last-Modified is the latest of the snapshot's
+ * creation, the deployment and the user's login, for clients that only
+ * send If-Modified-Since.
+ */
+final class ConditionalGet {
+
+    // Parameters that decide which products a catalog page shows
+    private static final String[] KEY_PARAMETERS = {"action", "categoryID", "productID", "cursor", "pageSize"};
+
+    private final String etag;
+    private final long lastModified;
+
+    private ConditionalGet(String etag, long lastModified) {
+        this.etag = etag;
+        // HTTP dates have whole seconds
+        this.lastModified = lastModified - lastModified % 1000;
+    }
+
+    /**
+     * Validators for a catalog page rendered from this snapshot
+     *
+     * @param deployedAt when the servlet (and its template) was loaded
+     * @param loginTime when the user logged in, or 0 if unknown
+     */
+    static ConditionalGet forCatalogPage(CatalogSnapshot snapshot, HttpServletRequest request,
+                                         LoginPrincipal user, long deployedAt, long loginTime) {
+        long hash = 0xcbf29ce484222325L;
+        hash = mix(hash, Long.toString(deployedAt));
+        hash = mix(hash, user != null && user.isStaff() ? "staff" : "customer");
+        for (String name : KEY_PARAMETERS) {
+            String value = request.getParameter(name);
+            hash = mix(hash, value != null ? value.trim() : "");
+        }
+
+        String etag = "\"" + Long.toHexString(snapshot.getVersion()) + "-" + Long.toHexString(hash) + "\"";
+        long lastModified = Math.max(snapshot.getCreatedAt(), Math.max(deployedAt, loginTime));
+        return new ConditionalGet(etag, lastModified);
+    }
+
+    /**
+     * Whether the client's copy is current: If-None-Match lists our ETag,
+     * or, when there is no If-None-Match, If-Modified-Since is not older
+     * than Last-Modified
+     */
+    boolean isNotModified(HttpServletRequest request) {
+        Enumeration<String> ifNoneMatch = request.getHeaders("If-None-Match");
+        if (ifNoneMatch != null && ifNoneMatch.hasMoreElements()) {
+            while (ifNoneMatch.hasMoreElements()) {
+                if (matches(ifNoneMatch.nextElement())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        long ifModifiedSince;
+        try {
+            ifModifiedSince = request.getDateHeader("If-Modified-Since");
+        } catch (IllegalArgumentException e) {
+            // Unparseable date: treat as absent
+            return false;
+        }
+        return ifModifiedSince >= 0 && lastModified <= ifModifiedSince;
+    }
+
+    /**
+     * Answer 304 with the validators and no body
+     */
+    void sendNotModified(HttpServletResponse response) {
+        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        addTo(response);
+    }
+
+    /**
+     * Add the validators to a full response; browsers keep the page but
+     * revalidate it on every use
+     */
+    void addTo(HttpServletResponse response) {
+        response.setHeader("ETag", etag);
+        response.setDateHeader("Last-Modified", lastModified);
+        response.setHeader("Cache-Control", "private, no-cache");
+    }
+
+    /**
+     * If-None-Match: "*" or a list of entity tags, compared weakly as RFC
+     * 7232 asks for GET
+     */
+    private boolean matches(String header) {
+        for (String tag : header.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * FNV-1a over the value's chars, with a separator so ("ab", "") and
+     * ("a", "b") differ
+     */
+    private static long mix(long hash, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+        }
+        return (hash ^ 0xFFFF) * 0x100000001b3L;
+    }
+}
@@ -0,0 +1,42 @@
+package ShoppingServlet;
+
+import DBUtils.ConnectionPool;
+import DBUtils.EventLog;
+import DBUtils.Repositories;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+import java.util.logging.Logger;
+
+/**
+ * Application lifecycle listener - opens the shared connection pool, request
+ * executor and cart store on startup and closes them, and the async log
+ * writer, on undeploy so no connections, threads or file handles leak
+ */
+@WebListener
+public class DatabaseContextListener implements ServletContextListener {
+    private static final Logger LOGGER = Logger.getLogger(DatabaseContextListener.class.getName());
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        if (Repositories.isInMemory()) {
+            LOGGER.info("Using in-memory repositories; database connection pool starts on first use");
+        } else {
+            ConnectionPool.getInstance();
+            LOGGER.info("Database connection pool started");
+        }
+        RequestExecutor.getInstance();
+        CartStore.getInstance();
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        // Let in-flight actions finish before their connections go away
+        RequestExecutor.shutdownInstance();
+        CartStore.shutdownInstance();
+        ConnectionPool.shutdownInstance();
+        LOGGER.info("Database connection pool shut down");
+        // Last, so events logged while shutting down are still written
+        EventLog.shutdown();
+    }
+}
@@ -0,0 +1,112 @@
+package ShoppingServlet;
+
+import DBUtils.User;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * The logged-in user as kept in the session under LOGIN_USER.
+ *
+ * Holds only what requests need (ID, display name and role), never the
+ * password, and writes itself as three short strings and a flag so session
+ * persistence and replication stay cheap. User itself is not Serializable
+ * and is never stored in the session.
+ */
+public final class LoginPrincipal implements Externalizable {
+    private static final long serialVersionUID = 1L;
+
+    /** Session attribute the principal is stored under */
+    public static final String SESSION_KEY = "LOGIN_USER";
+
+    private static final int FORMAT_VERSION = 1;
+
+    private String userID;
+    private String fullName;
+    private String roleID;
+    private boolean staff;
+
+    /**
+     * For deserialization only
+     */
+    public LoginPrincipal() {
+    }
+
+    public LoginPrincipal(User user) {
+        this.userID = user.getUserID();
+        this.fullName = user.getFullName();
+        this.roleID = user.getRoleID();
+        this.staff = user.isStaff();
+    }
+
+    public String getUserID() {
+        return userID;
+    }
+
+    public String getFullName() {
+        return fullName;
+    }
+
+    public String getRoleID() {
+        return roleID;
+    }
+
+    public String getType() {
+        return isStaff() ? User.TYPE_STAFF : User.TYPE_CUSTOMER;
+    }
+
+    public boolean isStaff() {
+        return staff;
+    }
+
+    public boolean isAdmin() {
+        return User.ROLE_ADMIN.equals(roleID);
+    }
+
+    public boolean isCustomer() {
+        return !isStaff();
+    }
+
+    public String getRoleDisplayName() {
+        if (roleID == null) {
+            return "Unknown";
+        }
+        switch (roleID) {
+            case User.ROLE_ADMIN:
+                return "Administrator";
+            case User.ROLE_STAFF:
+                return "Staff";
+            case User.ROLE_USER:
+                return "Customer";
+            default:
+                return "Unknown";
+        }
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeByte(FORMAT_VERSION);
+        out.writeUTF(userID);
+        out.writeUTF(fullName != null ? fullName : "");
+        out.writeUTF(roleID != null ? roleID : "");
+        out.writeBoolean(staff);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        SessionCodec.checkVersion(in, FORMAT_VERSION, LoginPrincipal.class);
+        userID = in.readUTF();
+        fullName = in.readUTF();
+        roleID = in.readUTF();
+        staff = in.readBoolean();
+    }
+
+    @Override
+    public String toString() {
+        return "LoginPrincipal{" +
+                "userID='" + userID + '\'' +
+                ", roleID='" + roleID + '\'' +
+                '}';
+    }
+}
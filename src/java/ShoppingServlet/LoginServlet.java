@@ -1,7 +1,9 @@
 package ShoppingServlet;
 
+import DBUtils.EventLog;
 import DBUtils.User;
-import DBUtils.UserDAO;
+import DBUtils.Repositories;
+import DBUtils.UserRepository;
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
@@ -9,34 +11,43 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 import java.io.IOException;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Login Servlet - Enhanced for PizzaStore Shopping Website
  */
-@WebServlet(name = "LoginServlet", urlPatterns = {"/LoginServlet"})
+@WebServlet(name = "LoginServlet", urlPatterns = {"/LoginServlet"}, asyncSupported = true)
 public class LoginServlet extends HttpServlet {
     private static final Logger LOGGER = Logger.getLogger(LoginServlet.class.getName());
-    private UserDAO userDAO;
+    private static final EventLog EVENTS = EventLog.forClass(LoginServlet.class);
+    private UserRepository userRepository;
+    private RequestExecutor requestExecutor;
+    private PageTemplate loginPage;
+    private Map<String, ActionMetrics.Action> actionMetrics;
     
     @Override
     public void init() throws ServletException {
         super.init();
-        userDAO = new UserDAO();
+        userRepository = Repositories.users();
+        requestExecutor = RequestExecutor.getInstance();
+        loginPage = PageTemplate.load(getServletContext(), "/Login.html");
+        actionMetrics = ActionMetrics.getInstance().actions("LoginServlet",
+                "Login", "Register", "Logout", "LoginPage");
         LOGGER.info("LoginServlet initialized successfully");
     }
     
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
-        processRequest(request, response);
+        requestExecutor.dispatch(request, response, this::processRequest);
     }
     
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
-        processRequest(request, response);
+        requestExecutor.dispatch(request, response, this::processRequest);
     }
     
     protected void processRequest(HttpServletRequest request, HttpServletResponse response)
@@ -49,6 +60,10 @@ public class LoginServlet extends HttpServlet {
         
         String action = request.getParameter("action");
         
+        // Anything unrecognised just shows the login page
+        ActionMetrics.Action metrics = actionMetrics.getOrDefault(action, actionMetrics.get("LoginPage"));
+        long start = System.nanoTime();
+        boolean failed = false;
         try {
             if ("Login".equals(action)) {
                 handleLogin(request, response);
@@ -61,9 +76,16 @@ public class LoginServlet extends HttpServlet {
                 showLoginPage(request, response);
             }
         } catch (Exception e) {
+            failed = true;
             LOGGER.log(Level.SEVERE, "Error in LoginServlet", e);
+            if (response.isCommitted()) {
+                return;
+            }
+            response.resetBuffer();
             request.setAttribute("ERROR", "System error occurred. Please try again.");
             showLoginPage(request, response);
+        } finally {
+            metrics.record(start, failed || response.getStatus() >= HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
         }
     }
     
@@ -85,26 +107,27 @@ public class LoginServlet extends HttpServlet {
         password = password.trim();
         
         // Authenticate user
-        User user = userDAO.authenticateUser(userID, password);
+        User user = userRepository.authenticateUser(userID, password);
         
         if (user != null) {
             // Login successful
-            LOGGER.log(Level.INFO, "User logged in successfully: {0}", userID);
+            EVENTS.info("User logged in successfully: {0}", userID);
             
             // Create session
             HttpSession session = request.getSession(true);
-            user.clearSensitiveData(); // Remove password for security
-            session.setAttribute("LOGIN_USER", user);
+            // Only the slim principal goes into the session; it never carries the password
+            user.clearSensitiveData();
+            session.setAttribute(LoginPrincipal.SESSION_KEY, new LoginPrincipal(user));
             session.setAttribute("LOGIN_TIME", System.currentTimeMillis());
             session.setMaxInactiveInterval(30 * 60); // 30 minutes
             
             // Redirect based on user type
             if (user.isStaff()) {
                 // Staff/Admin goes to product management
-                response.sendRedirect("Shopping.html");
+                response.sendRedirect("ShoppingServlet");
             } else {
                 // Customers go to shopping page
-                response.sendRedirect("Shopping.html");
+                response.sendRedirect("ShoppingServlet");
             }
             
         } else {
@@ -140,7 +163,7 @@ public class LoginServlet extends HttpServlet {
         email = email.trim();
         
         // Check if user ID already exists
-        if (userDAO.userExists(userID)) {
+        if (userRepository.userExists(userID)) {
             request.setAttribute("ERROR", "User ID already exists. Please choose a different one.");
             preserveRegistrationInput(request, userID, fullName, email);
             showLoginPage(request, response);
@@ -150,8 +173,8 @@ public class LoginServlet extends HttpServlet {
         // Create new user (default role = "US" for customer)
         User newUser = new User(userID, fullName, "US", password);
         
-        if (userDAO.insertUser(newUser)) {
-            LOGGER.log(Level.INFO, "New user registered successfully: {0}", userID);
+        if (userRepository.insertUser(newUser)) {
+            EVENTS.info("New user registered successfully: {0}", userID);
             request.setAttribute("MESSAGE", "Registration successful! Please login with your credentials.");
             showLoginPage(request, response);
         } else {
@@ -166,9 +189,9 @@ public class LoginServlet extends HttpServlet {
         
         HttpSession session = request.getSession(false);
         if (session != null) {
-            User user = (User) session.getAttribute("LOGIN_USER");
-            if (user != null) {
-                LOGGER.log(Level.INFO, "User logged out: {0}", user.getUserID());
+            Object principal = session.getAttribute(LoginPrincipal.SESSION_KEY);
+            if (principal instanceof LoginPrincipal) {
+                EVENTS.info("User logged out: {0}", ((LoginPrincipal) principal).getUserID());
             }
             session.invalidate();
         }
@@ -179,7 +202,7 @@ public class LoginServlet extends HttpServlet {
     
     private void showLoginPage(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
-        request.getRequestDispatcher("Login.html").forward(request, response);
+        loginPage.render(request, response);
     }
     
     private boolean isValidLoginInput(String userID, String password) {
@@ -0,0 +1,366 @@
+package ShoppingServlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * CartStore backed by a memory-mapped file of fixed-size slots.
+ *
+ * The file is a small header followed by slotCount slots of slotBytes each.
+ * A slot holds the user ID and the cart in Cart's compact encoding:
+ *
+ *   byte  state        0 empty, 1 used, 2 deleted
+ *   byte  keyLength
+ *   short payloadLength
+ *   int   crc32        over key and payload; a torn write reads as no cart
+ *   byte[KEY_BYTES]    user ID (UTF-8)
+ *   byte[]             payload
+ *
+ * The slots are split evenly between lock stripes. A user ID hashes to one
+ * stripe and linear-probes only within that stripe's slots, so a single
+ * stripe lock covers every slot a lookup can touch and writers for
+ * different stripes never contend.
+ *
+ * Opening maps the file as it is: nothing is read or rebuilt at startup,
+ * and slots are only touched when a session without a cart asks for one.
+ * Writes go to the page cache and survive a JVM crash; the file is forced
+ * to disk on close. An OS file lock keeps a second process from opening
+ * the same file, so nodes that must share carts need a networked
+ * CartStore instead.
+ */
+final class MappedCartStore implements CartStore {
+    private static final Logger LOGGER = Logger.getLogger(MappedCartStore.class.getName());
+
+    private static final int MAGIC = 0x50534354; // "PSCT"
+    private static final int FILE_VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+
+    private static final byte EMPTY = 0;
+    private static final byte USED = 1;
+    private static final byte DELETED = 2;
+
+    private static final int KEY_BYTES = 64;
+    private static final int SLOT_HEADER_BYTES = 8 + KEY_BYTES;
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final FileLock fileLock;
+    private final MappedByteBuffer buffer;
+    private final int slotBytes;
+    private final int slotsPerStripe;
+    private final int stripeShift;
+    private final Object[] locks;
+    private volatile boolean closed;
+
+    MappedCartStore(File file, int slots, int slotBytes, int stripes) throws IOException {
+        if (stripes <= 0 || Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("cart.store.stripes must be a power of two: " + stripes);
+        }
+        if (slotBytes <= SLOT_HEADER_BYTES + 16) {
+            throw new IllegalArgumentException("cart.store.slotBytes too small: " + slotBytes);
+        }
+        this.file = file;
+        this.slotBytes = slotBytes;
+        this.slotsPerStripe = Math.max(1, (slots + stripes - 1) / stripes);
+        this.stripeShift = Integer.numberOfTrailingZeros(stripes);
+        this.locks = new Object[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new Object();
+        }
+
+        int slotCount = slotsPerStripe * stripes;
+        long size = HEADER_BYTES + (long) slotCount * slotBytes;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Cart store too large: " + size + " bytes");
+        }
+
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+
+        raf = new RandomAccessFile(file, "rw");
+        try {
+            channel = raf.getChannel();
+            try {
+                fileLock = channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                throw new IOException("Cart store " + file + " is already open in this JVM", e);
+            }
+            if (fileLock == null) {
+                throw new IOException("Cart store " + file + " is in use by another process");
+            }
+
+            boolean fresh = !headerMatches(slotCount);
+            if (fresh) {
+                if (raf.length() > 0) {
+                    LOGGER.log(Level.WARNING, "Cart store {0} has a different layout, starting empty", file);
+                }
+                // Truncating first zeroes every slot
+                raf.setLength(0);
+                raf.setLength(size);
+            }
+
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            if (fresh) {
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, FILE_VERSION);
+                buffer.putInt(8, slotCount);
+                buffer.putInt(12, slotBytes);
+            }
+        } catch (IOException | RuntimeException e) {
+            raf.close();
+            throw e;
+        }
+
+        LOGGER.log(Level.INFO, "Cart store opened: {0}, {1} slots of {2} bytes, {3} stripes",
+                new Object[]{file, slotCount, slotBytes, stripes});
+    }
+
+    private boolean headerMatches(int slotCount) throws IOException {
+        if (raf.length() != HEADER_BYTES + (long) slotCount * slotBytes) {
+            return false;
+        }
+        raf.seek(0);
+        return raf.readInt() == MAGIC && raf.readInt() == FILE_VERSION
+                && raf.readInt() == slotCount && raf.readInt() == slotBytes;
+    }
+
+    @Override
+    public Cart load(String userID) {
+        byte[] key = keyOf(userID);
+        if (key == null || closed) {
+            return null;
+        }
+
+        int hash = hash(userID);
+        byte[] payload;
+        synchronized (locks[stripeOf(hash)]) {
+            int slot = closed ? -1 : find(hash, key);
+            if (slot < 0) {
+                return null;
+            }
+            payload = readPayload(slot, key);
+        }
+
+        if (payload == null) {
+            LOGGER.log(Level.WARNING, "Discarding damaged saved cart for {0}", userID);
+            return null;
+        }
+        try {
+            Cart cart = new Cart();
+            cart.readFrom(new DataInputStream(new ByteArrayInputStream(payload)));
+            return cart;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not read saved cart for " + userID, e);
+            return null;
+        }
+    }
+
+    @Override
+    public void save(String userID, Cart cart) {
+        byte[] key = keyOf(userID);
+        if (key == null || closed) {
+            return;
+        }
+
+        byte[] payload = null;
+        if (!cart.isEmpty()) {
+            payload = encode(cart);
+            if (payload.length > slotBytes - SLOT_HEADER_BYTES) {
+                LOGGER.log(Level.WARNING, "Cart for {0} is too large to save ({1} bytes)",
+                        new Object[]{userID, payload.length});
+                payload = null;
+            }
+        }
+
+        int hash = hash(userID);
+        synchronized (locks[stripeOf(hash)]) {
+            if (closed) {
+                return;
+            }
+            int slot = find(hash, key);
+            if (payload == null) {
+                // Empty or unsaveable: make sure no stale cart comes back later
+                if (slot >= 0) {
+                    buffer.put(offsetOf(slot), DELETED);
+                }
+                return;
+            }
+            if (slot < 0) {
+                slot = findFree(hash);
+                if (slot < 0) {
+                    LOGGER.log(Level.WARNING, "Cart store stripe full, not saving cart for {0}", userID);
+                    return;
+                }
+            }
+            writeSlot(slot, key, payload);
+        }
+    }
+
+    /**
+     * Slot holding the key, or -1; caller holds the stripe lock
+     */
+    private int find(int hash, byte[] key) {
+        int base = stripeOf(hash) * slotsPerStripe;
+        int start = (hash >>> stripeShift) % slotsPerStripe;
+        for (int i = 0; i < slotsPerStripe; i++) {
+            int slot = base + (start + i) % slotsPerStripe;
+            int offset = offsetOf(slot);
+            byte state = buffer.get(offset);
+            if (state == EMPTY) {
+                return -1;
+            }
+            if (state == USED && keyEquals(offset, key)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * First empty or deleted slot on the key's probe path, or -1
+     */
+    private int findFree(int hash) {
+        int base = stripeOf(hash) * slotsPerStripe;
+        int start = (hash >>> stripeShift) % slotsPerStripe;
+        for (int i = 0; i < slotsPerStripe; i++) {
+            int slot = base + (start + i) % slotsPerStripe;
+            if (buffer.get(offsetOf(slot)) != USED) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private boolean keyEquals(int offset, byte[] key) {
+        if ((buffer.get(offset + 1) & 0xFF) != key.length) {
+            return false;
+        }
+        int keyOffset = offset + 8;
+        for (int i = 0; i < key.length; i++) {
+            if (buffer.get(keyOffset + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The slot's payload, or null if its checksum does not match
+     */
+    private byte[] readPayload(int slot, byte[] key) {
+        int offset = offsetOf(slot);
+        int length = buffer.getShort(offset + 2) & 0xFFFF;
+        if (length > slotBytes - SLOT_HEADER_BYTES) {
+            return null;
+        }
+        byte[] payload = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset + SLOT_HEADER_BYTES);
+        view.get(payload);
+
+        return buffer.getInt(offset + 4) == checksum(key, payload) ? payload : null;
+    }
+
+    /**
+     * Write key and payload, marking the slot used last; an update torn by a
+     * crash fails its checksum and reads as no cart
+     */
+    private void writeSlot(int slot, byte[] key, byte[] payload) {
+        int offset = offsetOf(slot);
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset + 8);
+        view.put(key);
+        view.position(offset + SLOT_HEADER_BYTES);
+        view.put(payload);
+        buffer.put(offset + 1, (byte) key.length);
+        buffer.putShort(offset + 2, (short) payload.length);
+        buffer.putInt(offset + 4, checksum(key, payload));
+        buffer.put(offset, USED);
+    }
+
+    private int offsetOf(int slot) {
+        return HEADER_BYTES + slot * slotBytes;
+    }
+
+    private int stripeOf(int hash) {
+        return hash & (locks.length - 1);
+    }
+
+    private static int hash(String userID) {
+        int h = userID.hashCode() * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & Integer.MAX_VALUE;
+    }
+
+    /**
+     * UTF-8 user ID, or null if it cannot be stored
+     */
+    private static byte[] keyOf(String userID) {
+        if (userID == null || userID.isEmpty()) {
+            return null;
+        }
+        byte[] key = userID.getBytes(StandardCharsets.UTF_8);
+        return key.length <= KEY_BYTES ? key : null;
+    }
+
+    private static byte[] encode(Cart cart) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try {
+            cart.writeTo(new DataOutputStream(bytes));
+        } catch (IOException e) {
+            // ByteArrayOutputStream does not throw
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static int checksum(byte[] key, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(key);
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        // Take every stripe so no write is half done when the file is forced
+        closeLocked(0);
+        LOGGER.log(Level.INFO, "Cart store closed: {0}", file);
+    }
+
+    private void closeLocked(int stripe) {
+        if (stripe < locks.length) {
+            synchronized (locks[stripe]) {
+                closeLocked(stripe + 1);
+            }
+            return;
+        }
+        closed = true;
+        try {
+            buffer.force();
+            fileLock.release();
+            raf.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Error closing cart store " + file, e);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package ShoppingServlet;
+
+import DBUtils.ConnectionPool;
+import DBUtils.DBConfig;
+import DBUtils.LatencyHistogram;
+import DBUtils.ProductCatalog;
+import DBUtils.ProductDAO;
+import DBUtils.QueryStats;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Metrics in the Prometheus text exposition format (version 0.0.4).
+ *
+ * Exports per-action latency histograms and error counts from
+ * ActionMetrics, the async executor's in-flight count, connection pool
+ * usage and wait times, how many catalog loads ran or were shared by
+ * callers that arrived while one was running, and per-statement JDBC
+ * timings from QueryStats.
+ * Latency buckets are read from LatencyHistogram's own buckets, so a
+ * bucket boundary is accurate to about 6%.
+ *
+ * Only clients listed in metrics.allowFrom (db.properties) are answered;
+ * an empty list allows anyone.
+ */
+@WebServlet(name = "MetricsServlet", urlPatterns = {"/metrics"})
+public class MetricsServlet extends HttpServlet {
+    private static final Logger LOGGER = Logger.getLogger(MetricsServlet.class.getName());
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    // Histogram bucket upper bounds, in seconds and in LatencyHistogram's microseconds
+    private static final String[] BUCKET_LABELS = {
+        "0.0005", "0.001", "0.0025", "0.005", "0.01", "0.025", "0.05", "0.1", "0.25", "0.5", "1", "2.5", "5", "10"
+    };
+    private static final long[] BUCKET_MICROS = {
+        500, 1000, 2500, 5000, 10000, 25000, 50000, 100000, 250000, 500000, 1000000, 2500000, 5000000, 10000000
+    };
+
+    private Set<String> allowFrom;
+
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        String allowed = DBConfig.load().get("metrics.allowFrom", "");
+        Set<String> addresses = new HashSet<>();
+        for (String address : allowed.split(",")) {
+            if (!address.trim().isEmpty()) {
+                addresses.add(address.trim());
+            }
+        }
+        allowFrom = Collections.unmodifiableSet(addresses);
+        LOGGER.log(Level.INFO, "MetricsServlet initialized, allowed clients: {0}",
+                allowFrom.isEmpty() ? "any" : allowFrom);
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        if (!allowFrom.isEmpty() && !allowFrom.contains(request.getRemoteAddr())) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+
+        StringBuilder out = new StringBuilder(16384);
+        writeActions(out);
+        writeExecutor(out);
+        writePool(out);
+        writeCatalog(out);
+        writeQueries(out);
+
+        byte[] body = out.toString().getBytes(StandardCharsets.UTF_8);
+        response.setContentType(CONTENT_TYPE);
+        response.setHeader("Cache-Control", "no-store");
+        response.setContentLength(body.length);
+        try (OutputStream stream = response.getOutputStream()) {
+            stream.write(body);
+        }
+    }
+
+    private static void writeActions(StringBuilder out) {
+        ActionMetrics metrics = ActionMetrics.getInstance();
+
+        header(out, "pizzastore_action_duration_seconds", "histogram",
+                "Time spent handling each servlet action");
+        for (ActionMetrics.Action action : metrics.getActions()) {
+            histogram(out, "pizzastore_action_duration_seconds", labels(action), action.getLatency());
+        }
+
+        header(out, "pizzastore_action_errors_total", "counter",
+                "Actions that threw or answered with a server error");
+        for (ActionMetrics.Action action : metrics.getActions()) {
+            sample(out, "pizzastore_action_errors_total", labels(action), action.getErrorCount());
+        }
+    }
+
+    private static void writeExecutor(StringBuilder out) {
+        header(out, "pizzastore_requests_in_flight", "gauge",
+                "Actions queued or running on the request executor");
+        sample(out, "pizzastore_requests_in_flight", "", RequestExecutor.getInstance().getInFlight());
+    }
+
+    private static void writePool(StringBuilder out) {
+        ConnectionPool pool = ConnectionPool.getInstanceIfStarted();
+        if (pool == null) {
+            return;
+        }
+        header(out, "pizzastore_db_pool_connections", "gauge", "Open database connections by state");
+        sample(out, "pizzastore_db_pool_connections", "{state=\"active\"}", pool.getActiveConnections());
+        sample(out, "pizzastore_db_pool_connections", "{state=\"idle\"}", pool.getIdleConnections());
+        header(out, "pizzastore_db_pool_max_connections", "gauge", "Connection pool size limit");
+        sample(out, "pizzastore_db_pool_max_connections", "", pool.getMaxSize());
+        header(out, "pizzastore_db_pool_waiting_threads", "gauge", "Threads waiting for a connection");
+        sample(out, "pizzastore_db_pool_waiting_threads", "", pool.getWaitingThreads());
+        header(out, "pizzastore_db_pool_connections_created_total", "counter", "Physical connections opened");
+        sample(out, "pizzastore_db_pool_connections_created_total", "", pool.getCreatedCount());
+        header(out, "pizzastore_db_pool_acquire_timeouts_total", "counter",
+                "Requests that gave up waiting for a connection");
+        sample(out, "pizzastore_db_pool_acquire_timeouts_total", "", pool.getAcquireTimeoutCount());
+        header(out, "pizzastore_db_pool_acquire_seconds", "histogram",
+                "Time taken to get a connection, including waiting");
+        histogram(out, "pizzastore_db_pool_acquire_seconds", "", pool.getAcquireTimeHistogram());
+    }
+
+    private static void writeCatalog(StringBuilder out) {
+        ProductCatalog catalog = ProductDAO.getCatalog();
+        header(out, "pizzastore_db_catalog_loads_total", "counter",
+                "Bulk catalog loads by whether they queried or waited for a running load");
+        sample(out, "pizzastore_db_catalog_loads_total", "{outcome=\"executed\"}", catalog.getLoadCount());
+        sample(out, "pizzastore_db_catalog_loads_total", "{outcome=\"collapsed\"}", catalog.getCoalescedLoadCount());
+    }
+
+    private static void writeQueries(StringBuilder out) {
+        List<QueryStats.Entry> entries = QueryStats.getInstance().getEntries();
+
+        header(out, "pizzastore_db_query_info", "gauge", "SQL fingerprint of each named statement");
+        for (QueryStats.Entry entry : entries) {
+            sample(out, "pizzastore_db_query_info", "{query=\"" + escape(entry.getName())
+                    + "\",sql=\"" + escape(entry.getFingerprint()) + "\"}", 1);
+        }
+
+        header(out, "pizzastore_db_query_seconds", "histogram",
+                "Statement time by phase: prepare, execute, and fetching rows");
+        for (QueryStats.Entry entry : entries) {
+            histogram(out, "pizzastore_db_query_seconds", labels(entry, "prepare"), entry.getPrepareTimes());
+            histogram(out, "pizzastore_db_query_seconds", labels(entry, "execute"), entry.getExecuteTimes());
+            histogram(out, "pizzastore_db_query_seconds", labels(entry, "fetch"), entry.getFetchTimes());
+        }
+
+        header(out, "pizzastore_db_query_rows_total", "counter", "Rows read or changed by each statement");
+        for (QueryStats.Entry entry : entries) {
+            sample(out, "pizzastore_db_query_rows_total", labels(entry), entry.getRowCount());
+        }
+        header(out, "pizzastore_db_query_errors_total", "counter", "Statement executions that failed");
+        for (QueryStats.Entry entry : entries) {
+            sample(out, "pizzastore_db_query_errors_total", labels(entry), entry.getErrorCount());
+        }
+        header(out, "pizzastore_db_slow_queries_total", "counter",
+                "Statement executions over jdbc.slowQueryMillis");
+        for (QueryStats.Entry entry : entries) {
+            sample(out, "pizzastore_db_slow_queries_total", labels(entry), entry.getSlowCount());
+        }
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, long value) {
+        out.append(name).append(labels).append(' ').append(value).append('\n');
+    }
+
+    /**
+     * Cumulative buckets, _sum and _count; labels is "" or "{a=\"b\",...}"
+     */
+    private static void histogram(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+        String prefix = labels.isEmpty() ? "{" : labels.substring(0, labels.length() - 1) + ",";
+        long count = histogram.getCount();
+        long seen = 0;
+        for (int i = 0; i < BUCKET_MICROS.length; i++) {
+            // Recording is lock-free; never let a bucket run behind the previous one
+            seen = Math.max(seen, histogram.getCountAtOrBelow(BUCKET_MICROS[i]));
+            out.append(name).append("_bucket").append(prefix)
+               .append("le=\"").append(BUCKET_LABELS[i]).append("\"} ").append(seen).append('\n');
+        }
+        count = Math.max(count, seen);
+        out.append(name).append("_bucket").append(prefix).append("le=\"+Inf\"} ").append(count).append('\n');
+        out.append(name).append("_sum").append(labels).append(' ')
+           .append(String.format(Locale.ROOT, "%.6f", histogram.getSumMicros() / 1e6)).append('\n');
+        out.append(name).append("_count").append(labels).append(' ').append(count).append('\n');
+    }
+
+    private static String labels(ActionMetrics.Action action) {
+        return "{servlet=\"" + escape(action.getServlet()) + "\",action=\"" + escape(action.getName()) + "\"}";
+    }
+
+    private static String labels(QueryStats.Entry entry) {
+        return "{query=\"" + escape(entry.getName()) + "\"}";
+    }
+
+    private static String labels(QueryStats.Entry entry, String phase) {
+        return "{query=\"" + escape(entry.getName()) + "\",phase=\"" + phase + "\"}";
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,519 @@
+package ShoppingServlet;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Server-side page template compiled once from an HTML file.
+ *
+ * Understands the JSTL-style markup our pages already use - ${...}
+ * expressions, c:if, c:choose/c:when/c:otherwise and c:forEach - and compiles
+ * it into a tree of literal text segments and TemplateExpression nodes.
+ * Rendering walks that tree and writes straight to the response Writer: no
+ * parsing, no reflection and no intermediate page buffer. Expression output
+ * is HTML-escaped. Everything up to and including &lt;/head&gt; is flushed
+ * before the body renders, so the browser can fetch CSS while the product
+ * loop runs. Script blocks are copied verbatim because they contain
+ * JavaScript template literals that look like expressions.
+ */
+final class PageTemplate {
+
+    private static final Pattern ATTRIBUTE = Pattern.compile("([\\w:-]+)\\s*=\\s*\"([^\"]*)\"");
+
+    private final String name;
+    private final Node[] nodes;
+
+    private PageTemplate(String name, Node[] nodes) {
+        this.name = name;
+        this.nodes = nodes;
+    }
+
+    /**
+     * Load and compile a template from the web application root
+     *
+     * @param path resource path such as "/Shopping.html"
+     */
+    static PageTemplate load(ServletContext context, String path) throws ServletException {
+        try (InputStream in = context.getResourceAsStream(path)) {
+            if (in == null) {
+                throw new ServletException("Template not found: " + path);
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                bytes.write(buffer, 0, n);
+            }
+            return compile(path, new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+        } catch (IOException | IllegalArgumentException e) {
+            throw new ServletException("Could not compile template " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Compile template source
+     *
+     * @throws IllegalArgumentException on unsupported or unbalanced markup
+     */
+    static PageTemplate compile(String name, String source) {
+        Compiler compiler = new Compiler(source);
+        List<Node> nodes = compiler.parse(null);
+        return new PageTemplate(name, nodes.toArray(new Node[0]));
+    }
+
+    /**
+     * Render the page for a request. Sets the HTML content type if the
+     * servlet has not already done so.
+     */
+    void render(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (response.getContentType() == null) {
+            response.setContentType("text/html;charset=UTF-8");
+        }
+        Writer out = response.getWriter();
+        Context context = new Context(request, response, out);
+        renderAll(nodes, context);
+        out.flush();
+    }
+
+    String getName() {
+        return name;
+    }
+
+    private static void renderAll(Node[] nodes, Context context) throws IOException {
+        for (Node node : nodes) {
+            node.render(context);
+        }
+    }
+
+    static void writeEscaped(Writer out, Object value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        String text = value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : value.toString();
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            String entity;
+            switch (text.charAt(i)) {
+                case '&':
+                    entity = "&amp;";
+                    break;
+                case '<':
+                    entity = "&lt;";
+                    break;
+                case '>':
+                    entity = "&gt;";
+                    break;
+                case '"':
+                    entity = "&#34;";
+                    break;
+                case '\'':
+                    entity = "&#39;";
+                    break;
+                default:
+                    continue;
+            }
+            out.write(text, start, i - start);
+            out.write(entity);
+            start = i + 1;
+        }
+        out.write(text, start, text.length() - start);
+    }
+
+    // Render state
+
+    /**
+     * Per-render scope: loop variables on a small stack, then request,
+     * session and application attributes
+     */
+    private static final class Context implements TemplateExpression.Scope {
+        final HttpServletRequest request;
+        final HttpServletResponse response;
+        final Writer out;
+        private String[] names = new String[4];
+        private Object[] values = new Object[4];
+        private int depth;
+
+        Context(HttpServletRequest request, HttpServletResponse response, Writer out) {
+            this.request = request;
+            this.response = response;
+            this.out = out;
+        }
+
+        void push(String name, Object value) {
+            if (depth == names.length) {
+                names = Arrays.copyOf(names, depth * 2);
+                values = Arrays.copyOf(values, depth * 2);
+            }
+            names[depth] = name;
+            values[depth] = value;
+            depth++;
+        }
+
+        void set(Object value) {
+            values[depth - 1] = value;
+        }
+
+        void pop() {
+            depth--;
+            values[depth] = null;
+        }
+
+        @Override
+        public Object resolve(String name) {
+            for (int i = depth - 1; i >= 0; i--) {
+                if (names[i].equals(name)) {
+                    return values[i];
+                }
+            }
+            Object value = request.getAttribute(name);
+            if (value != null) {
+                return value;
+            }
+            HttpSession session = request.getSession(false);
+            if (session != null) {
+                value = session.getAttribute(name);
+                if (value != null) {
+                    return value;
+                }
+            }
+            return request.getServletContext().getAttribute(name);
+        }
+
+        @Override
+        public Object resolveIn(String scope, String name) {
+            switch (scope) {
+                case "requestScope":
+                    return request.getAttribute(name);
+                case "sessionScope": {
+                    HttpSession session = request.getSession(false);
+                    return session != null ? session.getAttribute(name) : null;
+                }
+                default:
+                    return request.getServletContext().getAttribute(name);
+            }
+        }
+    }
+
+    // Nodes
+
+    private interface Node {
+        void render(Context context) throws IOException;
+    }
+
+    private static final class Text implements Node {
+        private final String text;
+
+        Text(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public void render(Context context) throws IOException {
+            context.out.write(text);
+        }
+    }
+
+    private static final class Output implements Node {
+        private final TemplateExpression expression;
+
+        Output(TemplateExpression expression) {
+            this.expression = expression;
+        }
+
+        @Override
+        public void render(Context context) throws IOException {
+            writeEscaped(context.out, expression.eval(context));
+        }
+    }
+
+    private static final class Flush implements Node {
+        @Override
+        public void render(Context context) throws IOException {
+            context.out.flush();
+            context.response.flushBuffer();
+        }
+    }
+
+    private static final class If implements Node {
+        private final TemplateExpression test;
+        private final Node[] body;
+
+        If(TemplateExpression test, Node[] body) {
+            this.test = test;
+            this.body = body;
+        }
+
+        @Override
+        public void render(Context context) throws IOException {
+            if (TemplateExpression.isTrue(test.eval(context))) {
+                renderAll(body, context);
+            }
+        }
+    }
+
+    private static final class Choose implements Node {
+        private final TemplateExpression[] tests;
+        private final Node[][] bodies;
+        private final Node[] otherwise;
+
+        Choose(TemplateExpression[] tests, Node[][] bodies, Node[] otherwise) {
+            this.tests = tests;
+            this.bodies = bodies;
+            this.otherwise = otherwise;
+        }
+
+        @Override
+        public void render(Context context) throws IOException {
+            for (int i = 0; i < tests.length; i++) {
+                if (TemplateExpression.isTrue(tests[i].eval(context))) {
+                    renderAll(bodies[i], context);
+                    return;
+                }
+            }
+            renderAll(otherwise, context);
+        }
+    }
+
+    private static final class ForEach implements Node {
+        private final String var;
+        private final TemplateExpression items;
+        private final Node[] body;
+
+        ForEach(String var, TemplateExpression items, Node[] body) {
+            this.var = var;
+            this.items = items;
+            this.body = body;
+        }
+
+        @Override
+        public void render(Context context) throws IOException {
+            Object collection = items.eval(context);
+            if (collection == null) {
+                return;
+            }
+            context.push(var, null);
+            try {
+                if (collection instanceof Iterable) {
+                    for (Object item : (Iterable<?>) collection) {
+                        context.set(item);
+                        renderAll(body, context);
+                    }
+                } else if (collection instanceof Object[]) {
+                    for (Object item : (Object[]) collection) {
+                        context.set(item);
+                        renderAll(body, context);
+                    }
+                }
+            } finally {
+                context.pop();
+            }
+        }
+    }
+
+    // Compiler
+
+    private static final class Compiler {
+        private final String source;
+        private int pos;
+
+        Compiler(String source) {
+            this.source = source;
+        }
+
+        /**
+         * Parse nodes until the given closing tag (consumed), or to the end
+         * of the source when endTag is null
+         */
+        List<Node> parse(String endTag) {
+            List<Node> nodes = new ArrayList<>();
+            StringBuilder text = new StringBuilder();
+
+            while (pos < source.length()) {
+                if (source.startsWith("${", pos)) {
+                    flushText(nodes, text);
+                    int end = findExpressionEnd(pos + 2);
+                    nodes.add(new Output(TemplateExpression.compile(source.substring(pos + 2, end))));
+                    pos = end + 1;
+                } else if (source.startsWith("<script", pos)) {
+                    int end = source.indexOf("</script>", pos);
+                    if (end < 0) {
+                        throw error("Unclosed <script>");
+                    }
+                    end += "</script>".length();
+                    text.append(source, pos, end);
+                    pos = end;
+                } else if (source.startsWith("</head>", pos)) {
+                    text.append("</head>");
+                    pos += "</head>".length();
+                    flushText(nodes, text);
+                    nodes.add(new Flush());
+                } else if (source.startsWith("</c:", pos)) {
+                    int close = source.indexOf('>', pos);
+                    String tag = source.substring(pos + 2, close).trim();
+                    if (!tag.equals(endTag)) {
+                        throw error("Unexpected </" + tag + ">");
+                    }
+                    pos = close + 1;
+                    flushText(nodes, text);
+                    return nodes;
+                } else if (source.startsWith("<c:", pos)) {
+                    flushText(nodes, text);
+                    nodes.add(parseTag());
+                } else {
+                    text.append(source.charAt(pos++));
+                }
+            }
+
+            if (endTag != null) {
+                throw error("Missing </" + endTag + ">");
+            }
+            flushText(nodes, text);
+            return nodes;
+        }
+
+        private Node parseTag() {
+            int close = findTagEnd(pos);
+            String tag = source.substring(pos + 1, close);
+            pos = close + 1;
+
+            String tagName = tag.split("\\s+", 2)[0];
+            switch (tagName) {
+                case "c:if":
+                    return new If(expressionAttribute(tag, "test"), toArray(parse("c:if")));
+                case "c:forEach": {
+                    String var = attribute(tag, "var");
+                    TemplateExpression items = expressionAttribute(tag, "items");
+                    return new ForEach(var, items, toArray(parse("c:forEach")));
+                }
+                case "c:choose":
+                    return parseChoose();
+                default:
+                    throw error("Unsupported tag <" + tagName + ">");
+            }
+        }
+
+        private Node parseChoose() {
+            List<TemplateExpression> tests = new ArrayList<>();
+            List<Node[]> bodies = new ArrayList<>();
+            Node[] otherwise = new Node[0];
+
+            while (true) {
+                skipWhitespace();
+                if (source.startsWith("</c:choose>", pos)) {
+                    pos += "</c:choose>".length();
+                    break;
+                }
+                if (source.startsWith("<c:when", pos)) {
+                    int close = findTagEnd(pos);
+                    String tag = source.substring(pos + 1, close);
+                    pos = close + 1;
+                    tests.add(expressionAttribute(tag, "test"));
+                    bodies.add(toArray(parse("c:when")));
+                } else if (source.startsWith("<c:otherwise>", pos)) {
+                    pos += "<c:otherwise>".length();
+                    otherwise = toArray(parse("c:otherwise"));
+                } else {
+                    throw error("Only c:when and c:otherwise may appear inside c:choose");
+                }
+            }
+
+            return new Choose(tests.toArray(new TemplateExpression[0]),
+                              bodies.toArray(new Node[0][]), otherwise);
+        }
+
+        private String attribute(String tag, String attribute) {
+            Matcher m = ATTRIBUTE.matcher(tag);
+            while (m.find()) {
+                if (m.group(1).equals(attribute)) {
+                    return m.group(2);
+                }
+            }
+            throw error("Missing " + attribute + " attribute in <" + tag + ">");
+        }
+
+        private TemplateExpression expressionAttribute(String tag, String attribute) {
+            String value = attribute(tag, attribute).trim();
+            if (!value.startsWith("${") || !value.endsWith("}")) {
+                throw error("Attribute " + attribute + " must be a ${...} expression in <" + tag + ">");
+            }
+            return TemplateExpression.compile(value.substring(2, value.length() - 1));
+        }
+
+        /**
+         * Index of the '}' closing an expression, skipping quoted strings
+         */
+        private int findExpressionEnd(int from) {
+            char quote = 0;
+            for (int i = from; i < source.length(); i++) {
+                char c = source.charAt(i);
+                if (quote != 0) {
+                    if (c == quote) {
+                        quote = 0;
+                    }
+                } else if (c == '\'' || c == '"') {
+                    quote = c;
+                } else if (c == '}') {
+                    return i;
+                }
+            }
+            throw error("Unclosed ${");
+        }
+
+        /**
+         * Index of the '>' closing a tag, skipping quoted attribute values
+         */
+        private int findTagEnd(int from) {
+            boolean quoted = false;
+            for (int i = from; i < source.length(); i++) {
+                char c = source.charAt(i);
+                if (c == '"') {
+                    quoted = !quoted;
+                } else if (c == '>' && !quoted) {
+                    return i;
+                }
+            }
+            throw error("Unclosed tag");
+        }
+
+        private void skipWhitespace() {
+            while (pos < source.length() && Character.isWhitespace(source.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private static void flushText(List<Node> nodes, StringBuilder text) {
+            if (text.length() > 0) {
+                nodes.add(new Text(text.toString()));
+                text.setLength(0);
+            }
+        }
+
+        private static Node[] toArray(List<Node> nodes) {
+            return nodes.toArray(new Node[0]);
+        }
+
+        private IllegalArgumentException error(String message) {
+            int line = 1;
+            for (int i = 0; i < pos && i < source.length(); i++) {
+                if (source.charAt(i) == '\n') {
+                    line++;
+                }
+            }
+            return new IllegalArgumentException(message + " at line " + line);
+        }
+    }
+}
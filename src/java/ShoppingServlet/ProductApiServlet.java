@@ -0,0 +1,318 @@
+package ShoppingServlet;
+
+import DBUtils.Money;
+import DBUtils.Product;
+import DBUtils.ProductRepository;
+import DBUtils.ProductRowMapper;
+import DBUtils.ProductRowHandler;
+import DBUtils.Repositories;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Product API Servlet - streaming JSON catalog for mobile and kiosk clients.
+ *
+ * Supports the same read actions as ShoppingServlet (LoadAll, Search,
+ * SearchByPrice, SearchByCategory). Rows are written to the response as the
+ * JDBC ResultSet produces them, without building Product objects or lists
+ * (with the in-memory repository, straight from its Product objects),
+ * and the response is flushed after the first row so clients start receiving
+ * data immediately; the rest goes out with chunked transfer encoding.
+ *
+ * Response: {"action":"...","products":[{...},...],"count":N}
+ */
+@WebServlet(name = "ProductApiServlet", urlPatterns = {"/api/products"})
+public class ProductApiServlet extends HttpServlet {
+    private static final Logger LOGGER = Logger.getLogger(ProductApiServlet.class.getName());
+    private static final int BUFFER_SIZE = 8192;
+    private ProductRepository productRepository;
+    private Map<String, ActionMetrics.Action> actionMetrics;
+
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        productRepository = Repositories.products();
+        actionMetrics = ActionMetrics.getInstance().actions("ProductApiServlet",
+                "Search", "SearchByPrice", "SearchByCategory", "LoadAll", "Unsupported");
+        LOGGER.info("ProductApiServlet initialized successfully");
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        processRequest(request, response);
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        processRequest(request, response);
+    }
+
+    protected void processRequest(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+
+        request.setCharacterEncoding("UTF-8");
+        response.setCharacterEncoding("UTF-8");
+        response.setContentType("application/json;charset=UTF-8");
+        response.setBufferSize(BUFFER_SIZE);
+
+        LoginPrincipal currentUser = getCurrentUser(request);
+        if (currentUser == null) {
+            sendError(response, HttpServletResponse.SC_UNAUTHORIZED, "Login required");
+            return;
+        }
+
+        String action = request.getParameter("action");
+        action = action != null ? action : "LoadAll";
+
+        Writer out = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8), BUFFER_SIZE);
+        JsonRowWriter rows = new JsonRowWriter(out, response);
+
+        ActionMetrics.Action metrics = actionMetrics.getOrDefault(action, actionMetrics.get("Unsupported"));
+        long start = System.nanoTime();
+        boolean failed = false;
+        try {
+            int count;
+            switch (action) {
+                case "Search": {
+                    String searchName = request.getParameter("searchName");
+                    if (searchName == null || searchName.trim().isEmpty()) {
+                        sendError(response, HttpServletResponse.SC_BAD_REQUEST, "Please enter a product name to search");
+                        return;
+                    }
+                    rows.begin(action);
+                    count = productRepository.streamProductsByName(searchName.trim(), rows);
+                    break;
+                }
+                case "SearchByPrice": {
+                    BigDecimal minPrice;
+                    BigDecimal maxPrice;
+                    try {
+                        minPrice = new BigDecimal(request.getParameter("minPrice").trim());
+                        maxPrice = new BigDecimal(request.getParameter("maxPrice").trim());
+                    } catch (NullPointerException | NumberFormatException e) {
+                        sendError(response, HttpServletResponse.SC_BAD_REQUEST, "Invalid price format. Please enter valid numbers.");
+                        return;
+                    }
+                    if (minPrice.compareTo(BigDecimal.ZERO) < 0 || maxPrice.compareTo(minPrice) < 0) {
+                        sendError(response, HttpServletResponse.SC_BAD_REQUEST, "Invalid price range. Please check your values.");
+                        return;
+                    }
+                    rows.begin(action);
+                    count = productRepository.streamProductsByPrice(minPrice, maxPrice, rows);
+                    break;
+                }
+                case "SearchByCategory": {
+                    int categoryID;
+                    try {
+                        categoryID = Integer.parseInt(request.getParameter("categoryID").trim());
+                    } catch (NullPointerException | NumberFormatException e) {
+                        sendError(response, HttpServletResponse.SC_BAD_REQUEST, "Invalid category selection");
+                        return;
+                    }
+                    rows.begin(action);
+                    count = productRepository.streamProductsByCategory(categoryID, rows);
+                    break;
+                }
+                case "LoadAll":
+                    // Staff see every product; customers only available ones
+                    rows.begin(action);
+                    count = productRepository.streamProducts(!currentUser.isStaff(), rows);
+                    break;
+                default:
+                    sendError(response, HttpServletResponse.SC_BAD_REQUEST, "Unsupported action: " + action);
+                    return;
+            }
+
+            out.write("],\"count\":");
+            out.write(Integer.toString(count));
+            out.write('}');
+            out.flush();
+
+        } catch (SQLException e) {
+            failed = true;
+            LOGGER.log(Level.SEVERE, "Error streaming products for action: " + action, e);
+            if (!response.isCommitted()) {
+                response.reset();
+                sendError(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "System error occurred. Please try again.");
+            } else {
+                // Headers are gone; close the document so clients can tell it was cut short
+                out.write("],\"error\":\"System error occurred\"}");
+                out.flush();
+            }
+        } catch (UncheckedIOException e) {
+            LOGGER.log(Level.FINE, "Client stopped reading product stream", e);
+        } finally {
+            metrics.record(start, failed);
+        }
+    }
+
+    private void sendError(HttpServletResponse response, int status, String message) throws IOException {
+        response.setStatus(status);
+        response.setContentType("application/json;charset=UTF-8");
+        Writer out = new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8);
+        out.write("{\"error\":");
+        writeString(out, message);
+        out.write('}');
+        out.flush();
+    }
+
+    private LoginPrincipal getCurrentUser(HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        if (session != null) {
+            Object principal = session.getAttribute(LoginPrincipal.SESSION_KEY);
+            return principal instanceof LoginPrincipal ? (LoginPrincipal) principal : null;
+        }
+        return null;
+    }
+
+    /**
+     * Write a JSON string literal, escaping as required
+     */
+    static void writeString(Writer out, String value) throws IOException {
+        if (value == null) {
+            out.write("null");
+            return;
+        }
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.write("\\\"");
+                    break;
+                case '\\':
+                    out.write("\\\\");
+                    break;
+                case '\n':
+                    out.write("\\n");
+                    break;
+                case '\r':
+                    out.write("\\r");
+                    break;
+                case '\t':
+                    out.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                        out.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.write(c);
+                    }
+            }
+        }
+        out.write('"');
+    }
+
+    /**
+     * Writes each ResultSet row as a JSON object, flushing after the first
+     */
+    private static final class JsonRowWriter implements ProductRowHandler {
+        private final Writer out;
+        private final HttpServletResponse response;
+        private int rows;
+
+        JsonRowWriter(Writer out, HttpServletResponse response) {
+            this.out = out;
+            this.response = response;
+        }
+
+        void begin(String action) throws IOException {
+            out.write("{\"action\":");
+            writeString(out, action);
+            out.write(",\"products\":[");
+        }
+
+        @Override
+        public void handleRow(ResultSet rs) throws SQLException {
+            // Read in select-list order, by position
+            int productID = rs.getInt(ProductRowMapper.PRODUCT_ID);
+            String productName = rs.getString(ProductRowMapper.PRODUCT_NAME);
+            int supplierID = rs.getInt(ProductRowMapper.SUPPLIER_ID);
+            int categoryID = rs.getInt(ProductRowMapper.CATEGORY_ID);
+            String quantityPerUnit = rs.getString(ProductRowMapper.QUANTITY_PER_UNIT);
+            String unitPrice = rs.getString(ProductRowMapper.UNIT_PRICE);
+            int unitsInStock = rs.getInt(ProductRowMapper.UNITS_IN_STOCK);
+            boolean discontinued = rs.getBoolean(ProductRowMapper.DISCONTINUED);
+            String productImage = rs.getString(ProductRowMapper.PRODUCT_IMAGE);
+            String categoryName = rs.getString(ProductRowMapper.CATEGORY_NAME);
+            String supplierName = rs.getString(ProductRowMapper.SUPPLIER_NAME);
+
+            write(productID, productName, supplierID, categoryID, quantityPerUnit, unitPrice,
+                  unitsInStock, discontinued, productImage, categoryName, supplierName);
+        }
+
+        @Override
+        public void handleProduct(Product product) {
+            write(product.getProductID(), product.getProductName(), product.getSupplierID(),
+                  product.getCategoryID(), product.getQuantityPerUnit(),
+                  Money.toBigDecimal(product.getUnitPriceCents()).toPlainString(),
+                  product.getUnitsInStock(), product.isDiscontinued(), product.getProductImage(),
+                  product.getCategoryName(), product.getSupplierName());
+        }
+
+        private void write(int productID, String productName, int supplierID, int categoryID,
+                           String quantityPerUnit, String unitPrice, int unitsInStock, boolean discontinued,
+                           String productImage, String categoryName, String supplierName) {
+            try {
+                if (rows > 0) {
+                    out.write(',');
+                }
+
+                out.write("{\"productID\":");
+                out.write(Integer.toString(productID));
+                out.write(",\"productName\":");
+                writeString(out, trim(productName));
+                out.write(",\"supplierID\":");
+                out.write(Integer.toString(supplierID));
+                out.write(",\"categoryID\":");
+                out.write(Integer.toString(categoryID));
+                out.write(",\"quantityPerUnit\":");
+                writeString(out, trim(quantityPerUnit));
+                out.write(",\"unitPrice\":");
+                out.write(unitPrice != null ? unitPrice.trim() : "0");
+                out.write(",\"unitsInStock\":");
+                out.write(Integer.toString(unitsInStock));
+                out.write(",\"discontinued\":");
+                out.write(discontinued ? "true" : "false");
+                out.write(",\"available\":");
+                out.write(!discontinued && unitsInStock > 0 ? "true" : "false");
+                out.write(",\"productImage\":");
+                writeString(out, trim(productImage));
+                out.write(",\"categoryName\":");
+                writeString(out, trim(categoryName));
+                out.write(",\"supplierName\":");
+                writeString(out, trim(supplierName));
+                out.write('}');
+
+                if (++rows == 1) {
+                    out.flush();
+                    response.flushBuffer();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private static String trim(String value) {
+            return value != null ? value.trim() : null;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package ShoppingServlet;
+
+import DBUtils.DBConfig;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs servlet actions off the container's worker threads.
+ *
+ * A servlet calls dispatch() from doGet/doPost; the request is put into
+ * async mode and the action (which blocks on JDBC) runs on a dedicated
+ * executor, so a slow database no longer ties up the connector's thread
+ * pool. On JDK 21+ the executor starts one virtual thread per request;
+ * on older JVMs it is a bounded platform thread pool that answers 503 when
+ * its queue is full. Concurrent database work is still capped by
+ * ConnectionPool.
+ *
+ * Settings (db.properties): async.enabled, async.virtualThreads,
+ * async.poolSize, async.queueCapacity, async.timeoutMillis.
+ */
+public final class RequestExecutor {
+    private static final Logger LOGGER = Logger.getLogger(RequestExecutor.class.getName());
+
+    private static volatile RequestExecutor instance;
+
+    private final ExecutorService executor;
+    private final boolean enabled;
+    private final boolean virtualThreads;
+    private final long timeoutMillis;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * A servlet action that may run on a worker thread
+     */
+    public interface Action {
+        void handle(HttpServletRequest request, HttpServletResponse response)
+                throws ServletException, IOException;
+    }
+
+    public RequestExecutor(DBConfig config) {
+        this.enabled = Boolean.parseBoolean(config.get("async.enabled", "true"));
+        this.timeoutMillis = config.getLong("async.timeoutMillis", 30000);
+
+        ExecutorService virtual = null;
+        if (Boolean.parseBoolean(config.get("async.virtualThreads", "true"))) {
+            virtual = newVirtualThreadExecutor();
+        }
+        this.virtualThreads = virtual != null;
+
+        if (virtual != null) {
+            this.executor = virtual;
+        } else {
+            int poolSize = Math.max(1, config.getInt("async.poolSize", 32));
+            int queueCapacity = Math.max(1, config.getInt("async.queueCapacity", 256));
+            AtomicInteger threadNumber = new AtomicInteger();
+            this.executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), r -> {
+                        Thread thread = new Thread(r, "RequestExecutor-" + threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+
+        LOGGER.log(Level.INFO, "RequestExecutor started: enabled={0}, virtualThreads={1}",
+                new Object[]{enabled, virtualThreads});
+    }
+
+    public static RequestExecutor getInstance() {
+        RequestExecutor executor = instance;
+        if (executor == null) {
+            synchronized (RequestExecutor.class) {
+                executor = instance;
+                if (executor == null) {
+                    executor = new RequestExecutor(DBConfig.load());
+                    instance = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Stop the shared executor, letting running actions finish briefly
+     */
+    public static void shutdownInstance() {
+        RequestExecutor executor;
+        synchronized (RequestExecutor.class) {
+            executor = instance;
+            instance = null;
+        }
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Run an action asynchronously when the request allows it, otherwise
+     * inline on the calling thread
+     */
+    public void dispatch(HttpServletRequest request, HttpServletResponse response, Action action)
+            throws ServletException, IOException {
+
+        if (!enabled || !request.isAsyncSupported() || executor.isShutdown()) {
+            action.handle(request, response);
+            return;
+        }
+
+        AsyncContext async = request.startAsync(request, response);
+        async.setTimeout(timeoutMillis);
+        RequestGuard guard = new RequestGuard(request, response);
+        async.addListener(new TimeoutListener(guard));
+        String uri = request.getRequestURI();
+
+        try {
+            inFlight.incrementAndGet();
+            executor.execute(() -> run(async, action, guard, uri));
+        } catch (RejectedExecutionException e) {
+            inFlight.decrementAndGet();
+            LOGGER.log(Level.WARNING, "Request executor saturated, rejecting {0}", uri);
+            guard.close(() -> {
+                ((HttpServletResponse) async.getResponse()).sendError(
+                        HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Server busy. Please try again.");
+                async.complete();
+            });
+        }
+    }
+
+    /**
+     * Run the action on the guard's request and response, so that once a
+     * timeout has completed the request, whatever the action still does to
+     * them fails rather than reaching objects the container has recycled
+     * for another request
+     */
+    private void run(AsyncContext async, Action action, RequestGuard guard, String uri) {
+        HttpServletRequest request = guard.getRequest();
+        HttpServletResponse response = guard.getResponse();
+        try {
+            action.handle(request, response);
+        } catch (CancellationException e) {
+            // Whatever the action had left to do, session and cart writes included, did not happen
+            LOGGER.log(Level.WARNING, "Action for {0} outlived its request and was abandoned", uri);
+        } catch (Exception e) {
+            if (guard.isClosed()) {
+                LOGGER.log(Level.WARNING, "Action for " + uri + " failed after its request completed", e);
+            } else {
+                LOGGER.log(Level.SEVERE, "Error in async request " + uri, e);
+                if (!response.isCommitted()) {
+                    try {
+                        response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                    } catch (IOException | IllegalStateException ignored) {
+                        // Client has gone away
+                    }
+                }
+            }
+        } finally {
+            inFlight.decrementAndGet();
+            // The timeout listener may already have completed the request
+            guard.close(async::complete);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Actions queued or running right now
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        LOGGER.info("RequestExecutor shut down");
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor() when running on JDK 21+,
+     * looked up at runtime so the default (Java 8) build still compiles
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) MethodHandles.publicLookup()
+                    .findStatic(java.util.concurrent.Executors.class, "newVirtualThreadPerTaskExecutor",
+                                MethodType.methodType(ExecutorService.class))
+                    .invoke();
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        } catch (Throwable e) {
+            LOGGER.log(Level.WARNING, "Virtual threads unavailable, using platform threads", e);
+            return null;
+        }
+    }
+
+    /**
+     * Answers 503 when an action overruns async.timeoutMillis. The guard is
+     * closed first, so the action can no longer reach the response.
+     */
+    private static final class TimeoutListener implements AsyncListener {
+        private final RequestGuard guard;
+
+        TimeoutListener(RequestGuard guard) {
+            this.guard = guard;
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) throws IOException {
+            guard.close(() -> {
+                HttpServletResponse response = (HttpServletResponse) event.getAsyncContext().getResponse();
+                if (!response.isCommitted()) {
+                    response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Request timed out. Please try again.");
+                }
+                event.getAsyncContext().complete();
+            });
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            // The container completes the request itself
+            guard.close(() -> { });
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
@@ -0,0 +1,424 @@
+package ShoppingServlet;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.lang.reflect.Proxy;
+import java.util.Enumeration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import javax.servlet.http.HttpSession;
+
+/**
+ * The request and response an asynchronous action sees, cut off from the
+ * container's objects once the exchange is closed.
+ *
+ * RequestExecutor closes the exchange when it completes the AsyncContext,
+ * whether the action finished or timed out. After that the container
+ * recycles its request and response for other requests, so an action that
+ * overran its timeout must not touch them. The calls the actions make
+ * check a closed flag first and then go straight to the container's
+ * objects, with no lock held, so closing never waits for a write to a
+ * slow client. Once closed they throw CancellationException, which stops
+ * the action; RequestExecutor logs what it abandoned. Everything else
+ * reaches a stand-in that throws the same. A call already under way when
+ * the exchange closes still finishes on the container's objects.
+ *
+ * Sessions outlive the request, so a session the action already holds
+ * stays usable; asking the request for it after closing fails like any
+ * other call.
+ */
+final class RequestGuard {
+
+    /**
+     * Work to run once, when the exchange closes
+     */
+    interface Last<X extends Exception> {
+        void run() throws X;
+    }
+
+    private static final HttpServletRequest CLOSED_REQUEST = closed(HttpServletRequest.class);
+    private static final HttpServletResponse CLOSED_RESPONSE = closed(HttpServletResponse.class);
+
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final GuardedRequest request;
+    private final GuardedResponse response;
+
+    RequestGuard(HttpServletRequest request, HttpServletResponse response) {
+        this.request = new GuardedRequest(request);
+        this.response = new GuardedResponse(response);
+    }
+
+    HttpServletRequest getRequest() {
+        return request;
+    }
+
+    HttpServletResponse getResponse() {
+        return response;
+    }
+
+    /**
+     * Close the exchange, then run last (typically completing the
+     * AsyncContext)
+     *
+     * @return false if it was already closed and last did not run
+     */
+    <X extends Exception> boolean close(Last<X> last) throws X {
+        if (!closed.compareAndSet(false, true)) {
+            return false;
+        }
+        request.setRequest(CLOSED_REQUEST);
+        response.setResponse(CLOSED_RESPONSE);
+        last.run();
+        return true;
+    }
+
+    boolean isClosed() {
+        return closed.get();
+    }
+
+    private void checkOpen() {
+        if (closed.get()) {
+            throw new CancellationException("Request already completed");
+        }
+    }
+
+    /**
+     * A request or response whose every method throws CancellationException
+     */
+    private static <T> T closed(Class<T> type) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    throw new CancellationException("Request already completed");
+                }));
+    }
+
+    private final class GuardedRequest extends HttpServletRequestWrapper {
+
+        GuardedRequest(HttpServletRequest request) {
+            super(request);
+        }
+
+        @Override
+        public String getParameter(String name) {
+            checkOpen();
+            return super.getParameter(name);
+        }
+
+        @Override
+        public Object getAttribute(String name) {
+            checkOpen();
+            return super.getAttribute(name);
+        }
+
+        @Override
+        public void setAttribute(String name, Object value) {
+            checkOpen();
+            super.setAttribute(name, value);
+        }
+
+        @Override
+        public void removeAttribute(String name) {
+            checkOpen();
+            super.removeAttribute(name);
+        }
+
+        @Override
+        public void setCharacterEncoding(String encoding) throws UnsupportedEncodingException {
+            checkOpen();
+            super.setCharacterEncoding(encoding);
+        }
+
+        @Override
+        public String getMethod() {
+            checkOpen();
+            return super.getMethod();
+        }
+
+        @Override
+        public String getRequestURI() {
+            checkOpen();
+            return super.getRequestURI();
+        }
+
+        @Override
+        public String getRemoteAddr() {
+            checkOpen();
+            return super.getRemoteAddr();
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            checkOpen();
+            return super.getHeaders(name);
+        }
+
+        @Override
+        public long getDateHeader(String name) {
+            checkOpen();
+            return super.getDateHeader(name);
+        }
+
+        @Override
+        public HttpSession getSession() {
+            checkOpen();
+            return super.getSession();
+        }
+
+        @Override
+        public HttpSession getSession(boolean create) {
+            checkOpen();
+            return super.getSession(create);
+        }
+
+        @Override
+        public String getRequestedSessionId() {
+            checkOpen();
+            return super.getRequestedSessionId();
+        }
+
+        @Override
+        public boolean isRequestedSessionIdValid() {
+            checkOpen();
+            return super.isRequestedSessionIdValid();
+        }
+
+        @Override
+        public ServletContext getServletContext() {
+            checkOpen();
+            return super.getServletContext();
+        }
+    }
+
+    private final class GuardedResponse extends HttpServletResponseWrapper {
+        private ServletOutputStream outputStream;
+        private PrintWriter writer;
+
+        GuardedResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public void setStatus(int status) {
+            checkOpen();
+            super.setStatus(status);
+        }
+
+        @Override
+        public int getStatus() {
+            checkOpen();
+            return super.getStatus();
+        }
+
+        @Override
+        public void setContentType(String type) {
+            checkOpen();
+            super.setContentType(type);
+        }
+
+        @Override
+        public String getContentType() {
+            checkOpen();
+            return super.getContentType();
+        }
+
+        @Override
+        public void setCharacterEncoding(String encoding) {
+            checkOpen();
+            super.setCharacterEncoding(encoding);
+        }
+
+        @Override
+        public void setContentLength(int length) {
+            checkOpen();
+            super.setContentLength(length);
+        }
+
+        @Override
+        public void setBufferSize(int size) {
+            checkOpen();
+            super.setBufferSize(size);
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            checkOpen();
+            super.setHeader(name, value);
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            checkOpen();
+            super.addHeader(name, value);
+        }
+
+        @Override
+        public void setDateHeader(String name, long date) {
+            checkOpen();
+            super.setDateHeader(name, date);
+        }
+
+        @Override
+        public boolean isCommitted() {
+            checkOpen();
+            return super.isCommitted();
+        }
+
+        @Override
+        public void reset() {
+            checkOpen();
+            super.reset();
+        }
+
+        @Override
+        public void resetBuffer() {
+            checkOpen();
+            super.resetBuffer();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            checkOpen();
+            super.flushBuffer();
+        }
+
+        @Override
+        public String encodeRedirectURL(String url) {
+            checkOpen();
+            return super.encodeRedirectURL(url);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            checkOpen();
+            super.sendRedirect(location);
+        }
+
+        @Override
+        public void sendError(int status, String message) throws IOException {
+            checkOpen();
+            super.sendError(status, message);
+        }
+
+        @Override
+        public void sendError(int status) throws IOException {
+            checkOpen();
+            super.sendError(status);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            checkOpen();
+            if (outputStream == null) {
+                outputStream = new GuardedOutputStream(super.getOutputStream());
+            }
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            checkOpen();
+            if (writer == null) {
+                writer = new PrintWriter(new GuardedWriter(super.getWriter()));
+            }
+            return writer;
+        }
+    }
+
+    /**
+     * The container's output stream, until the exchange closes
+     */
+    private final class GuardedOutputStream extends ServletOutputStream {
+        private final ServletOutputStream out;
+
+        GuardedOutputStream(ServletOutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            checkOpen();
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            checkOpen();
+            out.write(bytes, offset, length);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            checkOpen();
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            checkOpen();
+            out.close();
+        }
+
+        @Override
+        public boolean isReady() {
+            checkOpen();
+            return out.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener listener) {
+            checkOpen();
+            out.setWriteListener(listener);
+        }
+    }
+
+    /**
+     * The container's writer, until the exchange closes; wrapped in a
+     * PrintWriter, which passes CancellationException on
+     */
+    private final class GuardedWriter extends Writer {
+        private final Writer out;
+
+        GuardedWriter(Writer out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            checkOpen();
+            out.write(c);
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) throws IOException {
+            checkOpen();
+            out.write(chars, offset, length);
+        }
+
+        @Override
+        public void write(String text, int offset, int length) throws IOException {
+            checkOpen();
+            out.write(text, offset, length);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            checkOpen();
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            checkOpen();
+            out.close();
+        }
+    }
+}
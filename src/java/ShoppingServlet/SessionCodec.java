@@ -0,0 +1,75 @@
+package ShoppingServlet;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+
+/**
+ * Variable-length integer encoding for the Externalizable session
+ * attributes. Values are written seven bits per byte, low bits first, with
+ * the high bit set on every byte but the last, so the small IDs and
+ * quantities a cart holds take one or two bytes instead of four or eight.
+ */
+final class SessionCodec {
+
+    private SessionCodec() {
+    }
+
+    /**
+     * Write an int as an unsigned varint (1-5 bytes)
+     */
+    static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new InvalidObjectException("Malformed varint");
+    }
+
+    /**
+     * Write a long as an unsigned varint (1-10 bytes)
+     */
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new InvalidObjectException("Malformed varlong");
+    }
+
+    /**
+     * Check the leading format byte of an encoded attribute
+     */
+    static void checkVersion(DataInput in, int expected, Class<?> type) throws IOException {
+        int version = in.readUnsignedByte();
+        if (version != expected) {
+            throw new InvalidObjectException("Unsupported " + type.getSimpleName() +
+                    " session format " + version);
+        }
+    }
+}
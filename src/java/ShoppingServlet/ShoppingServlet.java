@@ -1,8 +1,15 @@
 package ShoppingServlet;
 
+import DBUtils.CatalogSnapshot;
+import DBUtils.EventLog;
+import DBUtils.Money;
+import DBUtils.OrderDAO;
+import DBUtils.OrderLine;
+import DBUtils.OrderResult;
 import DBUtils.Product;
-import DBUtils.ProductDAO;
-import DBUtils.User;
+import DBUtils.ProductRepository;
+import DBUtils.ProductPage;
+import DBUtils.Repositories;
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
@@ -11,36 +18,66 @@ import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.net.URLEncoder;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Shopping Servlet - Main controller for product shopping operations
  */
-@WebServlet(name = "ShoppingServlet", urlPatterns = {"/ShoppingServlet"})
+@WebServlet(name = "ShoppingServlet", urlPatterns = {"/ShoppingServlet"}, asyncSupported = true)
 public class ShoppingServlet extends HttpServlet {
     private static final Logger LOGGER = Logger.getLogger(ShoppingServlet.class.getName());
-    private ProductDAO productDAO;
+    private static final EventLog EVENTS = EventLog.forClass(ShoppingServlet.class);
+    private static final EventLog FREQUENT_EVENTS = EVENTS.sampled();
+    
+    // Where changes redirect to, and the session keys their outcome waits under
+    private static final String LISTING_URL = "ShoppingServlet?action=LoadAll";
+    private static final String CART_URL = "ShoppingServlet?action=ViewCart";
+    private static final String FLASH_MESSAGE = "FLASH_MESSAGE";
+    private static final String FLASH_ERROR = "FLASH_ERROR";
+    // Request attribute holding the page's ConditionalGet validators
+    private static final String VALIDATORS = "CATALOG_VALIDATORS";
+    
+    private ProductRepository productRepository;
+    private OrderDAO orderDAO;
+    private RequestExecutor requestExecutor;
+    private CartStore cartStore;
+    private PageTemplate shoppingPage;
+    private PageTemplate accessDeniedPage;
+    private Map<String, ActionMetrics.Action> actionMetrics;
+    // Part of every catalog page's validators, so a redeploy invalidates them
+    private long deployedAt;
     
     @Override
     public void init() throws ServletException {
         super.init();
-        productDAO = new ProductDAO();
+        productRepository = Repositories.products();
+        orderDAO = new OrderDAO();
+        requestExecutor = RequestExecutor.getInstance();
+        cartStore = CartStore.getInstance();
+        shoppingPage = PageTemplate.load(getServletContext(), "/Shopping.html");
+        accessDeniedPage = PageTemplate.load(getServletContext(), "/Invalid.html");
+        deployedAt = System.currentTimeMillis();
+        actionMetrics = ActionMetrics.getInstance().actions("ShoppingServlet", "Search", "SearchByPrice",
+                "SearchByCategory", "LoadAll", "ViewDetails", "AddToCart", "ViewCart", "Checkout");
         LOGGER.info("ShoppingServlet initialized successfully");
     }
     
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
-        processRequest(request, response);
+        requestExecutor.dispatch(request, response, this::processRequest);
     }
     
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
-        processRequest(request, response);
+        requestExecutor.dispatch(request, response, this::processRequest);
     }
     
     protected void processRequest(HttpServletRequest request, HttpServletResponse response)
@@ -53,13 +90,31 @@ public class ShoppingServlet extends HttpServlet {
         
         // Check authentication
         if (!isUserLoggedIn(request)) {
-            response.sendRedirect("LoginServlet");
+            if (request.getRequestedSessionId() != null && !request.isRequestedSessionIdValid()) {
+                // Session expired mid-visit: explain instead of silently bouncing to login
+                response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+                accessDeniedPage.render(request, response);
+            } else {
+                response.sendRedirect("LoginServlet");
+            }
             return;
         }
         
         String action = request.getParameter("action");
+        takeFlash(request);
         
+        // Anything unrecognised is served (and counted) as LoadAll
+        ActionMetrics.Action metrics = actionMetrics.getOrDefault(action, actionMetrics.get("LoadAll"));
+        long start = System.nanoTime();
+        boolean failed = false;
         try {
+            // Answer an unchanged catalog page before any repository call
+            ConditionalGet validators = catalogValidators(request, action);
+            if (validators != null && validators.isNotModified(request)) {
+                validators.sendNotModified(response);
+                return;
+            }
+            
             switch (action != null ? action : "") {
                 case "Search":
                     handleSearch(request, response);
@@ -91,9 +146,17 @@ public class ShoppingServlet extends HttpServlet {
                     break;
             }
         } catch (Exception e) {
+            failed = true;
             LOGGER.log(Level.SEVERE, "Error in ShoppingServlet", e);
+            if (response.isCommitted()) {
+                // Part of the page is already on the wire; nothing sensible to add
+                return;
+            }
+            response.resetBuffer();
             request.setAttribute("ERROR", "System error occurred. Please try again.");
-            request.getRequestDispatcher("Shopping.html").forward(request, response);
+            showShoppingPage(request, response);
+        } finally {
+            metrics.record(start, failed || response.getStatus() >= HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
         }
     }
     
@@ -104,24 +167,25 @@ public class ShoppingServlet extends HttpServlet {
         
         if (searchName == null || searchName.trim().isEmpty()) {
             request.setAttribute("ERROR", "Please enter a product name to search");
-            request.getRequestDispatcher("Shopping.html").forward(request, response);
+            showShoppingPage(request, response);
             return;
         }
         
         searchName = searchName.trim();
         
-        List<Product> products = productDAO.searchProductsByName(searchName);
+        ProductPage page = productRepository.searchProductsByName(searchName, getCursor(request), getPageSize(request));
         
-        if (products.isEmpty()) {
+        if (page.isEmpty()) {
             request.setAttribute("MESSAGE", "No products found with name containing: " + searchName);
         } else {
-            request.setAttribute("LIST_PRODUCT", products);
+            request.setAttribute("LIST_PRODUCT", page.getProducts());
             request.setAttribute("SEARCH_TERM", searchName);
-            LOGGER.log(Level.INFO, "Search by name completed: {0} products found for: {1}", 
-                      new Object[]{products.size(), searchName});
+            setPageAttributes(request, page, "Search", "searchName", searchName);
+            FREQUENT_EVENTS.info("Search by name completed: {0} products found for: {1}",
+                    page.size(), searchName);
         }
         
-        request.getRequestDispatcher("Shopping.html").forward(request, response);
+        showShoppingPage(request, response);
     }
     
     private void handleSearchByPrice(HttpServletRequest request, HttpServletResponse response)
@@ -133,7 +197,7 @@ public class ShoppingServlet extends HttpServlet {
         if (minPriceStr == null || minPriceStr.trim().isEmpty() ||
             maxPriceStr == null || maxPriceStr.trim().isEmpty()) {
             request.setAttribute("ERROR", "Please enter both minimum and maximum prices");
-            request.getRequestDispatcher("Shopping.html").forward(request, response);
+            showShoppingPage(request, response);
             return;
         }
         
@@ -143,25 +207,28 @@ public class ShoppingServlet extends HttpServlet {
             
             if (minPrice.compareTo(BigDecimal.ZERO) < 0 || maxPrice.compareTo(minPrice) < 0) {
                 request.setAttribute("ERROR", "Invalid price range. Please check your values.");
-                request.getRequestDispatcher("Shopping.html").forward(request, response);
+                showShoppingPage(request, response);
                 return;
             }
             
-            List<Product> products = productDAO.searchProductsByPrice(minPrice, maxPrice);
+            ProductPage page = productRepository.searchProductsByPrice(minPrice, maxPrice,
+                    getCursor(request), getPageSize(request));
             
-            if (products.isEmpty()) {
+            if (page.isEmpty()) {
                 request.setAttribute("MESSAGE", "No products found in price range: $" + minPrice + " - $" + maxPrice);
             } else {
-                request.setAttribute("LIST_PRODUCT", products);
+                request.setAttribute("LIST_PRODUCT", page.getProducts());
                 request.setAttribute("SEARCH_TERM", "Price Range: $" + minPrice + " - $" + maxPrice);
-                LOGGER.log(Level.INFO, "Search by price completed: {0} products found", products.size());
+                setPageAttributes(request, page, "SearchByPrice",
+                        "minPrice", minPriceStr.trim(), "maxPrice", maxPriceStr.trim());
+                FREQUENT_EVENTS.info("Search by price completed: {0} products found", page.size());
             }
             
         } catch (NumberFormatException e) {
             request.setAttribute("ERROR", "Invalid price format. Please enter valid numbers.");
         }
         
-        request.getRequestDispatcher("Shopping.html").forward(request, response);
+        showShoppingPage(request, response);
     }
     
     private void handleSearchByCategory(HttpServletRequest request, HttpServletResponse response)
@@ -171,53 +238,55 @@ public class ShoppingServlet extends HttpServlet {
         
         if (categoryIDStr == null || categoryIDStr.trim().isEmpty()) {
             request.setAttribute("ERROR", "Please select a category");
-            request.getRequestDispatcher("Shopping.html").forward(request, response);
+            showShoppingPage(request, response);
             return;
         }
         
         try {
             int categoryID = Integer.parseInt(categoryIDStr.trim());
             
-            List<Product> products = productDAO.getProductsByCategory(categoryID);
+            ProductPage page = productRepository.getProductsByCategory(categoryID, getCursor(request), getPageSize(request));
             
-            if (products.isEmpty()) {
+            if (page.isEmpty()) {
                 request.setAttribute("MESSAGE", "No products found in selected category");
             } else {
-                request.setAttribute("LIST_PRODUCT", products);
-                request.setAttribute("SEARCH_TERM", "Category: " + products.get(0).getCategoryName());
-                LOGGER.log(Level.INFO, "Search by category completed: {0} products found", products.size());
+                request.setAttribute("LIST_PRODUCT", page.getProducts());
+                request.setAttribute("SEARCH_TERM", "Category: " + page.getProducts().get(0).getCategoryName());
+                setPageAttributes(request, page, "SearchByCategory", "categoryID", String.valueOf(categoryID));
+                FREQUENT_EVENTS.info("Search by category completed: {0} products found", page.size());
             }
             
         } catch (NumberFormatException e) {
             request.setAttribute("ERROR", "Invalid category selection");
         }
         
-        request.getRequestDispatcher("Shopping.html").forward(request, response);
+        showShoppingPage(request, response);
     }
     
     private void handleLoadAll(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
         
-        User currentUser = getCurrentUser(request);
-        List<Product> products;
+        LoginPrincipal currentUser = getCurrentUser(request);
+        ProductPage page;
         
         // If staff, show all products; if customer, show only available products
         if (currentUser != null && currentUser.isStaff()) {
-            products = productDAO.getAllProducts();
+            page = productRepository.getAllProducts(getCursor(request), getPageSize(request));
             request.setAttribute("SEARCH_TERM", "All Products (Staff View)");
         } else {
-            products = productDAO.getAvailableProducts();
+            page = productRepository.getAvailableProducts(getCursor(request), getPageSize(request));
             request.setAttribute("SEARCH_TERM", "Available Products");
         }
         
-        if (products.isEmpty()) {
+        if (page.isEmpty()) {
             request.setAttribute("MESSAGE", "No products found in the system");
         } else {
-            request.setAttribute("LIST_PRODUCT", products);
-            LOGGER.log(Level.INFO, "Loaded all products: {0} products", products.size());
+            request.setAttribute("LIST_PRODUCT", page.getProducts());
+            setPageAttributes(request, page, "LoadAll");
+            FREQUENT_EVENTS.info("Loaded all products: {0} products", page.size());
         }
         
-        request.getRequestDispatcher("Shopping.html").forward(request, response);
+        showShoppingPage(request, response);
     }
     
     private void handleViewDetails(HttpServletRequest request, HttpServletResponse response)
@@ -226,30 +295,28 @@ public class ShoppingServlet extends HttpServlet {
         String productIDStr = request.getParameter("productID");
         
         if (productIDStr == null || productIDStr.trim().isEmpty()) {
-            request.setAttribute("ERROR", "Product ID is required");
-            handleLoadAll(request, response);
+            redirectToListing(request, response, null, "Product ID is required");
             return;
         }
         
         try {
             int productID = Integer.parseInt(productIDStr.trim());
-            Product product = productDAO.getProductById(productID);
+            Product product = productRepository.getProductById(productID);
             
             if (product == null) {
-                request.setAttribute("ERROR", "Product not found");
-                handleLoadAll(request, response);
+                redirectToListing(request, response, null, "Product not found");
                 return;
             }
             
+            // Only the selected product is loaded and shown
             request.setAttribute("SELECTED_PRODUCT", product);
+            request.setAttribute("LIST_PRODUCT", Collections.singletonList(product));
+            request.setAttribute("SEARCH_TERM", product.getProductName());
             request.setAttribute("VIEW_MODE", "details");
-            
-            // Also load all products for the main list
-            handleLoadAll(request, response);
+            showShoppingPage(request, response);
             
         } catch (NumberFormatException e) {
-            request.setAttribute("ERROR", "Invalid product ID format");
-            handleLoadAll(request, response);
+            redirectToListing(request, response, null, "Invalid product ID format");
         }
     }
     
@@ -260,8 +327,7 @@ public class ShoppingServlet extends HttpServlet {
         String quantityStr = request.getParameter("quantity");
         
         if (productIDStr == null || productIDStr.trim().isEmpty()) {
-            request.setAttribute("ERROR", "Product ID is required");
-            handleLoadAll(request, response);
+            redirectToListing(request, response, null, "Product ID is required");
             return;
         }
         
@@ -274,211 +340,414 @@ public class ShoppingServlet extends HttpServlet {
             }
             
             if (quantity <= 0) {
-                request.setAttribute("ERROR", "Quantity must be greater than 0");
-                handleLoadAll(request, response);
+                redirectToListing(request, response, null, "Quantity must be greater than 0");
                 return;
             }
             
-            Product product = productDAO.getProductById(productID);
+            Product product = productRepository.getProductById(productID);
             
             if (product == null) {
-                request.setAttribute("ERROR", "Product not found");
-                handleLoadAll(request, response);
+                redirectToListing(request, response, null, "Product not found");
                 return;
             }
             
             if (!product.isAvailable()) {
-                request.setAttribute("ERROR", "Product is not available for purchase");
-                handleLoadAll(request, response);
+                redirectToListing(request, response, null, "Product is not available for purchase");
                 return;
             }
             
-            if (product.getUnitsInStock() < quantity) {
-                request.setAttribute("ERROR", "Insufficient stock. Available: " + product.getUnitsInStock());
-                handleLoadAll(request, response);
+            // What is already in the cart counts against the stock too
+            Cart cart = getCart(request, false);
+            int inCart = cart != null ? cart.getQuantity(productID) : 0;
+            if (product.getUnitsInStock() < (long) inCart + quantity) {
+                redirectToListing(request, response, null, inCart > 0
+                        ? "Insufficient stock. Available: " + product.getUnitsInStock() + ", already in cart: " + inCart
+                        : "Insufficient stock. Available: " + product.getUnitsInStock());
                 return;
             }
             
             // Add to cart (using session)
-            addToCart(request, product, quantity);
-            request.setAttribute("MESSAGE", "Product added to cart successfully!");
+            try {
+                addToCart(request, product, quantity);
+            } catch (IllegalArgumentException e) {
+                redirectToListing(request, response, null, "Quantity too large");
+                return;
+            }
             
-            LOGGER.log(Level.INFO, "Product added to cart: {0}, quantity: {1}", 
-                      new Object[]{product.getProductName(), quantity});
+            FREQUENT_EVENTS.info("Product added to cart: {0}, quantity: {1}", product.getProductName(), quantity);
             
-            handleLoadAll(request, response);
+            redirectToListing(request, response, "Product added to cart successfully!", null);
             
         } catch (NumberFormatException e) {
-            request.setAttribute("ERROR", "Invalid number format");
-            handleLoadAll(request, response);
+            redirectToListing(request, response, null, "Invalid number format");
         }
     }
     
     private void handleViewCart(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
         
-        HttpSession session = request.getSession();
-        List<CartItem> cart = (List<CartItem>) session.getAttribute("SHOPPING_CART");
+        Cart cart = getCart(request, false);
         
         if (cart == null || cart.isEmpty()) {
             request.setAttribute("MESSAGE", "Your cart is empty");
         } else {
-            request.setAttribute("CART_ITEMS", cart);
-            request.setAttribute("CART_TOTAL", calculateCartTotal(cart));
+            List<String> changes = refreshCart(cart);
+            if (changes == null) {
+                request.setAttribute("ERROR", "Could not check current prices. Please try again.");
+            } else if (!changes.isEmpty()) {
+                request.setAttribute("MESSAGE", String.join(" ", changes));
+                storeCart(request, cart);
+            }
+            setCartAttributes(request, cart);
         }
         
         request.setAttribute("VIEW_MODE", "cart");
-        request.getRequestDispatcher("Shopping.html").forward(request, response);
+        showShoppingPage(request, response);
     }
     
     private void handleCheckout(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
         
-        HttpSession session = request.getSession();
-        List<CartItem> cart = (List<CartItem>) session.getAttribute("SHOPPING_CART");
+        Cart cart = getCart(request, false);
         
         if (cart == null || cart.isEmpty()) {
-            request.setAttribute("ERROR", "Your cart is empty");
-            handleLoadAll(request, response);
+            redirectToListing(request, response, null, "Your cart is empty");
             return;
         }
         
-        // Simulate checkout process
-        User currentUser = getCurrentUser(request);
-        BigDecimal total = calculateCartTotal(cart);
-        
-        // Clear cart after successful checkout
-        session.removeAttribute("SHOPPING_CART");
-        
-        request.setAttribute("MESSAGE", "Order placed successfully! Total: " + String.format("$%.2f", total));
-        
-        LOGGER.log(Level.INFO, "Order placed by user: {0}, total: {1}", 
-                  new Object[]{currentUser.getUserID(), total});
-        
-        handleLoadAll(request, response);
-    }
-    
-    private void addToCart(HttpServletRequest request, Product product, int quantity) {
-        HttpSession session = request.getSession();
-        List<CartItem> cart = (List<CartItem>) session.getAttribute("SHOPPING_CART");
+        // Re-validate every line against current prices and stock in one query
+        List<String> changes = refreshCart(cart);
+        if (changes != null && !changes.isEmpty()) {
+            storeCart(request, cart);
+        }
+        if (changes == null || !changes.isEmpty()) {
+            redirectToCart(request, response, changes == null
+                    ? "Could not check current prices. Please try again."
+                    : "Your cart has changed: " + String.join(" ", changes) + " Please review it and check out again.");
+            return;
+        }
         
-        if (cart == null) {
-            cart = new ArrayList<>();
+        // Order exactly what the cart holds right now, even if another tab adds meanwhile
+        LoginPrincipal currentUser = getCurrentUser(request);
+        List<Cart.Line> ordered = cart.getLines();
+        long totalCents = 0;
+        List<OrderLine> lines = new ArrayList<>(ordered.size());
+        for (Cart.Line line : ordered) {
+            lines.add(new OrderLine(line.getProductID(), line.getQuantity(), line.getUnitPriceCents()));
+            totalCents = Money.plus(totalCents, line.getSubtotalCents());
         }
         
-        // Check if product already in cart
-        boolean found = false;
-        for (CartItem item : cart) {
-            if (item.getProductID() == product.getProductID()) {
-                item.setQuantity(item.getQuantity() + quantity);
-                found = true;
-                break;
+        // Stock is taken and the order written in one transaction
+        OrderResult result = orderDAO.placeOrder(currentUser.getUserID(), lines);
+        if (!result.isPlaced()) {
+            if (result.isFailed()) {
+                redirectToCart(request, response, "We could not place your order. Please try again.");
+            } else {
+                // Someone else got there first; show what is left
+                List<String> soldOut = refreshCart(cart);
+                storeCart(request, cart);
+                redirectToCart(request, response, "Some items sold out before your order went through. " +
+                        (soldOut != null ? String.join(" ", soldOut) : "") + " Please review your cart.");
             }
+            return;
         }
         
-        if (!found) {
-            CartItem newItem = new CartItem();
-            newItem.setProductID(product.getProductID());
-            newItem.setProductName(product.getProductName());
-            newItem.setUnitPrice(product.getUnitPrice());
-            newItem.setQuantity(quantity);
-            cart.add(newItem);
+        // Take the ordered quantities out of the cart
+        for (Cart.Line line : ordered) {
+            cart.subtract(line.getProductID(), line.getQuantity());
         }
+        storeCart(request, cart);
         
-        session.setAttribute("SHOPPING_CART", cart);
-    }
-    
-    private BigDecimal calculateCartTotal(List<CartItem> cart) {
-        BigDecimal total = BigDecimal.ZERO;
+        String total = Money.format(totalCents);
         
-        for (CartItem item : cart) {
-            BigDecimal itemTotal = item.getUnitPrice().multiply(new BigDecimal(item.getQuantity()));
-            total = total.add(itemTotal);
-        }
+        EVENTS.info("Order {0} placed by user: {1}, total: {2}",
+                result.getOrderID(), currentUser.getUserID(), total);
         
-        return total;
+        redirectToListing(request, response,
+                "Order #" + result.getOrderID() + " placed successfully! Total: " + total, null);
     }
     
-    private boolean isUserLoggedIn(HttpServletRequest request) {
+    /**
+     * Finish a change with a redirect to the product listing, carrying the
+     * outcome in the session so refreshing the result page does not repeat
+     * the change (Post-Redirect-Get)
+     */
+    private void redirectToListing(HttpServletRequest request, HttpServletResponse response,
+                                   String message, String error) throws IOException {
+        setFlash(request, message, error);
+        response.sendRedirect(response.encodeRedirectURL(LISTING_URL));
+    }
+    
+    /**
+     * Redirect to the cart view with an error, keeping whatever is left in the cart
+     */
+    private void redirectToCart(HttpServletRequest request, HttpServletResponse response,
+                                String error) throws IOException {
+        setFlash(request, null, error);
+        response.sendRedirect(response.encodeRedirectURL(CART_URL));
+    }
+    
+    private void setFlash(HttpServletRequest request, String message, String error) {
         HttpSession session = request.getSession(false);
-        if (session != null) {
-            User loginUser = (User) session.getAttribute("LOGIN_USER");
-            return loginUser != null;
+        if (session == null) {
+            return;
+        }
+        if (message != null) {
+            session.setAttribute(FLASH_MESSAGE, message);
+        }
+        if (error != null) {
+            session.setAttribute(FLASH_ERROR, error);
         }
-        return false;
     }
     
-    private User getCurrentUser(HttpServletRequest request) {
+    /**
+     * Move messages left by the previous redirect into this request; each
+     * is shown once
+     */
+    private void takeFlash(HttpServletRequest request) {
         HttpSession session = request.getSession(false);
-        if (session != null) {
-            return (User) session.getAttribute("LOGIN_USER");
+        if (session == null) {
+            return;
+        }
+        Object message = session.getAttribute(FLASH_MESSAGE);
+        if (message != null) {
+            session.removeAttribute(FLASH_MESSAGE);
+            request.setAttribute("MESSAGE", message);
+        }
+        Object error = session.getAttribute(FLASH_ERROR);
+        if (error != null) {
+            session.removeAttribute(FLASH_ERROR);
+            request.setAttribute("ERROR", error);
         }
-        return null;
     }
     
-    @Override
-    public void destroy() {
-        super.destroy();
-        LOGGER.info("ShoppingServlet destroyed");
+    private void setCartAttributes(HttpServletRequest request, Cart cart) {
+        if (cart.isEmpty()) {
+            request.setAttribute("MESSAGE", "Your cart is empty");
+            return;
+        }
+        request.setAttribute("CART_ITEMS", cart.getLines());
+        request.setAttribute("CART_TOTAL", cart.getFormattedTotal());
     }
     
-    // Inner class for cart items
-    public static class CartItem implements java.io.Serializable {
-        private static final long serialVersionUID = 1L;
-        
-        private int productID;
-        private String productName;
-        private BigDecimal unitPrice;
-        private int quantity;
-        
-        public CartItem() {
-            this.unitPrice = BigDecimal.ZERO;
+    private void addToCart(HttpServletRequest request, Product product, int quantity) {
+        Cart cart = getCart(request, true);
+        cart.add(product.getProductID(), product.getProductName(), product.getUnitPriceCents(), quantity);
+        storeCart(request, cart);
+    }
+    
+    /**
+     * The session's cart. A session without one picks up the user's saved
+     * cart from the CartStore, else gets an empty one if asked. Carts left in
+     * sessions by older versions (a List of items) are discarded.
+     */
+    private Cart getCart(HttpServletRequest request, boolean create) {
+        HttpSession session = request.getSession(create);
+        if (session == null) {
+            return null;
+        }
+        Object cart = session.getAttribute(Cart.SESSION_KEY);
+        if (cart instanceof Cart) {
+            return (Cart) cart;
+        }
+        
+        LoginPrincipal user = getCurrentUser(request);
+        // Only creation is guarded; two tabs must not each install their own cart
+        synchronized (session) {
+            cart = session.getAttribute(Cart.SESSION_KEY);
+            if (!(cart instanceof Cart)) {
+                cart = user != null ? cartStore.load(user.getUserID()) : null;
+                if (cart == null && !create) {
+                    return null;
+                }
+                if (cart == null) {
+                    cart = new Cart();
+                } else {
+                    EVENTS.info("Restored saved cart for {0}: {1}", user.getUserID(), cart);
+                }
+                session.setAttribute(Cart.SESSION_KEY, cart);
+            }
+            return (Cart) cart;
         }
-        
-        public int getProductID() { 
-            return productID; 
+    }
+    
+    /**
+     * Re-set the cart attribute after a change so session replication and
+     * persistence notice it, and save it to the CartStore
+     */
+    private void storeCart(HttpServletRequest request, Cart cart) {
+        HttpSession session = request.getSession(false);
+        if (session != null) {
+            session.setAttribute(Cart.SESSION_KEY, cart);
         }
-        
-        public void setProductID(int productID) { 
-            this.productID = productID; 
+        LoginPrincipal user = getCurrentUser(request);
+        if (user != null) {
+            cartStore.save(user.getUserID(), cart);
         }
-        
-        public String getProductName() { 
-            return productName; 
+    }
+    
+    /**
+     * Bring every cart line up to date with the database in a single
+     * round trip: reprice lines whose price changed, drop products that are
+     * gone or unavailable and cap quantities at the stock on hand.
+     *
+     * @return one notice per change (empty if nothing changed), or null if
+     *         the products could not be loaded and the cart was left alone
+     */
+    private List<String> refreshCart(Cart cart) {
+        List<Cart.Line> lines = cart.getLines();
+        List<Integer> productIDs = new ArrayList<>(lines.size());
+        for (Cart.Line line : lines) {
+            productIDs.add(line.getProductID());
+        }
+        
+        Map<Integer, Product> current = productRepository.getProductsByIds(productIDs);
+        if (current == null) {
+            return null;
+        }
+        
+        List<String> changes = new ArrayList<>();
+        for (Cart.Line line : lines) {
+            Product product = current.get(line.getProductID());
+            
+            if (product == null || !product.isAvailable()) {
+                changes.add(line.getProductName() + " is no longer available and was removed.");
+                cart.remove(line.getProductID());
+                continue;
+            }
+            if (!product.getProductName().equals(line.getProductName())) {
+                cart.setProductName(line.getProductID(), product.getProductName());
+            }
+            long priceCents = product.getUnitPriceCents();
+            if (priceCents != line.getUnitPriceCents()) {
+                changes.add("The price of " + line.getProductName() + " changed to " +
+                            product.getFormattedPrice() + ".");
+                cart.setUnitPriceCents(line.getProductID(), priceCents);
+            }
+            if (line.getQuantity() > product.getUnitsInStock()) {
+                changes.add("Only " + product.getUnitsInStock() + " of " + line.getProductName() + " left in stock.");
+                cart.setQuantity(line.getProductID(), product.getUnitsInStock());
+            }
         }
         
-        public void setProductName(String productName) { 
-            this.productName = productName; 
+        if (!changes.isEmpty()) {
+            FREQUENT_EVENTS.info("Refreshed cart with {0} lines, {1} changes", lines.size(), changes.size());
         }
-        
-        public BigDecimal getUnitPrice() { 
-            return unitPrice; 
+        return changes;
+    }
+    
+    /**
+     * Requested page size ("pageSize" parameter), clamped to the allowed range
+     */
+    private int getPageSize(HttpServletRequest request) {
+        String pageSizeStr = request.getParameter("pageSize");
+        if (pageSizeStr != null && !pageSizeStr.trim().isEmpty()) {
+            try {
+                return ProductPage.normalizePageSize(Integer.parseInt(pageSizeStr.trim()));
+            } catch (NumberFormatException e) {
+                LOGGER.log(Level.FINE, "Ignoring invalid page size: {0}", pageSizeStr);
+            }
         }
-        
-        public void setUnitPrice(BigDecimal unitPrice) { 
-            this.unitPrice = unitPrice != null ? unitPrice : BigDecimal.ZERO; 
+        return ProductPage.DEFAULT_PAGE_SIZE;
+    }
+    
+    /**
+     * Keyset cursor from the previous page ("cursor" parameter), or null for the first page
+     */
+    private String getCursor(HttpServletRequest request) {
+        String cursor = request.getParameter("cursor");
+        return cursor != null && !cursor.trim().isEmpty() ? cursor.trim() : null;
+    }
+    
+    /**
+     * Expose paging state to the view. NEXT_PAGE_QUERY is the query string
+     * that repeats the current action for the following page.
+     */
+    private void setPageAttributes(HttpServletRequest request, ProductPage page,
+                                   String action, String... params) throws IOException {
+        request.setAttribute("PAGE_SIZE", getPageSize(request));
+        if (!page.hasMore()) {
+            return;
         }
         
-        public int getQuantity() { 
-            return quantity; 
+        StringBuilder query = new StringBuilder("action=").append(URLEncoder.encode(action, "UTF-8"));
+        for (int i = 0; i + 1 < params.length; i += 2) {
+            query.append('&').append(params[i]).append('=').append(URLEncoder.encode(params[i + 1], "UTF-8"));
         }
+        query.append("&pageSize=").append(getPageSize(request));
+        query.append("&cursor=").append(URLEncoder.encode(page.getNextCursor(), "UTF-8"));
         
-        public void setQuantity(int quantity) { 
-            this.quantity = quantity; 
+        request.setAttribute("NEXT_CURSOR", page.getNextCursor());
+        request.setAttribute("NEXT_PAGE_QUERY", query.toString());
+    }
+    
+    /**
+     * Validators for LoadAll, SearchByCategory and ViewDetails pages fetched
+     * with GET, remembered in the request so showShoppingPage sends them.
+     * Null when the page is not cacheable: another action, a message carried
+     * over from a redirect, or a catalog that would be loaded or refreshed
+     * to render it.
+     */
+    private ConditionalGet catalogValidators(HttpServletRequest request, String action) {
+        if (!"GET".equals(request.getMethod()) && !"HEAD".equals(request.getMethod())) {
+            return null;
+        }
+        switch (action != null ? action : "") {
+            case "Search":
+            case "SearchByPrice":
+            case "AddToCart":
+            case "ViewCart":
+            case "Checkout":
+                return null;
+            default:
+                break;
         }
-        
-        public BigDecimal getSubtotal() {
-            return unitPrice.multiply(new BigDecimal(quantity));
+        if (request.getAttribute("MESSAGE") != null || request.getAttribute("ERROR") != null) {
+            return null;
+        }
+        CatalogSnapshot snapshot = productRepository.getCachedCatalogSnapshot();
+        if (snapshot == null) {
+            return null;
         }
         
-        @Override
-        public String toString() {
-            return "CartItem{" +
-                    "productID=" + productID +
-                    ", productName='" + productName + '\'' +
-                    ", quantity=" + quantity +
-                    ", subtotal=" + getSubtotal() +
-                    '}';
+        HttpSession session = request.getSession(false);
+        Object loginTime = session != null ? session.getAttribute("LOGIN_TIME") : null;
+        ConditionalGet validators = ConditionalGet.forCatalogPage(snapshot, request, getCurrentUser(request),
+                deployedAt, loginTime instanceof Long ? (Long) loginTime : 0);
+        request.setAttribute(VALIDATORS, validators);
+        return validators;
+    }
+    
+    private void showShoppingPage(HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        // Error pages are never revalidated into a 304
+        Object validators = request.getAttribute(VALIDATORS);
+        if (validators instanceof ConditionalGet && request.getAttribute("ERROR") == null) {
+            ((ConditionalGet) validators).addTo(response);
+        }
+        shoppingPage.render(request, response);
+    }
+    
+    private boolean isUserLoggedIn(HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        if (session != null) {
+            return session.getAttribute(LoginPrincipal.SESSION_KEY) instanceof LoginPrincipal;
         }
+        return false;
+    }
+    
+    private LoginPrincipal getCurrentUser(HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        if (session != null) {
+            Object principal = session.getAttribute(LoginPrincipal.SESSION_KEY);
+            return principal instanceof LoginPrincipal ? (LoginPrincipal) principal : null;
+        }
+        return null;
+    }
+    
+    @Override
+    public void destroy() {
+        super.destroy();
+        LOGGER.info("ShoppingServlet destroyed");
     }
 }
\ No newline at end of file
@@ -0,0 +1,73 @@
+package ShoppingServlet;
+
+import DBUtils.Product;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Hand-written property table for the beans that page templates read.
+ *
+ * Templates say ${product.productName}; at render time the property is
+ * resolved through a plain lambda registered here for the bean's class, so
+ * rendering never uses reflection or bean introspection. Maps are also
+ * supported (the property name is used as the key).
+ */
+final class TemplateAccessors {
+
+    private static final Map<Class<?>, Map<String, Function<Object, Object>>> ACCESSORS = new HashMap<>();
+
+    static {
+        Map<String, Function<Object, Object>> product = new HashMap<>();
+        product.put("productID", b -> ((Product) b).getProductID());
+        product.put("productName", b -> ((Product) b).getProductName());
+        product.put("supplierID", b -> ((Product) b).getSupplierID());
+        product.put("categoryID", b -> ((Product) b).getCategoryID());
+        product.put("quantityPerUnit", b -> ((Product) b).getQuantityPerUnit());
+        product.put("unitPrice", b -> ((Product) b).getUnitPrice());
+        product.put("unitPriceCents", b -> ((Product) b).getUnitPriceCents());
+        product.put("productImage", b -> ((Product) b).getProductImage());
+        product.put("categoryName", b -> ((Product) b).getCategoryName());
+        product.put("supplierName", b -> ((Product) b).getSupplierName());
+        product.put("unitsInStock", b -> ((Product) b).getUnitsInStock());
+        product.put("discontinued", b -> ((Product) b).isDiscontinued());
+        product.put("available", b -> ((Product) b).isAvailable());
+        product.put("availabilityStatus", b -> ((Product) b).getAvailabilityStatus());
+        product.put("formattedPrice", b -> ((Product) b).getFormattedPrice());
+        product.put("productType", b -> ((Product) b).getProductType());
+        ACCESSORS.put(Product.class, product);
+
+        Map<String, Function<Object, Object>> user = new HashMap<>();
+        user.put("userID", b -> ((LoginPrincipal) b).getUserID());
+        user.put("fullName", b -> ((LoginPrincipal) b).getFullName());
+        user.put("roleID", b -> ((LoginPrincipal) b).getRoleID());
+        user.put("type", b -> ((LoginPrincipal) b).getType());
+        user.put("staff", b -> ((LoginPrincipal) b).isStaff());
+        user.put("admin", b -> ((LoginPrincipal) b).isAdmin());
+        user.put("customer", b -> ((LoginPrincipal) b).isCustomer());
+        user.put("roleDisplayName", b -> ((LoginPrincipal) b).getRoleDisplayName());
+        ACCESSORS.put(LoginPrincipal.class, user);
+
+        Map<String, Function<Object, Object>> cartLine = new HashMap<>();
+        cartLine.put("productID", b -> ((Cart.Line) b).getProductID());
+        cartLine.put("productName", b -> ((Cart.Line) b).getProductName());
+        cartLine.put("unitPrice", b -> ((Cart.Line) b).getUnitPrice());
+        cartLine.put("quantity", b -> ((Cart.Line) b).getQuantity());
+        cartLine.put("subtotal", b -> ((Cart.Line) b).getSubtotal());
+        cartLine.put("formattedUnitPrice", b -> ((Cart.Line) b).getFormattedUnitPrice());
+        cartLine.put("formattedSubtotal", b -> ((Cart.Line) b).getFormattedSubtotal());
+        ACCESSORS.put(Cart.Line.class, cartLine);
+    }
+
+    private TemplateAccessors() {
+    }
+
+    /**
+     * Look up the accessor for a property of a bean class, or null if the
+     * class or property is not registered
+     */
+    static Function<Object, Object> find(Class<?> type, String property) {
+        Map<String, Function<Object, Object>> properties = ACCESSORS.get(type);
+        return properties != null ? properties.get(property) : null;
+    }
+}
@@ -0,0 +1,456 @@
+package ShoppingServlet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Compiled ${...} expression used by PageTemplate.
+ *
+ * Supports the subset of the JSP expression language our pages use: dotted
+ * property paths (with sessionScope/requestScope/applicationScope roots),
+ * string/number/boolean/null literals, empty, not/!, and/&&, or/||,
+ * comparison operators (== != &lt; &lt;= &gt; &gt;= and eq ne lt le gt ge),
+ * parentheses and fn:length(). Expressions are parsed once into a tree of
+ * nodes; evaluating them does no parsing and no reflection.
+ */
+abstract class TemplateExpression {
+
+    /**
+     * Variable lookup used while rendering
+     */
+    interface Scope {
+        /** Loop variables first, then request, session and application attributes */
+        Object resolve(String name);
+
+        /** Attribute from one named scope: "requestScope", "sessionScope" or "applicationScope" */
+        Object resolveIn(String scope, String name);
+    }
+
+    abstract Object eval(Scope scope);
+
+    /**
+     * Parse an expression body (the text between "${" and "}")
+     *
+     * @throws IllegalArgumentException if the expression is not supported
+     */
+    static TemplateExpression compile(String source) {
+        Parser parser = new Parser(source);
+        TemplateExpression expression = parser.parseOr();
+        if (parser.peek() != null) {
+            throw new IllegalArgumentException("Unexpected '" + parser.peek() + "' in ${" + source + "}");
+        }
+        return expression;
+    }
+
+    // Coercions
+
+    static boolean isTrue(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        if (value instanceof String) {
+            return "true".equalsIgnoreCase((String) value);
+        }
+        return value != null;
+    }
+
+    static boolean isEmpty(Object value) {
+        if (value == null) {
+            return true;
+        }
+        if (value instanceof CharSequence) {
+            return ((CharSequence) value).length() == 0;
+        }
+        if (value instanceof Collection) {
+            return ((Collection<?>) value).isEmpty();
+        }
+        if (value instanceof Map) {
+            return ((Map<?, ?>) value).isEmpty();
+        }
+        return value instanceof Object[] && ((Object[]) value).length == 0;
+    }
+
+    static int length(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof CharSequence) {
+            return ((CharSequence) value).length();
+        }
+        if (value instanceof Collection) {
+            return ((Collection<?>) value).size();
+        }
+        if (value instanceof Map) {
+            return ((Map<?, ?>) value).size();
+        }
+        if (value instanceof Object[]) {
+            return ((Object[]) value).length;
+        }
+        return 0;
+    }
+
+    private static int compare(Object left, Object right) {
+        if (left instanceof Number && right instanceof Number) {
+            Number a = (Number) left;
+            Number b = (Number) right;
+            if (isIntegral(a) && isIntegral(b)) {
+                return Long.compare(a.longValue(), b.longValue());
+            }
+            return Double.compare(a.doubleValue(), b.doubleValue());
+        }
+        if (left == null || right == null) {
+            return left == right ? 0 : (left == null ? -1 : 1);
+        }
+        return left.toString().compareTo(right.toString());
+    }
+
+    private static boolean equal(Object left, Object right) {
+        if (left == right) {
+            return true;
+        }
+        if (left == null || right == null) {
+            return false;
+        }
+        if (left instanceof Number && right instanceof Number) {
+            return compare(left, right) == 0;
+        }
+        if (left instanceof String || right instanceof String) {
+            return left.toString().equals(right.toString());
+        }
+        return left.equals(right);
+    }
+
+    private static boolean isIntegral(Number n) {
+        return n instanceof Integer || n instanceof Long || n instanceof Short || n instanceof Byte;
+    }
+
+    // Nodes
+
+    private static final class Literal extends TemplateExpression {
+        private final Object value;
+
+        Literal(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        Object eval(Scope scope) {
+            return value;
+        }
+    }
+
+    private static final class Path extends TemplateExpression {
+        private final String scopeName;
+        private final String root;
+        private final String[] properties;
+        private final Accessor[] cache;
+
+        Path(String scopeName, String root, String[] properties) {
+            this.scopeName = scopeName;
+            this.root = root;
+            this.properties = properties;
+            this.cache = new Accessor[properties.length];
+        }
+
+        @Override
+        Object eval(Scope scope) {
+            Object value = scopeName != null ? scope.resolveIn(scopeName, root) : scope.resolve(root);
+            for (int i = 0; i < properties.length && value != null; i++) {
+                value = property(i, value);
+            }
+            return value;
+        }
+
+        private Object property(int i, Object bean) {
+            if (bean instanceof Map) {
+                return ((Map<?, ?>) bean).get(properties[i]);
+            }
+
+            // One-entry inline cache per path segment, keyed by bean class
+            Accessor accessor = cache[i];
+            if (accessor == null || accessor.type != bean.getClass()) {
+                Function<Object, Object> getter = TemplateAccessors.find(bean.getClass(), properties[i]);
+                if (getter == null) {
+                    throw new IllegalStateException("No template accessor for " +
+                            bean.getClass().getSimpleName() + "." + properties[i]);
+                }
+                accessor = new Accessor(bean.getClass(), getter);
+                cache[i] = accessor;
+            }
+            return accessor.getter.apply(bean);
+        }
+    }
+
+    private static final class Accessor {
+        final Class<?> type;
+        final Function<Object, Object> getter;
+
+        Accessor(Class<?> type, Function<Object, Object> getter) {
+            this.type = type;
+            this.getter = getter;
+        }
+    }
+
+    private static final class Unary extends TemplateExpression {
+        private final String op;
+        private final TemplateExpression operand;
+
+        Unary(String op, TemplateExpression operand) {
+            this.op = op;
+            this.operand = operand;
+        }
+
+        @Override
+        Object eval(Scope scope) {
+            Object value = operand.eval(scope);
+            switch (op) {
+                case "not":
+                    return !isTrue(value);
+                case "empty":
+                    return isEmpty(value);
+                case "-":
+                    if (value instanceof Number && isIntegral((Number) value)) {
+                        return -((Number) value).longValue();
+                    }
+                    return value instanceof Number ? -((Number) value).doubleValue() : null;
+                case "length":
+                    return length(value);
+                default:
+                    throw new IllegalStateException("Unknown operator: " + op);
+            }
+        }
+    }
+
+    private static final class Binary extends TemplateExpression {
+        private final String op;
+        private final TemplateExpression left;
+        private final TemplateExpression right;
+
+        Binary(String op, TemplateExpression left, TemplateExpression right) {
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Object eval(Scope scope) {
+            switch (op) {
+                case "and":
+                    return isTrue(left.eval(scope)) && isTrue(right.eval(scope));
+                case "or":
+                    return isTrue(left.eval(scope)) || isTrue(right.eval(scope));
+                case "eq":
+                    return equal(left.eval(scope), right.eval(scope));
+                case "ne":
+                    return !equal(left.eval(scope), right.eval(scope));
+                case "lt":
+                    return compare(left.eval(scope), right.eval(scope)) < 0;
+                case "le":
+                    return compare(left.eval(scope), right.eval(scope)) <= 0;
+                case "gt":
+                    return compare(left.eval(scope), right.eval(scope)) > 0;
+                case "ge":
+                    return compare(left.eval(scope), right.eval(scope)) >= 0;
+                default:
+                    throw new IllegalStateException("Unknown operator: " + op);
+            }
+        }
+    }
+
+    // Parser
+
+    private static final class Parser {
+        private final List<String> tokens;
+        private final String source;
+        private int pos;
+
+        Parser(String source) {
+            this.source = source;
+            this.tokens = tokenize(source);
+        }
+
+        String peek() {
+            return pos < tokens.size() ? tokens.get(pos) : null;
+        }
+
+        private String next() {
+            String token = peek();
+            if (token == null) {
+                throw new IllegalArgumentException("Unexpected end of ${" + source + "}");
+            }
+            pos++;
+            return token;
+        }
+
+        private boolean accept(String... options) {
+            String token = peek();
+            for (String option : options) {
+                if (option.equals(token)) {
+                    pos++;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        TemplateExpression parseOr() {
+            TemplateExpression left = parseAnd();
+            while (accept("||", "or")) {
+                left = new Binary("or", left, parseAnd());
+            }
+            return left;
+        }
+
+        private TemplateExpression parseAnd() {
+            TemplateExpression left = parseEquality();
+            while (accept("&&", "and")) {
+                left = new Binary("and", left, parseEquality());
+            }
+            return left;
+        }
+
+        private TemplateExpression parseEquality() {
+            TemplateExpression left = parseRelational();
+            while (true) {
+                if (accept("==", "eq")) {
+                    left = new Binary("eq", left, parseRelational());
+                } else if (accept("!=", "ne")) {
+                    left = new Binary("ne", left, parseRelational());
+                } else {
+                    return left;
+                }
+            }
+        }
+
+        private TemplateExpression parseRelational() {
+            TemplateExpression left = parseUnary();
+            while (true) {
+                if (accept("<", "lt")) {
+                    left = new Binary("lt", left, parseUnary());
+                } else if (accept("<=", "le")) {
+                    left = new Binary("le", left, parseUnary());
+                } else if (accept(">", "gt")) {
+                    left = new Binary("gt", left, parseUnary());
+                } else if (accept(">=", "ge")) {
+                    left = new Binary("ge", left, parseUnary());
+                } else {
+                    return left;
+                }
+            }
+        }
+
+        private TemplateExpression parseUnary() {
+            if (accept("!", "not")) {
+                return new Unary("not", parseUnary());
+            }
+            if (accept("empty")) {
+                return new Unary("empty", parseUnary());
+            }
+            if (accept("-")) {
+                return new Unary("-", parseUnary());
+            }
+            return parsePrimary();
+        }
+
+        private TemplateExpression parsePrimary() {
+            String token = next();
+
+            if (token.equals("(")) {
+                TemplateExpression inner = parseOr();
+                expect(")");
+                return inner;
+            }
+            if (token.startsWith("'") || token.startsWith("\"")) {
+                return new Literal(token.substring(1, token.length() - 1));
+            }
+            if (Character.isDigit(token.charAt(0))) {
+                return new Literal(token.contains(".") ? (Object) Double.parseDouble(token) : (Object) Long.parseLong(token));
+            }
+            switch (token) {
+                case "true":
+                    return new Literal(Boolean.TRUE);
+                case "false":
+                    return new Literal(Boolean.FALSE);
+                case "null":
+                    return new Literal(null);
+                default:
+                    break;
+            }
+            if (!Character.isJavaIdentifierStart(token.charAt(0))) {
+                throw new IllegalArgumentException("Unexpected '" + token + "' in ${" + source + "}");
+            }
+
+            // Function call: prefix:name(args)
+            if (accept(":")) {
+                String function = token + ":" + next();
+                expect("(");
+                TemplateExpression argument = parseOr();
+                expect(")");
+                if (!"fn:length".equals(function)) {
+                    throw new IllegalArgumentException("Unsupported function " + function + " in ${" + source + "}");
+                }
+                return new Unary("length", argument);
+            }
+
+            String scopeName = null;
+            String root = token;
+            if (token.equals("requestScope") || token.equals("sessionScope") || token.equals("applicationScope")) {
+                expect(".");
+                scopeName = token;
+                root = next();
+            }
+            List<String> properties = new ArrayList<>();
+            while (accept(".")) {
+                properties.add(next());
+            }
+            return new Path(scopeName, root, properties.toArray(new String[0]));
+        }
+
+        private void expect(String token) {
+            if (!accept(token)) {
+                throw new IllegalArgumentException("Expected '" + token + "' in ${" + source + "}");
+            }
+        }
+
+        private static List<String> tokenize(String source) {
+            List<String> tokens = new ArrayList<>();
+            int i = 0;
+            while (i < source.length()) {
+                char c = source.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                } else if (c == '\'' || c == '"') {
+                    int end = source.indexOf(c, i + 1);
+                    if (end < 0) {
+                        throw new IllegalArgumentException("Unterminated string in ${" + source + "}");
+                    }
+                    tokens.add(source.substring(i, end + 1));
+                    i = end + 1;
+                } else if (Character.isJavaIdentifierStart(c) || Character.isDigit(c)) {
+                    int start = i;
+                    while (i < source.length() &&
+                           (Character.isJavaIdentifierPart(source.charAt(i)) ||
+                            (Character.isDigit(c) && source.charAt(i) == '.'))) {
+                        i++;
+                    }
+                    tokens.add(source.substring(start, i));
+                } else if (i + 1 < source.length() && isTwoCharOperator(source.substring(i, i + 2))) {
+                    tokens.add(source.substring(i, i + 2));
+                    i += 2;
+                } else {
+                    tokens.add(String.valueOf(c));
+                    i++;
+                }
+            }
+            return tokens;
+        }
+
+        private static boolean isTwoCharOperator(String s) {
+            return s.equals("&&") || s.equals("||") || s.equals("==") || s.equals("!=") ||
+                   s.equals("<=") || s.equals(">=");
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package ShoppingServlet;
+
+import java.io.IOException;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Answers 404 to browsers asking for the page templates themselves.
+ *
+ * Login.html, Shopping.html and Invalid.html are rendered by LoginServlet
+ * and ShoppingServlet through PageTemplate; fetched directly they are raw
+ * ${...} and c:forEach markup. The servlets read them with
+ * getResourceAsStream(), which no filter sees.
+ */
+@WebFilter(filterName = "TemplateFilter", urlPatterns = {"/Login.html", "/Shopping.html", "/Invalid.html"})
+public class TemplateFilter implements Filter {
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+    }
+
+    @Override
+    public void doFilter(ServletRequest req, ServletResponse resp, FilterChain chain)
+            throws IOException, ServletException {
+        if (resp instanceof HttpServletResponse) {
+            ((HttpServletResponse) resp).sendError(HttpServletResponse.SC_NOT_FOUND);
+        } else {
+            chain.doFilter(req, resp);
+        }
+    }
+
+    @Override
+    public void destroy() {
+    }
+}